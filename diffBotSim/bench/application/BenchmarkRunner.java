@@ -0,0 +1,52 @@
+package application;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.Collection;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the benchmarks with the gc profiler, writes the results as JSON into bench/results and
+// fails if a rendered frame costs more than FRAME_BUDGET_US. An optional argument restricts
+// the run to the benchmarks matching that regular expression.
+public class BenchmarkRunner {
+	// A rendered frame is drawn by the software pipeline of the headless toolkit, it must fit in a
+	// 60 Hz frame (16.6 ms) with some room left for the rest of the pulse
+	private static final double FRAME_BUDGET_US = 12000.0;
+
+	public static void main(String[] args) throws RunnerException {
+		File results = new File("bench/results");
+		results.mkdirs();
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "application\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(new File(results, "jmh-" + LocalDate.now() + ".json").getPath())
+				.build();
+		Collection<RunResult> runs = new Runner(options).run();
+
+		boolean isOverBudget = false;
+		for(RunResult run : runs) {
+			String benchmark = run.getParams().getBenchmark();
+			if(!benchmark.endsWith("FrameBenchmark.renderedFrame")) {
+				continue;
+			}
+			double score = run.getPrimaryResult().getScore();
+			String renderer = run.getParams().getParam("renderer");
+			System.out.printf("Frame cost (%s): %.1f us, budget %.1f us%n", renderer, score, FRAME_BUDGET_US);
+			if(score > FRAME_BUDGET_US) {
+				isOverBudget = true;
+			}
+		}
+		if(isOverBudget) {
+			System.err.println("Frame cost is over budget");
+			System.exit(1);
+		}
+	}
+}
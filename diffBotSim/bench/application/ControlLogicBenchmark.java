@@ -0,0 +1,59 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of the joystick to wheel speeds mapping, as it is called once per frame, analytic and
+// from a lookup table
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ControlLogicBenchmark {
+	private final ControlLaw law = new JoystickRobotLogic();
+	private ControlLaw table;
+	private final ControlInput input = new ControlInput();
+	private final WheelCommand output = new WheelCommand();
+
+	@Setup
+	public void setup() {
+		// diagonal position, so the normalization branch is taken
+		input.joystickX = 0.6;
+		input.joystickY = 0.7;
+		input.maxLeftWheelSpeed = 29.0;
+		input.maxRightWheelSpeed = 29.0;
+
+		SimulationEngine engine = new SimulationEngine();
+		engine.setRobotLength(2.2);
+		engine.setWheelsSeparation(1.6);
+		engine.setWheelsRadius(0.4, 0.4);
+		engine.setWorkspaceDimensions(32, 16);
+		engine.setRobotPose(8, 1.9);
+		engine.setMaxWheelsSpeed(29.0, 29.0);
+		table = new JoystickSweep(engine, JoystickRobotLogic::new).run(33).toLookupTable();
+	}
+
+	@Benchmark
+	public WheelCommand mapping() {
+		law.compute(input, output);
+		return output;
+	}
+
+	@Benchmark
+	public WheelCommand lookupTable() {
+		table.compute(input, output);
+		return output;
+	}
+}
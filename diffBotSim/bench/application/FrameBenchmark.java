@@ -0,0 +1,97 @@
+package application;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
+
+// Cost of a whole simulation frame: headless engine step only, and control + step + trail +
+// rendering through RobotGraphics with each renderer (on the headless Monocle toolkit). The
+// robot is in a Scene and every rendered frame ends with a snapshot, so the scene graph is
+// really drawn, like at a pulse. Both run on the FX thread: fxHandoff is the cost of the
+// round trip to it, to subtract from renderedFrame.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dglass.platform=Monocle", "-Dmonocle.platform=Headless", "-Dprism.order=sw"})
+@State(Scope.Thread)
+public class FrameBenchmark {
+	@Param({"RETAINED", "CANVAS"})
+	public String renderer;
+
+	private SimulationEngine engine;
+	private RobotGraphics robot;
+	private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+	private WritableImage snapshot;
+	private Runnable frame, nothing;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		engine = new SimulationEngine();
+		FxToolkit.configure(engine);
+		engine.setWheelsSpeed(12.0, 9.0);
+
+		FxToolkit.start();
+		onFxThread(() -> {
+			robot = FxToolkit.createRobot();
+			robot.setRenderer("CANVAS".equals(renderer) ? new CanvasRenderer() : new RetainedRenderer());
+			Joystick joystick = new Joystick(250, 250);
+			joystick.setHandle(0.3, 0.8);
+			robot.connectJoystick(joystick);
+			new Scene(robot, 800, 400);
+		});
+		snapshot = new WritableImage(800, 400);
+		frame = () -> {
+			robot.animationLoop();
+			robot.snapshot(snapshotParameters, snapshot);
+		};
+		nothing = () -> {};
+	}
+
+	@Benchmark
+	public SimulationEngine headlessStep() {
+		engine.step();
+		return engine;
+	}
+
+	@Benchmark
+	public WritableImage renderedFrame() {
+		onFxThread(frame);
+		return snapshot;
+	}
+
+	@Benchmark
+	public void fxHandoff() {
+		onFxThread(nothing);
+	}
+
+	private static void onFxThread(Runnable task) {
+		FutureTask<Void> future = new FutureTask<>(task, null);
+		Platform.runLater(future);
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+}
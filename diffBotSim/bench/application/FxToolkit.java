@@ -0,0 +1,45 @@
+package application;
+
+import java.util.concurrent.CountDownLatch;
+
+import javafx.application.Platform;
+
+// Starts the JavaFX toolkit once per benchmark JVM and builds the robot used by the benchmarks.
+// A robot that is not attached to a scene can be used from the benchmark thread.
+abstract class FxToolkit {
+	private static boolean isStarted = false;
+
+	public static synchronized void start() {
+		if(isStarted) {
+			return;
+		}
+		CountDownLatch latch = new CountDownLatch(1);
+		Platform.startup(latch::countDown);
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		isStarted = true;
+	}
+
+	// Same configuration as Main
+	public static void configure(SimulationEngine engine) {
+		engine.setRobotLength(2.2);
+		engine.setWheelsSeparation(1.6);
+		engine.setWheelsRadius(0.4, 0.4);
+		engine.setWorkspaceDimensions(32, 16);
+		engine.setRobotPose(8, 1.9);
+		engine.setRobotOrientation(Math.PI / 2);
+		engine.setMaxWheelsSpeed(29.0, 29.0);
+	}
+
+	public static RobotGraphics createRobot() {
+		RobotGraphics robot = new RobotGraphics();
+		robot.setRobotShape(RobotGraphics.Shape.FRONT_WHEEL);
+		configure(robot.getEngine());
+		robot.showTrailer(true);
+		robot.resize(800, 400);
+		return robot;
+	}
+}
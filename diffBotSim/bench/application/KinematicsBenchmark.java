@@ -0,0 +1,62 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Cost of a single kinematics step: the DFKEquation velocities and one pose integration
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KinematicsBenchmark {
+	// The velocities do not depend on the integrator, their state has no parameter so that they
+	// are measured once
+	@State(Scope.Thread)
+	public static class Robot {
+		final double[] pose = {8.0, 1.9, Math.PI / 2};
+		double rR = 0.4, rL = 0.4, wheelsSep = 1.6;
+		double phiR = 12.0, phiL = 9.0;
+	}
+
+	@State(Scope.Thread)
+	public static class Integration {
+		// DFKEquation is package-private, the generated benchmark code can only set a String
+		@Param({"EULER", "EXACT_ARC", "RK4"})
+		public String integratorName;
+
+		DFKEquation.Integrator integrator;
+
+		@Setup
+		public void setup() {
+			integrator = DFKEquation.Integrator.valueOf(integratorName);
+		}
+	}
+
+	@Benchmark
+	public void velocities(Robot robot, Blackhole bh) {
+		bh.consume(DFKEquation.computeXVel(robot.rR, robot.rL, robot.pose[2], robot.phiR, robot.phiL));
+		bh.consume(DFKEquation.computeYVel(robot.rR, robot.rL, robot.pose[2], robot.phiR, robot.phiL));
+		bh.consume(DFKEquation.computeAngularVel(robot.rR, robot.rL, robot.phiR, robot.phiL, robot.wheelsSep));
+	}
+
+	@Benchmark
+	public double[] integrate(Robot robot, Integration integration) {
+		double v = DFKEquation.computeLinearVel(robot.rR, robot.rL, robot.phiR, robot.phiL);
+		double omega = DFKEquation.computeAngularVel(robot.rR, robot.rL, robot.phiR, robot.phiL, robot.wheelsSep);
+		DFKEquation.integrate(integration.integrator, robot.pose, v, omega, 1.0/60.0);
+		return robot.pose;
+	}
+}
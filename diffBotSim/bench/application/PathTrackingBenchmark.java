@@ -0,0 +1,68 @@
+package application;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Nearest point of a reference path, as it is queried once per step by the PathTracker: the
+// grid search against the scan of every segment, on a figure eight of waypoints with positions
+// up to about a meter off the path
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PathTrackingBenchmark {
+	private static final int QUERIES = 1024;
+
+	@Param({"1000", "100000"})
+	private int waypoints;
+
+	private ReferencePath path;
+	private final ReferencePath.Projection projection = new ReferencePath.Projection();
+	private final double[] xs = new double[QUERIES], ys = new double[QUERIES];
+	private int next = 0;
+
+	@Setup
+	public void setup() {
+		double[] pathXs = new double[waypoints], pathYs = new double[waypoints];
+		for(int i = 0; i < waypoints; i++) {
+			double t = 2 * Math.PI * i / (waypoints - 1);
+			pathXs[i] = 16 + 12 * Math.sin(t);
+			pathYs[i] = 8 + 5 * Math.sin(2 * t);
+		}
+		path = new ReferencePath(pathXs, pathYs);
+		Random random = new Random(1);
+		for(int i = 0; i < QUERIES; i++) {
+			int k = random.nextInt(waypoints);
+			xs[i] = pathXs[k] + random.nextGaussian() * 0.3;
+			ys[i] = pathYs[k] + random.nextGaussian() * 0.3;
+		}
+	}
+
+	@Benchmark
+	public double grid() {
+		int i = next++ & (QUERIES - 1);
+		path.project(xs[i], ys[i], projection);
+		return projection.crossTrackError;
+	}
+
+	@Benchmark
+	public double linearScan() {
+		int i = next++ & (QUERIES - 1);
+		path.projectLinear(xs[i], ys[i], projection);
+		return projection.crossTrackError;
+	}
+}
@@ -0,0 +1,44 @@
+package application;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of adding one point to a full trail, it must not depend on the trail length
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TrailBenchmark {
+	@Param({"250", "10000"})
+	public int length;
+
+	private Trail trail;
+	private double x = 0.0;
+
+	@Setup
+	public void setup() {
+		trail = new Trail(length);
+		for(int i = 0; i < length; i++) {
+			trail.add(x += 0.01, 1.0, 0.0);
+		}
+	}
+
+	@Benchmark
+	public Trail add() {
+		trail.add(x += 0.01, 1.0, 0.0);
+		return trail;
+	}
+}
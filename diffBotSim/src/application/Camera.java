@@ -0,0 +1,144 @@
+package application;
+
+// View of the workspace shown by RobotGraphics: zoom, pan and follow. At zoom 1 the whole
+// workspace is stretched over the window like before, a zoom of z shows 1/z of it around the
+// view center. The world to screen transform (scale and offset) is cached and only computed
+// again after a resize, zoom or pan; getVersion() changes with it so that cached layers know
+// when to repaint.
+//
+// In follow mode the view only scrolls once the robot leaves the middle of the view (inside
+// FOLLOW_MARGIN of the border), so the transform does not change on every frame.
+public class Camera {
+	private static final double MAX_ZOOM = 10000.0;
+	private static final double FOLLOW_MARGIN = 0.25;
+
+	// Note: Units are Pixels for the viewport, Meters for the rest
+	private double		viewportWidth_, viewportHeight_;
+	private double		workspaceWidth, workspaceHeight;
+	private double		zoom = 1.0;
+	private double		centerX, centerY;
+	private boolean		isCentered = false;
+	private boolean		isFollowing = false;
+
+	// cached transform, screenX = x*scaleX + offsetX and screenY = offsetY - y*scaleY
+	private double		scaleX, scaleY, offsetX, offsetY;
+	private boolean		isDirty = true;
+	private int			version = 0;
+
+	void setViewport(double width_, double height_, double workspaceWidth, double workspaceHeight) {
+		if(width_ != viewportWidth_ || height_ != viewportHeight_
+				|| workspaceWidth != this.workspaceWidth || workspaceHeight != this.workspaceHeight) {
+			this.viewportWidth_ = width_;
+			this.viewportHeight_ = height_;
+			this.workspaceWidth = workspaceWidth;
+			this.workspaceHeight = workspaceHeight;
+			this.isDirty = true;
+		}
+	}
+
+	// 1 shows the whole workspace
+	public void setZoom(double zoom) {
+		this.zoom = Math.max(1.0, Math.min(MAX_ZOOM, zoom));
+		this.isDirty = true;
+	}
+
+	// Zoom by a factor keeping the point under the given screen position in place
+	public void zoomAt(double factor, double x_, double y_) {
+		double x = this.toWorldX(x_);
+		double y = this.toWorldY(y_);
+		this.setZoom(zoom * factor);
+		this.validate();
+		if(scaleX > 0 && scaleY > 0) {
+			this.centerX = x + (viewportWidth_/2 - x_) / scaleX;
+			this.centerY = y - (viewportHeight_/2 - y_) / scaleY;
+			this.isDirty = true;
+		}
+	}
+
+	// Move the view by a screen distance, e.g. a mouse drag
+	public void pan(double dx_, double dy_) {
+		this.validate();
+		if(scaleX > 0 && scaleY > 0) {
+			this.centerX -= dx_ / scaleX;
+			this.centerY += dy_ / scaleY;
+			this.isDirty = true;
+		}
+	}
+
+	public void setFollowing(boolean isFollowing) {
+		this.isFollowing = isFollowing;
+	}
+
+	// Whole workspace, centered
+	public void reset() {
+		this.zoom = 1.0;
+		this.isCentered = false;
+		this.isDirty = true;
+	}
+
+	// Keep the robot in view when following
+	void follow(double x, double y) {
+		if(!this.isFollowing || this.zoom == 1.0) {
+			return;
+		}
+		this.validate();
+		double marginX = (getViewMaxX() - getViewMinX()) * FOLLOW_MARGIN;
+		double marginY = (getViewMaxY() - getViewMinY()) * FOLLOW_MARGIN;
+		double dx = Math.min(0, x - (getViewMinX() + marginX)) + Math.max(0, x - (getViewMaxX() - marginX));
+		double dy = Math.min(0, y - (getViewMinY() + marginY)) + Math.max(0, y - (getViewMaxY() - marginY));
+		if(dx != 0 || dy != 0) {
+			this.centerX += dx;
+			this.centerY += dy;
+			this.isDirty = true;
+		}
+	}
+
+	double toScreenX(double x)	{ this.validate(); return x*scaleX + offsetX; }
+	double toScreenY(double y)	{ this.validate(); return offsetY - y*scaleY; }
+	double getScaleX()			{ this.validate(); return scaleX;	}
+	double getScaleY()			{ this.validate(); return scaleY;	}
+	int getVersion()			{ this.validate(); return version;	}
+	double getZoom()			{ return this.zoom;		   }
+	boolean isFollowing()		{ return this.isFollowing; }
+
+	double toWorldX(double x_) {
+		this.validate();
+		return scaleX > 0 ? (x_ - offsetX) / scaleX : 0.0;
+	}
+	double toWorldY(double y_) {
+		this.validate();
+		return scaleY > 0 ? (offsetY - y_) / scaleY : 0.0;
+	}
+
+	// Visible part of the workspace
+	double getViewMinX() { return this.toWorldX(0);				  }
+	double getViewMaxX() { return this.toWorldX(viewportWidth_);  }
+	double getViewMinY() { return this.toWorldY(viewportHeight_); }
+	double getViewMaxY() { return this.toWorldY(0);				  }
+
+	private void validate() {
+		if(!this.isDirty) {
+			return;
+		}
+		this.isDirty = false;
+		this.version++;
+		if(workspaceWidth <= 0 || workspaceHeight <= 0) {
+			scaleX = scaleY = offsetX = offsetY = 0;
+			return;
+		}
+		this.scaleX = viewportWidth_ / workspaceWidth * zoom;
+		this.scaleY = viewportHeight_ / workspaceHeight * zoom;
+		if(!this.isCentered) {
+			this.centerX = workspaceWidth / 2;
+			this.centerY = workspaceHeight / 2;
+			this.isCentered = true;
+		}
+		// the view never leaves the workspace
+		double halfWidth = workspaceWidth / zoom / 2;
+		double halfHeight = workspaceHeight / zoom / 2;
+		this.centerX = Math.max(halfWidth, Math.min(workspaceWidth - halfWidth, centerX));
+		this.centerY = Math.max(halfHeight, Math.min(workspaceHeight - halfHeight, centerY));
+		this.offsetX = viewportWidth_ / 2 - centerX * scaleX;
+		this.offsetY = viewportHeight_ / 2 + centerY * scaleY;
+	}
+}
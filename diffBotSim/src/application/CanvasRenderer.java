@@ -0,0 +1,132 @@
+package application;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// Immediate mode backend: every frame is drawn from scratch on a single Canvas. Only the grid
+// and the static obstacles are kept on cached canvases below it. Whatever is out of view is
+// not drawn.
+class CanvasRenderer implements RobotRenderer {
+	private static final double[] TRAIL_DASHES = {15.0, 15.0};
+
+	private final RobotGeometry geometry = new RobotGeometry();
+	private final Canvas canvas = new Canvas();
+	private final GridLayer gridLayer = new GridLayer();
+	private final ObstacleLayer obstacleLayer = new ObstacleLayer();
+	private final GhostPainter ghostPainter = new GhostPainter();
+
+	@Override
+	public void attach(RobotGraphics robot) {
+		robot.getChildren().addAll(gridLayer, obstacleLayer, canvas);
+		this.resize(robot);
+	}
+
+	@Override
+	public void detach(RobotGraphics robot) {
+		robot.getChildren().removeAll(gridLayer, obstacleLayer, canvas);
+	}
+
+	@Override
+	public void resize(RobotGraphics robot) {
+		canvas.setWidth(robot.getWindowWidth());
+		canvas.setHeight(robot.getWindowHeight());
+		gridLayer.resize(robot);
+		obstacleLayer.resize(robot);
+	}
+
+	@Override
+	public void render(RobotGraphics robot) {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		RobotGraphics.Shape shape = robot.getRobotShape();
+		double windowWidth_ = robot.getWindowWidth();
+		double windowHeight_ = robot.getWindowHeight();
+
+		geometry.update(robot);
+		gridLayer.update(robot);
+		obstacleLayer.update(robot);
+		gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+		if(robot.isPathHistoryShown()) {
+			PathHistoryPainter.paint(gc, robot.getPathHistory(), robot);
+		}
+
+		LidarScan scan = robot.isLidarShown() ? robot.getLidar().getLatestScan() : null;
+		if(scan != null) {
+			LidarPainter.paint(gc, scan, robot);
+		}
+
+		GhostFleet ghosts = robot.getGhosts();
+		if(ghosts != null) {
+			ghostPainter.paint(gc, ghosts, robot);
+		}
+
+		// Draw the trailing line, oldest point first, skipping the segments out of view
+		Trail trail = robot.getTrail();
+		if(robot.isTrailerShown() && trail.size() > 1) {
+			gc.setLineWidth(1);
+			gc.setStroke(RobotGeometry.trailColor(shape));
+			gc.setLineDashes(TRAIL_DASHES);
+			gc.beginPath();
+			double previousX_ = DimensionsMapper.worldToScreenX(robot, trail.getX(0));
+			double previousY_ = DimensionsMapper.worldToScreenY(robot, trail.getY(0));
+			boolean isDrawing = false;
+			for(int i = 1; i < trail.size(); i++) {
+				double x_ = DimensionsMapper.worldToScreenX(robot, trail.getX(i));
+				double y_ = DimensionsMapper.worldToScreenY(robot, trail.getY(i));
+				if(Math.max(x_, previousX_) < 0 || Math.min(x_, previousX_) > windowWidth_
+						|| Math.max(y_, previousY_) < 0 || Math.min(y_, previousY_) > windowHeight_) {
+					isDrawing = false;
+				}
+				else {
+					if(!isDrawing) {
+						gc.moveTo(previousX_, previousY_);
+						isDrawing = true;
+					}
+					gc.lineTo(x_, y_);
+				}
+				previousX_ = x_;
+				previousY_ = y_;
+			}
+			gc.stroke();
+			gc.setLineDashes(null);
+		}
+
+		if(!geometry.isInView(windowWidth_, windowHeight_)) {
+			return;
+		}
+
+		// Draw the robot body
+		gc.setFill(RobotGeometry.bodyColor(shape));
+		if(shape == RobotGraphics.Shape.CENTERED_CIRCLE) {
+			double r = geometry.bodyRadius_;
+			gc.fillOval(geometry.x_ - r, geometry.y_ - r, 2*r, 2*r);
+		}
+		else {
+			gc.save();
+			gc.translate(geometry.x_, geometry.y_);
+			gc.rotate(geometry.rotate_);
+			gc.fillRect(geometry.bodyX_ - geometry.x_, geometry.bodyY_ - geometry.y_, geometry.bodyWidth_, geometry.bodyHeight_);
+			gc.restore();
+		}
+
+		// Draw the wheels, each one rotates around its own center
+		gc.setFill(Color.BLACK);
+		fillRotatedRectangle(gc, geometry.leftWheelX_, geometry.leftWheelY_,
+				geometry.leftWheelWidth_, geometry.leftWheelHeight_, geometry.rotate_);
+		fillRotatedRectangle(gc, geometry.rightWheelX_, geometry.rightWheelY_,
+				geometry.rightWheelWidth_, geometry.rightWheelHeight_, geometry.rotate_);
+		if(geometry.hasCaster) {
+			double r = geometry.casterRadius_;
+			gc.fillOval(geometry.casterX_ - r, geometry.casterY_ - r, 2*r, 2*r);
+		}
+	}
+
+	private static void fillRotatedRectangle(GraphicsContext gc, double x, double y, double width, double height, double angle) {
+		gc.save();
+		gc.translate(x + width/2, y + height/2);
+		gc.rotate(angle);
+		gc.fillRect(-width/2, -height/2, width, height);
+		gc.restore();
+	}
+}
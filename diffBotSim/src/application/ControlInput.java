@@ -0,0 +1,12 @@
+package application;
+
+// Inputs of a ControlLaw for the current step, the same instance is reused every step
+public class ControlInput {
+	// Joystick position, both in [-1, 1]
+	public double joystickX, joystickY;
+	// Note: Units are SI (Radiant, Meter, Second)
+	public double maxLeftWheelSpeed, maxRightWheelSpeed;
+	public double time;
+	// Latest lidar scan, null when the robot has no lidar
+	public LidarScan scan;
+}
@@ -0,0 +1,8 @@
+package application;
+
+// Maps the control inputs (joystick position, wheel limits...) to wheel speeds. The law is
+// called once per simulation step, it writes into the given output instead of returning a new
+// object so that nothing is allocated per step. JoystickRobotLogic is the default law.
+public interface ControlLaw {
+	void compute(ControlInput input, WheelCommand output);
+}
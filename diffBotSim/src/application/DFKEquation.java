@@ -2,38 +2,84 @@ package application;
 //Ref: https://www.youtube.com/watch?v=RZlZcDxQ8P4
 
 abstract class DFKEquation {
+	// Integration schemes for the pose, the wheel speeds are constant during a step
+	public enum Integrator {
+		EULER, EXACT_ARC, RK4
+	}
 	
-	public static double computeXVel(RobotGraphics robot) {
-		double rR = robot.getRightWheelRadius();
-		double rL = robot.getLeftWheelRadius();
-		double theta = robot.getRobotOrientation();
-		double phiR = robot.getRightWheelSpeed();
-		double phiL = robot.getLeftWheelSpeed();
-		
+	public static double computeXVel(SimulationEngine robot) {
+		return computeXVel(robot.getRightWheelRadius(), robot.getLeftWheelRadius(), robot.getRobotOrientation(),
+				robot.getRightWheelSpeed(), robot.getLeftWheelSpeed());
+	}
+	public static double computeYVel(SimulationEngine robot) {
+		return computeYVel(robot.getRightWheelRadius(), robot.getLeftWheelRadius(), robot.getRobotOrientation(),
+				robot.getRightWheelSpeed(), robot.getLeftWheelSpeed());
+	}
+	public static double computeAngularVel(SimulationEngine robot) {
+		return computeAngularVel(robot.getRightWheelRadius(), robot.getLeftWheelRadius(),
+				robot.getRightWheelSpeed(), robot.getLeftWheelSpeed(), robot.getWheelsSeparation());
+	}
+	
+	// Primitive versions, used when the robot state is not held by a SimulationEngine (e.g. fleets)
+	public static double computeXVel(double rR, double rL, double theta, double phiR, double phiL) {
 		double xVel = (rR/2) * Math.cos(theta) * phiR;
 		xVel += (rL/2) * Math.cos(theta) * phiL;
 		
 		return xVel;
 	}
-	public static double computeYVel(RobotGraphics robot) {
-		double rR = robot.getRightWheelRadius();
-		double rL = robot.getLeftWheelRadius();
-		double theta = robot.getRobotOrientation();
-		double phiR = robot.getRightWheelSpeed();
-		double phiL = robot.getLeftWheelSpeed();
-		
+	public static double computeYVel(double rR, double rL, double theta, double phiR, double phiL) {
 		double xVel = (rR/2) * Math.sin(theta) * phiR;
 		xVel += (rL/2) * Math.sin(theta) * phiL;
 		
 		return xVel;
 	}
-	public static double computeAngularVel(RobotGraphics robot) {
-		double rR = robot.getRightWheelRadius();
-		double rL = robot.getLeftWheelRadius();
-		double phiR = robot.getRightWheelSpeed();
-		double phiL = robot.getLeftWheelSpeed();
-		double wheelsSep = robot.getWheelsSeparation();
-		
+	public static double computeAngularVel(double rR, double rL, double phiR, double phiL, double wheelsSep) {
 		return (rR/wheelsSep)*phiR - (rL/wheelsSep)*phiL;
 	}
+	
+	// Body twist: linear velocity along the heading (m/s), the angular one is computeAngularVel
+	public static double computeLinearVel(double rR, double rL, double phiR, double phiL) {
+		return (rR/2)*phiR + (rL/2)*phiL;
+	}
+	
+	// Advance pose = {x, y, theta} by h seconds with constant linear (v) and angular (omega) velocities
+	public static void integrate(Integrator integrator, double[] pose, double v, double omega, double h) {
+		double theta = pose[2];
+		switch(integrator) {
+			case EULER:
+				pose[0] += v * Math.cos(theta) * h;
+				pose[1] += v * Math.sin(theta) * h;
+				break;
+			case EXACT_ARC:
+				// closed form solution: the robot moves on a circle of radius v/omega
+				if(Math.abs(omega * h) < 1e-9) {
+					pose[0] += v * Math.cos(theta + omega*h/2) * h;
+					pose[1] += v * Math.sin(theta + omega*h/2) * h;
+				}
+				else {
+					pose[0] += v/omega * (Math.sin(theta + omega*h) - Math.sin(theta));
+					pose[1] -= v/omega * (Math.cos(theta + omega*h) - Math.cos(theta));
+				}
+				break;
+			case RK4:
+				// theta is linear in time, so the four stages only differ by their heading
+				double cosMid = Math.cos(theta + omega*h/2);
+				double sinMid = Math.sin(theta + omega*h/2);
+				pose[0] += v * h/6 * (Math.cos(theta) + 4*cosMid + Math.cos(theta + omega*h));
+				pose[1] += v * h/6 * (Math.sin(theta) + 4*sinMid + Math.sin(theta + omega*h));
+				break;
+		}
+		pose[2] = wrapAngle(theta + omega*h);
+	}
+	
+	// Wrap an angle into (-pi, pi]
+	public static double wrapAngle(double theta) {
+		if(theta > Math.PI || theta <= -Math.PI) {
+			theta -= 2*Math.PI * Math.floor((theta + Math.PI) / (2*Math.PI));
+			if(theta <= -Math.PI) {
+				theta += 2*Math.PI;
+			}
+		}
+		return theta;
+	}
 }
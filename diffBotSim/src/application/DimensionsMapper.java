@@ -1,17 +1,19 @@
 package application;
 
-// This class transforms the real dimensions in SI to screen dimensions in pixels
+// This class transforms the real dimensions in SI to screen dimensions in pixels, through the
+// camera of the robot view
 abstract class DimensionsMapper {
 	public static double metersToPixelsX(RobotGraphics robot, double value) {
-		double workspaceWidth = robot.getWorkspaceWidth();
-		double screenWidth = robot.getWidth();
-		
-		return value * screenWidth / workspaceWidth;
+		return value * robot.getCamera().getScaleX();
 	}
 	public static double metersToPixelsY(RobotGraphics robot, double value) {
-		double workspaceHeight = robot.getWorkspaceHeight();
-		double screenHeight = robot.getHeight();
-		
-		return value * screenHeight / workspaceHeight;
+		return value * robot.getCamera().getScaleY();
+	}
+	// Positions on the screen, the y axis points down
+	public static double worldToScreenX(RobotGraphics robot, double x) {
+		return robot.getCamera().toScreenX(x);
+	}
+	public static double worldToScreenY(RobotGraphics robot, double y) {
+		return robot.getCamera().toScreenY(y);
 	}
 }
@@ -0,0 +1,82 @@
+package application;
+
+import java.util.Arrays;
+
+// Streaming statistics of the magnitude of an error signal: RMS, max and percentiles. The
+// percentiles come from a histogram of fixed width bins, the last one also counts everything
+// above the range, so recording is O(1) and nothing is kept per sample.
+public class ErrorStats {
+	private final double binWidth;
+	private final long[] counts;
+	private long count = 0;
+	private double sumSquares = 0.0;
+	private double max = 0.0;
+
+	// bins of binWidth cover [0, bins * binWidth), the resolution of the percentiles
+	public ErrorStats(double binWidth, int bins) {
+		if(binWidth <= 0 || bins < 1) {
+			throw new IllegalArgumentException("Bin width must be > 0 and there must be at least one bin");
+		}
+		this.binWidth = binWidth;
+		this.counts = new long[bins];
+	}
+
+	public void record(double error) {
+		double value = Math.abs(error);
+		counts[(int)Math.min(counts.length - 1, value / binWidth)]++;
+		count++;
+		sumSquares += value * value;
+		if(value > max) {
+			max = value;
+		}
+	}
+
+	// Adds the samples of other, which must have the same bins
+	public void merge(ErrorStats other) {
+		if(other.binWidth != binWidth || other.counts.length != counts.length) {
+			throw new IllegalArgumentException("Statistics with different bins cannot be merged");
+		}
+		for(int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		sumSquares += other.sumSquares;
+		max = Math.max(max, other.max);
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sumSquares = 0.0;
+		max = 0.0;
+	}
+
+	long getCount()	{ return this.count; }
+	double getMax()	{ return this.max;	 }
+
+	double getRms() {
+		return count == 0 ? 0.0 : Math.sqrt(sumSquares / count);
+	}
+
+	// Value below which the given fraction (0 to 1) of the recorded values fall, middle of its bin
+	double getPercentile(double fraction) {
+		if(count == 0) {
+			return 0.0;
+		}
+		long rank = (long)Math.ceil(fraction * count);
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= Math.max(1, rank)) {
+				return Math.min(max, (i + 0.5) * binWidth);
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("rms=%.3f p50=%.3f p95=%.3f p99=%.3f max=%.3f",
+				getRms(), getPercentile(0.5), getPercentile(0.95), getPercentile(0.99), getMax());
+	}
+}
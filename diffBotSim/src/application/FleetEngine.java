@@ -0,0 +1,322 @@
+package application;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Headless simulation of N identical differential drive robots. The state is kept in
+// primitive arrays (one array per field, one slot per robot) and a step is split into
+// fixed ranges that are run on the common fork-join pool. The range tasks are created
+// once, so stepping the fleet does not allocate anything per robot.
+//
+// The robots collide like a SimulationEngine: the whole footprint is kept inside the workspace
+// and a robot stops in front of an obstacle or a wall of the map. They do not collide with each
+// other.
+public class FleetEngine {
+	// Robots handled by one fork-join task
+	private static final int TASK_SIZE = 2048;
+
+	// Note: Units are SI (Radiant, Meter, Second)
+	private final int		size;
+	private final double[]	xPose, yPose, orientation;
+	private final double[]	leftWheelSpeed, rightWheelSpeed;
+	private final boolean[]	isCollision;
+	private final boolean[]	isInsideObstacle;
+	private double			dt = 1.0/60.0;
+	private double			robotLength = 0.5;
+	private double			wheelsSeparation = 0.4;
+	private double			rightWheelRadius = 0.1, leftWheelRadius = 0.1;
+	private double			workspaceWidth = 100.0, workspaceHeight = 100.0;
+	private double			maxRightWheelSpeed = 5.0, maxLeftWheelSpeed = 5.0;
+	private double			time = 0.0;
+	private DFKEquation.Integrator integrator = DFKEquation.Integrator.EULER;
+	// footprint in the frame of a robot, as in SimulationEngine, a point by default
+	private double			footprintRear, footprintFront, footprintHalfWidth, footprintRadius;
+	private ObstacleMap		obstacles;
+	private OccupancyGrid	map;
+
+	private final StepTask[] tasks;
+
+	public FleetEngine(int size) {
+		if(size < 1) {
+			throw new IllegalArgumentException("Fleet must contain at least one robot");
+		}
+		this.size = size;
+		this.xPose = new double[size];
+		this.yPose = new double[size];
+		this.orientation = new double[size];
+		this.leftWheelSpeed = new double[size];
+		this.rightWheelSpeed = new double[size];
+		this.isCollision = new boolean[size];
+		this.isInsideObstacle = new boolean[size];
+
+		int taskCount = (size + TASK_SIZE - 1) / TASK_SIZE;
+		this.tasks = new StepTask[taskCount];
+		for(int i = 0; i < taskCount; i++) {
+			tasks[i] = new StepTask(i * TASK_SIZE, Math.min(size, (i + 1) * TASK_SIZE));
+		}
+	}
+
+	// Advance every robot by one fixed time step
+	void step() {
+		if(tasks.length == 1) {
+			stepRange(tasks[0]);
+		}
+		else {
+			for(StepTask task : tasks) {
+				task.reinitialize();
+			}
+			ForkJoinTask.invokeAll(tasks);
+		}
+		this.time += dt;
+	}
+
+	void step(int steps) {
+		for(int i = 0; i < steps; i++) {
+			this.step();
+		}
+	}
+
+	// The task gives the range and its scratch space
+	private void stepRange(StepTask task) {
+		double rR = this.rightWheelRadius;
+		double rL = this.leftWheelRadius;
+		double wheelsSep = this.wheelsSeparation;
+		double width = this.workspaceWidth;
+		double height = this.workspaceHeight;
+		double dt = this.dt;
+		DFKEquation.Integrator integrator = this.integrator;
+		boolean hasObstacles = this.obstacles != null || this.map != null;
+		double[] pose = task.pose;
+		// only a rectangle turns with the robot, the extent of a point or a circle is constant
+		boolean isRectangle = footprintRadius == 0.0 && (footprintRear != 0.0 || footprintFront != 0.0 || footprintHalfWidth != 0.0);
+		task.updateCorners(0.0);
+
+		for(int i = task.from; i < task.to; i++) {
+			double theta = orientation[i];
+			double phiR = rightWheelSpeed[i];
+			double phiL = leftWheelSpeed[i];
+			double x, y;
+			if(integrator == DFKEquation.Integrator.EULER) {
+				x = xPose[i] + DFKEquation.computeXVel(rR, rL, theta, phiR, phiL)*dt;
+				y = yPose[i] + DFKEquation.computeYVel(rR, rL, theta, phiR, phiL)*dt;
+				theta = DFKEquation.wrapAngle(theta + DFKEquation.computeAngularVel(rR, rL, phiR, phiL, wheelsSep)*dt);
+			}
+			else {
+				pose[0] = xPose[i];
+				pose[1] = yPose[i];
+				pose[2] = theta;
+				DFKEquation.integrate(integrator, pose, DFKEquation.computeLinearVel(rR, rL, phiR, phiL),
+						DFKEquation.computeAngularVel(rR, rL, phiR, phiL, wheelsSep), dt);
+				x = pose[0];
+				y = pose[1];
+				theta = pose[2];
+			}
+			boolean collision = false;
+
+			// keep the whole footprint inside the workspace
+			if(isRectangle) {
+				task.updateCorners(theta);
+			}
+			if(x + task.maxDx > width) {
+				x = width - task.maxDx;
+				collision = true;
+			}
+			else if(x + task.minDx < 0) {
+				x = -task.minDx;
+				collision = true;
+			}
+			if(y + task.maxDy > height) {
+				y = height - task.maxDy;
+				collision = true;
+			}
+			else if(y + task.minDy < 0) {
+				y = -task.minDy;
+				collision = true;
+			}
+
+			// the robot stops in front of an obstacle, but can always leave one it was put into
+			if(hasObstacles) {
+				boolean isOverlapping = task.overlapsObstacle(x, y);
+				if(isOverlapping && !isInsideObstacle[i]) {
+					x = xPose[i];
+					y = yPose[i];
+					theta = orientation[i];
+					collision = true;
+					if(isRectangle) {
+						task.updateCorners(theta);
+					}
+					isInsideObstacle[i] = task.overlapsObstacle(x, y);
+				}
+				else {
+					isInsideObstacle[i] = isOverlapping;
+				}
+			}
+
+			xPose[i] = x;
+			yPose[i] = y;
+			orientation[i] = theta;
+			isCollision[i] = collision;
+		}
+	}
+
+	private class StepTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+		// scratch space of the integrators other than EULER and of the footprint
+		private final double[] pose = new double[3];
+		private final double[] cornerDx = new double[4], cornerDy = new double[4];
+		private final double[] cornerX = new double[4], cornerY = new double[4];
+		private double minDx, maxDx, minDy, maxDy;
+
+		StepTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			stepRange(this);
+		}
+
+		// Corners of the footprint relative to the pose and their extent, which includes the pose
+		void updateCorners(double theta) {
+			if(footprintRadius > 0.0) {
+				minDx = minDy = -footprintRadius;
+				maxDx = maxDy = footprintRadius;
+				return;
+			}
+			minDx = maxDx = minDy = maxDy = 0.0;
+			if(footprintRear == 0.0 && footprintFront == 0.0 && footprintHalfWidth == 0.0) {
+				Arrays.fill(cornerDx, 0.0);
+				Arrays.fill(cornerDy, 0.0);
+				return;
+			}
+			double cos = Math.cos(theta);
+			double sin = Math.sin(theta);
+			for(int k = 0; k < 4; k++) {
+				double fx = k == 0 || k == 3 ? -footprintRear : footprintFront;
+				double fy = k < 2 ? -footprintHalfWidth : footprintHalfWidth;
+				cornerDx[k] = fx*cos - fy*sin;
+				cornerDy[k] = fx*sin + fy*cos;
+				minDx = Math.min(minDx, cornerDx[k]);
+				maxDx = Math.max(maxDx, cornerDx[k]);
+				minDy = Math.min(minDy, cornerDy[k]);
+				maxDy = Math.max(maxDy, cornerDy[k]);
+			}
+		}
+
+		// Uses the corners of the last updateCorners()
+		boolean overlapsObstacle(double x, double y) {
+			if(footprintRadius > 0.0) {
+				return (obstacles != null && obstacles.intersectsCircle(x, y, footprintRadius))
+						|| (map != null && map.intersectsCircle(x, y, footprintRadius));
+			}
+			for(int k = 0; k < 4; k++) {
+				cornerX[k] = x + cornerDx[k];
+				cornerY[k] = y + cornerDy[k];
+			}
+			return (obstacles != null && obstacles.intersectsPolygon(cornerX, cornerY, 4))
+					|| (map != null && map.intersectsPolygon(cornerX, cornerY, 4));
+		}
+	}
+
+	void setTimeStep(double dt) {
+		if(dt <= 0.0) {
+			throw new IllegalArgumentException("Time step must be > 0 s");
+		}
+		this.dt = dt;
+	}
+	void setRobotLength(double length) {
+		if(length < 0.01) {
+			throw new IllegalArgumentException("Length must be > 0.01 m");
+		}
+		this.robotLength = length;
+	}
+	void setWheelsSeparation(double wheelsSeparation) {
+		if(wheelsSeparation < 0.01) {
+			throw new IllegalArgumentException("Wheel separation must be > 0.01 m");
+		}
+		this.wheelsSeparation = wheelsSeparation;
+	}
+	void setWheelsRadius(double leftWheelRadius, double rightWheelRadius) {
+		if(rightWheelRadius < 0.01 || leftWheelRadius < 0.01) {
+			throw new IllegalArgumentException("Wheel radius must be > 0.01 m");
+		}
+		this.rightWheelRadius = rightWheelRadius;
+		this.leftWheelRadius = leftWheelRadius;
+	}
+	void setWorkspaceDimensions(double workspaceWidth, double workspaceHeight) {
+		if(workspaceWidth < 0.1 || workspaceHeight < 0.1) {
+			throw new IllegalArgumentException("Workspace dimensions are too small");
+		}
+		this.workspaceWidth = workspaceWidth;
+		this.workspaceHeight = workspaceHeight;
+	}
+	void setMaxWheelsSpeed(double maxLeft, double maxRight) {
+		this.maxLeftWheelSpeed = maxLeft;
+		this.maxRightWheelSpeed = maxRight;
+	}
+	// Rectangular footprint, rear and front are measured from the wheel axis along the heading
+	void setFootprint(double rear, double front, double halfWidth) {
+		if(rear < 0 || front < 0 || halfWidth < 0) {
+			throw new IllegalArgumentException("Footprint dimensions must be >= 0");
+		}
+		this.footprintRear = rear;
+		this.footprintFront = front;
+		this.footprintHalfWidth = halfWidth;
+		this.footprintRadius = 0.0;
+	}
+	// Circular footprint, 0 for none (the rectangle is used)
+	void setCircularFootprint(double radius) {
+		if(radius < 0) {
+			throw new IllegalArgumentException("Footprint radius must be >= 0");
+		}
+		this.footprintRadius = radius;
+	}
+	// Obstacles and map the robots collide with, null for none. Both can be shared with engines.
+	void setObstacles(ObstacleMap obstacles) {
+		this.obstacles = obstacles;
+		Arrays.fill(isInsideObstacle, false);
+	}
+	void setMap(OccupancyGrid map) {
+		this.map = map;
+		Arrays.fill(isInsideObstacle, false);
+	}
+	// EULER by default, the other schemes cost a few more trigonometric calls per robot
+	void setIntegrator(DFKEquation.Integrator integrator) {
+		this.integrator = integrator;
+	}
+	void setRobotPose(int robot, double x, double y, double theta) {
+		xPose[robot] = x;
+		yPose[robot] = y;
+		orientation[robot] = theta;
+	}
+	void setWheelsSpeed(int robot, double leftWheelSpeed, double rightWheelSpeed) {
+		if(Math.abs(rightWheelSpeed) > this.maxRightWheelSpeed || Math.abs(leftWheelSpeed) > this.maxLeftWheelSpeed) {
+			throw new IllegalArgumentException("Wheel speed limit violated. Wheel speed not changed");
+		}
+		this.rightWheelSpeed[robot] = rightWheelSpeed;
+		this.leftWheelSpeed[robot] = leftWheelSpeed;
+	}
+
+	int size()					 { return this.size;			 }
+	double getTime()			 { return this.time;			 }
+	double getTimeStep()		 { return this.dt;				 }
+	double getRobotLength()		 { return this.robotLength;		 }
+	double getWheelsSeparation() { return this.wheelsSeparation; }
+	double getRightWheelRadius() { return this.rightWheelRadius; }
+	double getLeftWheelRadius()  { return this.leftWheelRadius;  }
+	double getWorkspaceWidth()	 { return this.workspaceWidth;	 }
+	double getWorkspaceHeight()	 { return this.workspaceHeight;	 }
+	double getMaxRightWheelSpeed() { return this.maxRightWheelSpeed; }
+	double getMaxLeftWheelSpeed() { return this.maxLeftWheelSpeed; }
+	ObstacleMap getObstacles()	 { return this.obstacles;		 }
+	OccupancyGrid getMap()		 { return this.map;				 }
+
+	// Direct access to the state arrays, they must not be modified by the caller
+	double[] getXPoses()		 { return this.xPose;			 }
+	double[] getYPoses()		 { return this.yPose;			 }
+	double[] getOrientations()	 { return this.orientation;		 }
+	boolean[] getCollisions()	 { return this.isCollision;		 }
+}
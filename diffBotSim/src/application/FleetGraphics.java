@@ -0,0 +1,95 @@
+package application;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+
+// Draws every robot of a FleetEngine in one workspace. All robots are painted on a single
+// Canvas, so the cost of a frame does not depend on the scene graph.
+public class FleetGraphics extends Pane {
+	private final double refreshRate = 60.0; // 1/DT (Hz)
+	private final FleetEngine fleet;
+	private final Canvas canvas = new Canvas();
+
+	// Corners of the robot body, reused for every robot
+	private final double[] xCorners = new double[4];
+	private final double[] yCorners = new double[4];
+
+	private Timeline animation;
+	private EventHandler<ActionEvent> eventHandler = e -> { this.animationLoop(); };
+
+	public FleetGraphics(FleetEngine fleet) {
+		this.fleet = fleet;
+		fleet.setTimeStep(1/this.refreshRate);
+		animation = new Timeline(new KeyFrame(Duration.millis(1/this.refreshRate * 1000), eventHandler));
+		animation.setCycleCount(Timeline.INDEFINITE);
+		this.setStyle("-fx-border-color: black; -fx-border-width: 2px;");
+		canvas.widthProperty().bind(this.widthProperty());
+		canvas.heightProperty().bind(this.heightProperty());
+		this.getChildren().add(canvas);
+	}
+
+	public void startAnimation() {
+		animation.play();
+	}
+
+	public void stopAnimation() {
+		animation.stop();
+	}
+
+	private void animationLoop() {
+		fleet.step();
+		this.paint();
+	}
+
+	private void paint() {
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		double windowWidth_ = canvas.getWidth();
+		double windowHeight_ = canvas.getHeight();
+		double xScale = windowWidth_ / fleet.getWorkspaceWidth();
+		double yScale = windowHeight_ / fleet.getWorkspaceHeight();
+		double halfLength_ = fleet.getRobotLength() * xScale / 2;
+		double halfWidth_ = fleet.getWheelsSeparation() * yScale / 2;
+		boolean isTiny = halfLength_ < 1.5 && halfWidth_ < 1.5;
+
+		gc.clearRect(0, 0, windowWidth_, windowHeight_);
+
+		double[] xPose = fleet.getXPoses();
+		double[] yPose = fleet.getYPoses();
+		double[] orientation = fleet.getOrientations();
+		boolean[] isCollision = fleet.getCollisions();
+
+		// Paint free robots first and colliding ones after, so the fill only changes twice
+		for(int pass = 0; pass < 2; pass++) {
+			boolean colliding = pass == 1;
+			gc.setFill(colliding ? Color.RED : Color.LIGHTSKYBLUE);
+			for(int i = 0; i < fleet.size(); i++) {
+				if(isCollision[i] != colliding) {
+					continue;
+				}
+				double x_ = xPose[i] * xScale;
+				double y_ = windowHeight_ - yPose[i] * yScale;
+				if(isTiny) {
+					gc.fillRect(x_ - 1, y_ - 1, 2, 2);
+					continue;
+				}
+				double cos = Math.cos(orientation[i]);
+				double sin = Math.sin(orientation[i]);
+				// Screen y axis points down
+				double lx = cos * halfLength_, ly = -sin * halfLength_;
+				double wx = -sin * halfWidth_, wy = -cos * halfWidth_;
+				xCorners[0] = x_ + lx + wx;	yCorners[0] = y_ + ly + wy;
+				xCorners[1] = x_ + lx - wx;	yCorners[1] = y_ + ly - wy;
+				xCorners[2] = x_ - lx - wx;	yCorners[2] = y_ - ly - wy;
+				xCorners[3] = x_ - lx + wx;	yCorners[3] = y_ - ly + wy;
+				gc.fillPolygon(xCorners, yCorners, 4);
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package application;
+
+import java.util.Random;
+
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+// Fleet mode: simulates many robots with random wheel speeds in the same workspace
+public class FleetMain extends Application {
+	@Override
+	public void start(Stage primaryStage) {
+
+		FleetEngine fleet = new FleetEngine(10000);
+		Random random = new Random(42);
+
+		// Units are SI (meters, radians, seconds)
+		fleet.setRobotLength(0.6);
+		fleet.setWheelsSeparation(0.4);
+		fleet.setWheelsRadius(0.1, 0.1);
+		fleet.setWorkspaceDimensions(200, 100);
+		fleet.setMaxWheelsSpeed(20.0, 20.0);
+		for(int i = 0; i < fleet.size(); i++) {
+			fleet.setRobotPose(i, random.nextDouble() * 200, random.nextDouble() * 100, random.nextDouble() * 2 * Math.PI);
+			fleet.setWheelsSpeed(i, 5 + random.nextDouble() * 15, 5 + random.nextDouble() * 15);
+		}
+
+		FleetGraphics graphics = new FleetGraphics(fleet);
+		graphics.startAnimation();
+
+		Scene scene = new Scene(graphics, 1000, 500);
+		primaryStage.setScene(scene);
+		primaryStage.setTitle("Differential Robot Fleet Simulator");
+		primaryStage.show();
+	}
+
+	public static void main(String[] args) {
+		launch(args);
+	}
+}
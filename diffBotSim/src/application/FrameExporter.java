@@ -0,0 +1,193 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+import javafx.application.Platform;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+// Renders a RobotGraphics offscreen at a fixed resolution and frame rate, as fast as the
+// machine allows instead of in real time, and encodes the frames on a pool of workers.
+//
+// The FX thread only steps the simulation, snapshots the view and copies the pixels into a
+// free frame buffer; the encoding (PNG files or one raw video file) runs on the workers. There
+// is a fixed number of frame buffers: when the workers fall behind, the export waits for a
+// buffer to be released, so the memory stays bounded whatever the length of the run.
+//   PNG  frame_000000.png, frame_000001.png... in the output directory
+//   RAW  frames.raw, every frame as width*height BGRA pixels, e.g. for
+//        ffmpeg -f rawvideo -pixel_format bgra -video_size 1280x720 -framerate 30 -i frames.raw out.mp4
+// The robot must not be animated while it is exported, export() can be called from any thread.
+public class FrameExporter implements AutoCloseable {
+	public enum Format {
+		PNG, RAW
+	}
+
+	private final RobotGraphics robot;
+	private final int		width, height;
+	private final double	stepsPerFrame;
+	private final Path		output;
+	private final Format	format;
+	private final ExecutorService workers;
+	private final BlockingQueue<BufferedImage> freeFrames;
+	private final FileChannel rawChannel;
+	private final AtomicReference<Exception> error = new AtomicReference<>();
+	// one raw frame per worker, reused
+	private final ThreadLocal<ByteBuffer> rawFrame;
+	private final WritableImage snapshot;
+	private final SnapshotParameters snapshotParameters = new SnapshotParameters();
+	private double	stepBudget = 0.0;
+	private long	frameCount = 0;
+
+	// workers is the number of encoding threads, each one has two frames buffered at most
+	public FrameExporter(RobotGraphics robot, int width, int height, double frameRate,
+			Path output, Format format, int workers) throws IOException {
+		if(width < 1 || height < 1 || frameRate <= 0 || workers < 1) {
+			throw new IllegalArgumentException("Size, frame rate and workers must be > 0");
+		}
+		this.robot = robot;
+		this.width = width;
+		this.height = height;
+		this.stepsPerFrame = 1.0 / (frameRate * robot.getEngine().getTimeStep());
+		this.output = output;
+		this.format = format;
+		this.workers = Executors.newFixedThreadPool(workers, task -> {
+			Thread thread = new Thread(task, "Frame encoder");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.freeFrames = new ArrayBlockingQueue<>(2 * workers);
+		for(int i = 0; i < 2 * workers; i++) {
+			freeFrames.add(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+		}
+		Files.createDirectories(output);
+		this.rawChannel = format == Format.RAW
+				? FileChannel.open(output.resolve("frames.raw"), StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+				: null;
+		this.rawFrame = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.LITTLE_ENDIAN));
+		this.snapshot = new WritableImage(width, height);
+		this.onFxThread(() -> robot.resize(width, height));
+	}
+
+	// Render and encode the given number of frames, each one 1/frameRate simulated seconds
+	// after the previous one
+	public void export(int frames) throws IOException {
+		for(int i = 0; i < frames; i++) {
+			this.exportFrame();
+		}
+	}
+
+	// Play a recorded trace from its start pose and export it until its end
+	public void exportReplay(InputTrace trace) throws IOException {
+		this.onFxThread(() -> robot.replay(trace, 1));
+		do {
+			this.exportFrame();
+		} while(robot.isReplaying());
+	}
+
+	long getFrameCount() { return this.frameCount; }
+
+	private void exportFrame() throws IOException {
+		this.checkError();
+		BufferedImage frame;
+		try {
+			frame = freeFrames.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Export interrupted", e);
+		}
+		stepBudget += stepsPerFrame;
+		int steps = (int)stepBudget;
+		stepBudget -= steps;
+		int[] pixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+		this.onFxThread(() -> {
+			robot.renderOffscreen(steps);
+			robot.snapshot(snapshotParameters, snapshot);
+			snapshot.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+		});
+		long index = frameCount++;
+		workers.execute(() -> {
+			try {
+				this.encode(frame, index);
+			} catch (IOException | RuntimeException e) {
+				error.compareAndSet(null, e);
+			} finally {
+				freeFrames.add(frame);
+			}
+		});
+	}
+
+	private void encode(BufferedImage frame, long index) throws IOException {
+		if(this.format == Format.PNG) {
+			ImageIO.write(frame, "png", output.resolve(String.format("frame_%06d.png", index)).toFile());
+			return;
+		}
+		// the frames are written at their own offset, so the workers may finish in any order
+		int[] pixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+		ByteBuffer bytes = rawFrame.get();
+		bytes.clear();
+		bytes.asIntBuffer().put(pixels);
+		long position = index * pixels.length * 4L;
+		while(bytes.hasRemaining()) {
+			rawChannel.write(bytes, position + bytes.position());
+		}
+	}
+
+	private void checkError() throws IOException {
+		Exception e = error.get();
+		if(e != null) {
+			throw e instanceof IOException ? (IOException)e : new IOException("Frame encoding failed", e);
+		}
+	}
+
+	private void onFxThread(Runnable task) throws IOException {
+		if(Platform.isFxApplicationThread()) {
+			task.run();
+			return;
+		}
+		FutureTask<Void> future = new FutureTask<>(task, null);
+		Platform.runLater(future);
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Export interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Frame rendering failed", e.getCause());
+		}
+	}
+
+	// Wait for the frames still being encoded
+	@Override
+	public void close() throws IOException {
+		workers.shutdown();
+		try {
+			workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if(rawChannel != null) {
+			rawChannel.close();
+		}
+		this.checkError();
+	}
+}
@@ -0,0 +1,146 @@
+package application;
+
+import java.util.Arrays;
+
+import jdk.jfr.EventType;
+
+// Measures how an animation frame is spent. The frame is split in stages with lap(): the time
+// since the previous lap is added to the given stage, so a stage can be measured several times
+// per frame (e.g. several simulation steps during a fast replay). At the end of the frame the
+// stage times go to latency histograms and to a FrameTimingEvent for JFR. The sub-steps of the
+// adaptive integration are added up over all the steps of the frame.
+//
+// The interval between two frames is compared to the expected period to tell whether the
+// animation really runs at its refresh rate: jitter is the distance to the period and an
+// interval of n periods counts n - 1 missed frames.
+public class FrameProfiler {
+	enum Stage {CONTROL, PHYSICS, TRAIL, PAINT}
+
+	private static final Stage[] STAGES = Stage.values();
+	// the event is only created while a recording enables it, the frames allocate nothing otherwise
+	private static final EventType FRAME_TIMING = EventType.getEventType(FrameTimingEvent.class);
+
+	private final long period;		// ns
+	private final LatencyHistogram[] stageHistograms = new LatencyHistogram[STAGES.length];
+	private final LatencyHistogram frameHistogram = new LatencyHistogram();
+	private final LatencyHistogram intervalHistogram = new LatencyHistogram();
+	private final LatencyHistogram jitterHistogram = new LatencyHistogram();
+	private final long[] stageTimes = new long[STAGES.length];
+	private long frameStart = 0;
+	private long lastLap = 0;
+	private long interval = 0;
+	private int steps = 0;
+	private int subSteps = 0;
+	private int maxSubSteps = 0;	// most sub-steps of a frame since the reset
+	private long frames = 0;
+	private long missedFrames = 0;
+
+	public FrameProfiler(double refreshRate) {
+		if(refreshRate <= 0) {
+			throw new IllegalArgumentException("Refresh rate must be > 0");
+		}
+		this.period = (long)(1e9 / refreshRate);
+		for(int i = 0; i < STAGES.length; i++) {
+			stageHistograms[i] = new LatencyHistogram();
+		}
+	}
+
+	void beginFrame() {
+		long now = System.nanoTime();
+		this.interval = frameStart == 0 ? 0 : now - frameStart;
+		if(this.interval > 0) {
+			intervalHistogram.record(interval);
+			jitterHistogram.record(Math.abs(interval - period));
+			long periods = Math.round((double)interval / period);
+			if(periods > 1) {
+				missedFrames += periods - 1;
+			}
+		}
+		this.frameStart = now;
+		this.lastLap = now;
+		this.steps = 0;
+		this.subSteps = 0;
+		Arrays.fill(stageTimes, 0);
+	}
+
+	void lap(Stage stage) {
+		long now = System.nanoTime();
+		stageTimes[stage.ordinal()] += now - lastLap;
+		this.lastLap = now;
+		if(stage == Stage.PHYSICS) {
+			steps++;
+		}
+	}
+
+	// Sub-steps used by a simulation step of the frame
+	void addSubSteps(int subSteps) {
+		this.subSteps += subSteps;
+	}
+
+	void endFrame() {
+		for(int i = 0; i < STAGES.length; i++) {
+			stageHistograms[i].record(stageTimes[i]);
+		}
+		frameHistogram.record(lastLap - frameStart);
+		frames++;
+		this.maxSubSteps = Math.max(maxSubSteps, subSteps);
+
+		if(FRAME_TIMING.isEnabled()) {
+			FrameTimingEvent event = new FrameTimingEvent();
+			event.control = stageTimes[Stage.CONTROL.ordinal()];
+			event.physics = stageTimes[Stage.PHYSICS.ordinal()];
+			event.trail = stageTimes[Stage.TRAIL.ordinal()];
+			event.paint = stageTimes[Stage.PAINT.ordinal()];
+			event.interval = interval;
+			event.steps = steps;
+			event.subSteps = subSteps;
+			event.commit();
+		}
+	}
+
+	public void reset() {
+		for(LatencyHistogram histogram : stageHistograms) {
+			histogram.reset();
+		}
+		frameHistogram.reset();
+		intervalHistogram.reset();
+		jitterHistogram.reset();
+		frames = 0;
+		missedFrames = 0;
+		maxSubSteps = 0;
+		frameStart = 0;
+	}
+
+	LatencyHistogram getStageHistogram(Stage stage) { return stageHistograms[stage.ordinal()]; }
+	LatencyHistogram getFrameHistogram()			{ return this.frameHistogram;	 }
+	LatencyHistogram getIntervalHistogram()			{ return this.intervalHistogram; }
+	LatencyHistogram getJitterHistogram()			{ return this.jitterHistogram;	 }
+	long getFrames()								{ return this.frames;			 }
+	long getMissedFrames()							{ return this.missedFrames;		 }
+	// Times of the last frame in ns, valid after endFrame()
+	long getLastStageTime(Stage stage)				{ return stageTimes[stage.ordinal()]; }
+	long getLastFrameTime()							{ return lastLap - frameStart;	 }
+	long getLastInterval()							{ return this.interval;			 }
+	int getLastSubSteps()							{ return this.subSteps;			 }
+	int getMaxSubSteps()							{ return this.maxSubSteps;		 }
+
+	// Multi-line report in microseconds, used by the overlay
+	String summary() {
+		StringBuilder text = new StringBuilder();
+		text.append(String.format("%-8s %7s %7s %7s%n", "us", "p50", "p99", "max"));
+		for(Stage stage : STAGES) {
+			append(text, stage.name().toLowerCase(), getStageHistogram(stage));
+		}
+		append(text, "frame", frameHistogram);
+		append(text, "interval", intervalHistogram);
+		append(text, "jitter", jitterHistogram);
+		text.append(String.format("sub-steps %d, max %d%n", subSteps, maxSubSteps));
+		text.append(String.format("frames %d, missed %d", frames, missedFrames));
+		return text.toString();
+	}
+
+	private static void append(StringBuilder text, String name, LatencyHistogram histogram) {
+		text.append(String.format("%-8s %7.0f %7.0f %7.0f%n", name, histogram.getPercentile(0.5) / 1e3,
+				histogram.getPercentile(0.99) / 1e3, histogram.getMax() / 1e3));
+	}
+}
@@ -0,0 +1,37 @@
+package application;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// One animation frame of RobotGraphics, recorded when a JFR recording enables it, e.g.
+// java -XX:StartFlightRecording:filename=frames.jfr,settings=profile ...
+@Name("application.FrameTiming")
+@Label("Frame Timing")
+@Category("DiffBot Simulator")
+@Description("Time spent in every stage of an animation frame")
+class FrameTimingEvent extends Event {
+	@Label("Control") @Timespan(Timespan.NANOSECONDS)
+	long control;
+
+	@Label("Physics") @Timespan(Timespan.NANOSECONDS)
+	long physics;
+
+	@Label("Trail") @Timespan(Timespan.NANOSECONDS)
+	long trail;
+
+	@Label("Paint") @Timespan(Timespan.NANOSECONDS)
+	long paint;
+
+	@Label("Frame Interval") @Description("Time since the start of the previous frame") @Timespan(Timespan.NANOSECONDS)
+	long interval;
+
+	@Label("Simulation Steps")
+	int steps;
+
+	@Label("Sub-Steps") @Description("Sub-steps of the adaptive integration in all the steps of the frame")
+	int subSteps;
+}
@@ -0,0 +1,124 @@
+package application;
+
+import javafx.scene.paint.Color;
+
+// Control strategies compared side by side with the robot. Every ghost is a robot of one
+// FleetEngine driven by its own ControlLaw, and all the laws receive the input the robot's law
+// received at the same step: the input is sampled once and fanned out. Wheel speeds given to
+// the robot without its law (UdpBridge wheel commands, setWheelsSpeed) are given as they are to
+// every ghost, and at a step without any command the ghosts keep their wheel speeds, as the
+// robot does. The ghosts are then stepped together in one batched update of the fleet, with the
+// time step, the integrator, the footprint, the obstacles and the map of the robot, so they hit
+// the walls where the robot would, and drawn by a GhostPainter in the overlay pass of the
+// renderers. The ghosts are not part of the snapshots, they are aligned on the robot again when
+// it is rewound or replayed.
+public class GhostFleet {
+	public static final int	MAX_GHOSTS = 8;
+	private static final Color[] COLORS = {Color.DARKORANGE, Color.MEDIUMPURPLE, Color.SEAGREEN, Color.DEEPPINK,
+											Color.GOLDENROD, Color.STEELBLUE, Color.SIENNA, Color.DARKCYAN};
+
+	// The fleet always holds MAX_GHOSTS robots, only the first count ones have a strategy
+	private final FleetEngine fleet = new FleetEngine(MAX_GHOSTS);
+	private final String[] names = new String[MAX_GHOSTS];
+	private final ControlLaw[] laws = new ControlLaw[MAX_GHOSTS];
+	private int count = 0;
+	private final ControlInput input = new ControlInput();
+	private final WheelCommand output = new WheelCommand();
+
+	public synchronized void addStrategy(String name, ControlLaw law) {
+		if(count == MAX_GHOSTS) {
+			throw new IllegalArgumentException("At most " + MAX_GHOSTS + " strategies can be compared");
+		}
+		names[count] = name;
+		laws[count] = law;
+		count++;
+	}
+
+	// Takes the configuration of the robot and puts every ghost on its pose
+	synchronized void align(SimulationEngine robot) {
+		fleet.setTimeStep(robot.getTimeStep());
+		fleet.setRobotLength(robot.getRobotLength());
+		fleet.setWheelsSeparation(robot.getWheelsSeparation());
+		fleet.setWheelsRadius(robot.getLeftWheelRadius(), robot.getRightWheelRadius());
+		fleet.setWorkspaceDimensions(robot.getWorkspaceWidth(), robot.getWorkspaceHeight());
+		fleet.setMaxWheelsSpeed(robot.getMaxLeftWheelSpeed(), robot.getMaxRightWheelSpeed());
+		fleet.setIntegrator(robot.getIntegrator());
+		fleet.setObstacles(robot.getObstacles());
+		fleet.setMap(robot.getMap());
+		this.copyFootprint(robot);
+		for(int i = 0; i < MAX_GHOSTS; i++) {
+			fleet.setRobotPose(i, robot.getRobotXPose(), robot.getRobotYPose(), robot.getRobotOrientation());
+			fleet.setWheelsSpeed(i, robot.getLeftWheelSpeed(), robot.getRightWheelSpeed());
+		}
+	}
+
+	// The robot's law was given this input, it goes through every law. Called by the law of the
+	// robot, see RobotGraphics.
+	synchronized void applyControl(ControlInput robotInput) {
+		double maxLeft = robotInput.maxLeftWheelSpeed;
+		double maxRight = robotInput.maxRightWheelSpeed;
+		input.joystickX = robotInput.joystickX;
+		input.joystickY = robotInput.joystickY;
+		input.maxLeftWheelSpeed = maxLeft;
+		input.maxRightWheelSpeed = maxRight;
+		input.time = robotInput.time;
+		// the ghosts have no lidar of their own, a law that reads the scan gets the robot's
+		input.scan = robotInput.scan;
+		fleet.setMaxWheelsSpeed(maxLeft, maxRight);
+		for(int i = 0; i < count; i++) {
+			laws[i].compute(input, output);
+			// a strategy that exceeds the limits is saturated, as in the Tournament
+			double left = Math.max(-maxLeft, Math.min(maxLeft, output.leftWheelSpeed));
+			double right = Math.max(-maxRight, Math.min(maxRight, output.rightWheelSpeed));
+			fleet.setWheelsSpeed(i, left, right);
+		}
+	}
+
+	// The robot was given wheel speeds without its law, every ghost takes the same ones
+	synchronized void applyWheelsSpeed(SimulationEngine robot) {
+		fleet.setMaxWheelsSpeed(robot.getMaxLeftWheelSpeed(), robot.getMaxRightWheelSpeed());
+		for(int i = 0; i < MAX_GHOSTS; i++) {
+			fleet.setWheelsSpeed(i, robot.getLeftWheelSpeed(), robot.getRightWheelSpeed());
+		}
+	}
+
+	// One step after the robot's, all the ghosts move at once with their last wheel speeds
+	synchronized void step(SimulationEngine robot) {
+		fleet.setTimeStep(robot.getTimeStep());
+		// the shape, the obstacles or the map of the robot may have changed since the alignment
+		this.copyFootprint(robot);
+		if(robot.getObstacles() != fleet.getObstacles()) {
+			fleet.setObstacles(robot.getObstacles());
+		}
+		if(robot.getMap() != fleet.getMap()) {
+			fleet.setMap(robot.getMap());
+		}
+		fleet.step();
+	}
+
+	private void copyFootprint(SimulationEngine robot) {
+		fleet.setFootprint(robot.getFootprintRear(), robot.getFootprintFront(), robot.getFootprintHalfWidth());
+		fleet.setCircularFootprint(robot.getFootprintRadius());
+	}
+
+	// Copies the poses of the ghosts for the view, returns the number of ghosts
+	synchronized int copyPoses(double[] x, double[] y, double[] theta, boolean[] isCollision) {
+		System.arraycopy(fleet.getXPoses(), 0, x, 0, count);
+		System.arraycopy(fleet.getYPoses(), 0, y, 0, count);
+		System.arraycopy(fleet.getOrientations(), 0, theta, 0, count);
+		System.arraycopy(fleet.getCollisions(), 0, isCollision, 0, count);
+		return count;
+	}
+
+	public synchronized int size() {
+		return this.count;
+	}
+
+	public synchronized String getName(int ghost) {
+		return names[ghost];
+	}
+
+	public static Color getColor(int ghost) {
+		return COLORS[ghost];
+	}
+}
@@ -0,0 +1,85 @@
+package application;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+
+// Draws the ghosts of a GhostFleet on a canvas, each one as its translucent footprint, the one
+// it collides with, with its heading, outlined in red while it hits a wall, and a legend of
+// the strategies in the top right corner.
+// The poses are copied once per frame into arrays owned by the painter.
+class GhostPainter {
+	private static final double	BODY_OPACITY = 0.35;
+	private static final double	LEGEND_MARGIN = 8.0, LEGEND_LINE = 16.0, LEGEND_SWATCH = 10.0;
+
+	private final double[] x = new double[GhostFleet.MAX_GHOSTS];
+	private final double[] y = new double[GhostFleet.MAX_GHOSTS];
+	private final double[] theta = new double[GhostFleet.MAX_GHOSTS];
+	private final boolean[] isCollision = new boolean[GhostFleet.MAX_GHOSTS];
+	private final Color[] bodyColors = new Color[GhostFleet.MAX_GHOSTS];
+	// Corners of the body, reused for every ghost
+	private final double[] xCorners = new double[4];
+	private final double[] yCorners = new double[4];
+
+	GhostPainter() {
+		for(int i = 0; i < GhostFleet.MAX_GHOSTS; i++) {
+			Color color = GhostFleet.getColor(i);
+			bodyColors[i] = Color.color(color.getRed(), color.getGreen(), color.getBlue(), BODY_OPACITY);
+		}
+	}
+
+	void paint(GraphicsContext gc, GhostFleet ghosts, RobotGraphics robot) {
+		int count = ghosts.copyPoses(x, y, theta, isCollision);
+		double windowWidth_ = robot.getWindowWidth();
+		double windowHeight_ = robot.getWindowHeight();
+		SimulationEngine engine = robot.getEngine();
+		double radiusX_ = DimensionsMapper.metersToPixelsX(robot, engine.getFootprintRadius());
+		double radiusY_ = DimensionsMapper.metersToPixelsY(robot, engine.getFootprintRadius());
+		double rear_ = DimensionsMapper.metersToPixelsX(robot, engine.getFootprintRear());
+		double front_ = DimensionsMapper.metersToPixelsX(robot, engine.getFootprintFront());
+		double halfWidth_ = DimensionsMapper.metersToPixelsY(robot, engine.getFootprintHalfWidth());
+		boolean isCircle = engine.getFootprintRadius() > 0.0;
+		double heading_ = isCircle ? radiusX_ : Math.max(front_, halfWidth_);
+		double reach_ = isCircle ? Math.max(radiusX_, radiusY_) : Math.max(rear_, front_) + halfWidth_;
+
+		gc.setLineWidth(1.5);
+		for(int i = 0; i < count; i++) {
+			double x_ = DimensionsMapper.worldToScreenX(robot, x[i]);
+			double y_ = DimensionsMapper.worldToScreenY(robot, y[i]);
+			if(x_ + reach_ < 0 || x_ - reach_ > windowWidth_ || y_ + reach_ < 0 || y_ - reach_ > windowHeight_) {
+				continue;
+			}
+			double cos = Math.cos(theta[i]);
+			double sin = Math.sin(theta[i]);
+			gc.setFill(bodyColors[i]);
+			gc.setStroke(isCollision[i] ? Color.RED : GhostFleet.getColor(i));
+			if(isCircle) {
+				gc.fillOval(x_ - radiusX_, y_ - radiusY_, 2 * radiusX_, 2 * radiusY_);
+				gc.strokeOval(x_ - radiusX_, y_ - radiusY_, 2 * radiusX_, 2 * radiusY_);
+			}
+			else {
+				// Screen y axis points down
+				double fx = cos * front_, fy = -sin * front_;
+				double rx = -cos * rear_, ry = sin * rear_;
+				double wx = -sin * halfWidth_, wy = -cos * halfWidth_;
+				xCorners[0] = x_ + fx + wx;	yCorners[0] = y_ + fy + wy;
+				xCorners[1] = x_ + fx - wx;	yCorners[1] = y_ + fy - wy;
+				xCorners[2] = x_ + rx - wx;	yCorners[2] = y_ + ry - wy;
+				xCorners[3] = x_ + rx + wx;	yCorners[3] = y_ + ry + wy;
+				gc.fillPolygon(xCorners, yCorners, 4);
+				gc.strokePolygon(xCorners, yCorners, 4);
+			}
+			gc.strokeLine(x_, y_, x_ + cos * heading_, y_ - sin * heading_);
+		}
+
+		gc.setTextAlign(TextAlignment.RIGHT);
+		for(int i = 0; i < count; i++) {
+			double top_ = LEGEND_MARGIN + i * LEGEND_LINE;
+			gc.setFill(GhostFleet.getColor(i));
+			gc.fillRect(windowWidth_ - LEGEND_MARGIN - LEGEND_SWATCH, top_, LEGEND_SWATCH, LEGEND_SWATCH);
+			gc.setFill(Color.BLACK);
+			gc.fillText(ghosts.getName(i), windowWidth_ - 2 * LEGEND_MARGIN - LEGEND_SWATCH, top_ + LEGEND_SWATCH);
+		}
+		gc.setTextAlign(TextAlignment.LEFT);
+	}
+}
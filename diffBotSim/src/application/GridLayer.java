@@ -0,0 +1,71 @@
+package application;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// Canvas with the x/y lines of the workspace, shared by the renderers. It is only repainted
+// when the camera changes, and the line spacing follows the zoom (1, 2 or 5 times a power of
+// ten meters) so that lines are never closer than MIN_SPACING pixels. Only the lines in view
+// are drawn.
+class GridLayer extends Canvas {
+	private static final double MIN_SPACING = 40.0;	// pixels
+	private static final double[] FACTORS = {1, 2, 5, 10};
+
+	private int		paintedVersion;
+	private boolean	isDirty = true;
+
+	void resize(RobotGraphics robot) {
+		this.setWidth(robot.getWindowWidth());
+		this.setHeight(robot.getWindowHeight());
+		this.isDirty = true;
+	}
+
+	void update(RobotGraphics robot) {
+		Camera camera = robot.getCamera();
+		if(!this.isDirty && camera.getVersion() == this.paintedVersion) {
+			return;
+		}
+		this.paintedVersion = camera.getVersion();
+		this.isDirty = false;
+
+		GraphicsContext gc = this.getGraphicsContext2D();
+		double windowWidth_ = robot.getWindowWidth();
+		double windowHeight_ = robot.getWindowHeight();
+		gc.clearRect(0, 0, this.getWidth(), this.getHeight());
+		if(!(camera.getScaleX() > 0.0 && camera.getScaleY() > 0.0)) {
+			return;
+		}
+
+		// draw x/y lines
+		double spacing = spacing(Math.min(camera.getScaleX(), camera.getScaleY()));
+		gc.setLineWidth(0.15);
+		gc.setStroke(Color.BLACK);
+		for(long i = firstLine(camera.getViewMinX(), spacing); i * spacing < Math.min(camera.getViewMaxX(), robot.getWorkspaceWidth()); i++) {
+			double x_ = camera.toScreenX(i * spacing);
+			gc.strokeLine(x_, 0.0, x_, windowHeight_);
+		}
+		gc.setLineWidth(0.2);
+		gc.setStroke(Color.LIGHTSLATEGREY);
+		for(long i = firstLine(camera.getViewMinY(), spacing); i * spacing < Math.min(camera.getViewMaxY(), robot.getWorkspaceHeight()); i++) {
+			double y_ = camera.toScreenY(i * spacing);
+			gc.strokeLine(0.0, y_, windowWidth_, y_);
+		}
+	}
+
+	// the workspace borders are not drawn
+	private static long firstLine(double viewMin, double spacing) {
+		return Math.max(1, (long)Math.ceil(viewMin / spacing));
+	}
+
+	// Smallest 1, 2 or 5 times a power of ten meters that is at least MIN_SPACING pixels
+	static double spacing(double pixelsPerMeter) {
+		double spacing = Math.pow(10, Math.floor(Math.log10(MIN_SPACING / pixelsPerMeter)));
+		for(double factor : FACTORS) {
+			if(spacing * factor * pixelsPerMeter >= MIN_SPACING) {
+				return spacing * factor;
+			}
+		}
+		return spacing * 10;
+	}
+}
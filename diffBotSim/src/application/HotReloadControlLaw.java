@@ -0,0 +1,197 @@
+package application;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// ControlLaw loaded from a directory of compiled classes. The directory is watched and the law
+// is loaded again, in a fresh class loader, every time a class file changes, so a strategy can
+// be recompiled and tried without restarting the simulator. If the new version cannot be
+// loaded the previous one keeps running. The class loaders of the replaced laws are closed at the
+// next compute(), when no call can still be running in them.
+public class HotReloadControlLaw implements ControlLaw, AutoCloseable {
+	// Wait for the compiler to finish writing before reloading
+	private static final long DEBOUNCE_MS = 200;
+
+	private final Path classesDirectory;
+	// the law, its class name and its loader are swapped together under swapLock
+	private final Object swapLock = new Object();
+	private volatile String className;
+	private volatile ControlLaw delegate;
+	private URLClassLoader loader;
+	private final ConcurrentLinkedQueue<URLClassLoader> retiredLoaders = new ConcurrentLinkedQueue<>();
+	private final WatchService watchService;
+	private final Thread watcher;
+
+	public HotReloadControlLaw(Path classesDirectory, String className) throws IOException, ReflectiveOperationException {
+		this.classesDirectory = classesDirectory.toAbsolutePath();
+		this.swap(className);
+
+		this.watchService = FileSystems.getDefault().newWatchService();
+		try (Stream<Path> directories = Files.walk(this.classesDirectory)) {
+			for(Path directory : (Iterable<Path>)directories.filter(Files::isDirectory)::iterator) {
+				this.register(directory);
+			}
+		}
+		this.watcher = new Thread(this::watch, "ControlLaw reloader");
+		this.watcher.setDaemon(true);
+		this.watcher.start();
+	}
+
+	@Override
+	public void compute(ControlInput input, WheelCommand output) {
+		// a loader is retired after the law that replaces it is published, so this call and the
+		// following ones no longer run in it
+		URLClassLoader retired;
+		while((retired = retiredLoaders.poll()) != null) {
+			closeLoader(retired);
+		}
+		delegate.compute(input, output);
+	}
+
+	// Switch to another law of the same directory
+	public void select(String className) throws IOException, ReflectiveOperationException {
+		this.swap(className);
+	}
+
+	public String getClassName() {
+		return this.className;
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		watcher.interrupt();
+		synchronized(swapLock) {
+			for(URLClassLoader retired : retiredLoaders) {
+				closeLoader(retired);
+			}
+			retiredLoaders.clear();
+			closeLoader(this.loader);
+		}
+	}
+
+	private void register(Path directory) throws IOException {
+		directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	private void watch() {
+		try {
+			while(true) {
+				WatchKey key = watchService.take();
+				boolean isChanged = false;
+				do {
+					for(WatchEvent<?> event : key.pollEvents()) {
+						Path changed = ((Path)key.watchable()).resolve((Path)event.context());
+						if(Files.isDirectory(changed)) {
+							this.register(changed);
+						}
+						isChanged |= changed.toString().endsWith(".class");
+					}
+					key.reset();
+				} while((key = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null);
+
+				if(isChanged) {
+					try {
+						synchronized(swapLock) {
+							this.swap(this.className);
+						}
+						System.out.println("Reloaded control law " + this.className);
+					} catch (ReflectiveOperationException | LinkageError | IOException e) {
+						System.err.println("Could not reload control law " + this.className + ": " + e);
+					}
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// closed
+		} catch (IOException e) {
+			System.err.println("Control law directory is no longer watched: " + e);
+		}
+	}
+
+	// Load the law in a fresh class loader and publish it with its class name, then retire the
+	// previous loader
+	private void swap(String className) throws IOException, ReflectiveOperationException {
+		synchronized(swapLock) {
+			URLClassLoader loader = new ChildFirstClassLoader(new URL[] {classesDirectory.toUri().toURL()},
+					ControlLaw.class.getClassLoader());
+			ControlLaw law;
+			try {
+				Class<?> type = Class.forName(className, true, loader);
+				if(!ControlLaw.class.isAssignableFrom(type)) {
+					throw new ClassCastException(className + " does not implement ControlLaw");
+				}
+				law = (ControlLaw)type.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+				loader.close();
+				throw e;
+			}
+			this.className = className;
+			this.delegate = law;
+			if(this.loader != null) {
+				retiredLoaders.add(this.loader);
+			}
+			this.loader = loader;
+		}
+	}
+
+	private static void closeLoader(URLClassLoader loader) {
+		if(loader == null) {
+			return;
+		}
+		try {
+			loader.close();
+		} catch (IOException e) {
+			System.err.println("Could not close the class loader of a control law: " + e);
+		}
+	}
+
+	// Loads the classes of the directory before asking the parent, so a law that is also on the
+	// application class path is still reloaded. The interface types, and the types they expose
+	// such as the scan of the ControlInput, always come from the parent.
+	private static class ChildFirstClassLoader extends URLClassLoader {
+		ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+			super(urls, parent);
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			synchronized(getClassLoadingLock(name)) {
+				Class<?> type = findLoadedClass(name);
+				if(type == null && !isSharedType(name)) {
+					try {
+						type = findClass(name);
+					} catch (ClassNotFoundException e) {
+						// not in the directory
+					}
+				}
+				if(type == null) {
+					return super.loadClass(name, resolve);
+				}
+				if(resolve) {
+					resolveClass(type);
+				}
+				return type;
+			}
+		}
+
+		private static boolean isSharedType(String name) {
+			return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("javafx.")
+					|| name.equals(ControlLaw.class.getName())
+					|| name.equals(ControlInput.class.getName())
+					|| name.equals(LidarScan.class.getName())
+					|| name.equals(WheelCommand.class.getName());
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package application;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free latest-value cell for a two-axis input. The two values are stored as floats packed
+// in a single long, so a reader always gets a pair that was published together without any
+// lock: the writer (e.g. the FX thread) never waits for the simulation and the simulation
+// never sees half of an update. Older values are simply overwritten.
+public final class InputCell {
+	// nothing published yet
+	public static final long EMPTY = pack(Float.NaN, Float.NaN);
+
+	private final AtomicLong value = new AtomicLong(EMPTY);
+
+	public void publish(double x, double y) {
+		if(!Double.isFinite(x) || !Double.isFinite(y)) {
+			throw new IllegalArgumentException("Input must be finite");
+		}
+		value.set(pack((float)x, (float)y));
+	}
+
+	public void clear() {
+		value.set(EMPTY);
+	}
+
+	// Packed pair, read the values with x() and y()
+	public long get() {
+		return value.get();
+	}
+
+	public static long pack(float x, float y) {
+		return ((long)Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL);
+	}
+	public static double x(long packed)			{ return Float.intBitsToFloat((int)(packed >>> 32)); }
+	public static double y(long packed)			{ return Float.intBitsToFloat((int)packed);		 }
+	public static boolean isEmpty(long packed)	{ return packed == EMPTY;	 }
+}
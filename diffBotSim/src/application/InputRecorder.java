@@ -0,0 +1,63 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Records joystick samples into a trace file (see InputTrace for the format) through a
+// memory-mapped buffer. The mapping grows by doubling when it is full and the number of
+// samples in the header is only written on close, so an incomplete file is never mistaken for
+// a complete one.
+public class InputRecorder implements AutoCloseable {
+	private static final int INITIAL_SAMPLES = 1 << 16;
+
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int capacity;
+	private int count = 0;
+
+	public InputRecorder(Path file, double dt, double startX, double startY, double startTheta) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.map(INITIAL_SAMPLES);
+		InputTrace.writeHeader(buffer, 0, dt, startX, startY, startTheta);
+	}
+
+	private void map(int capacity) throws IOException {
+		long size = InputTrace.HEADER_SIZE + (long)capacity * InputTrace.SAMPLE_SIZE;
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("Trace file is full");
+		}
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+		this.capacity = capacity;
+	}
+
+	// time in seconds since the start of the recording, x and y in [-1, 1]
+	public void record(double time, double x, double y) throws IOException {
+		if(count == capacity) {
+			this.map(capacity * 2);
+		}
+		InputTrace.writeSample(buffer, count++, time, x, y);
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.putLong(8, count);
+		buffer.force();
+		this.buffer = null;
+		try {
+			channel.truncate(InputTrace.HEADER_SIZE + (long)count * InputTrace.SAMPLE_SIZE);
+		} catch (IOException e) {
+			// Some platforms cannot truncate a mapped file, the count in the header is what matters
+		}
+		channel.close();
+	}
+}
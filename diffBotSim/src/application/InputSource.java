@@ -0,0 +1,11 @@
+package application;
+
+// Source of the two-axis input (joystick position, both in [-1, 1]) that drives the robot:
+// the mouse Joystick, a KeyboardInput, a ScriptedInput or a ReplayInput. A source publishes
+// its latest value into an InputCell whenever it likes, and the simulation samples it exactly
+// once per physics tick, on the simulation thread.
+public interface InputSource {
+	// Value for the tick at the given simulated time, packed by InputCell.pack(), or
+	// InputCell.EMPTY when the source has nothing to say
+	long sample(double time);
+}
@@ -0,0 +1,112 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Recorded joystick input: timestamped (x, y) samples sorted by time. Between two samples the
+// input holds the value of the previous one, exactly like the live joystick between events.
+//
+// The samples are kept in the binary trace format and read in place, so a trace file is simply
+// memory-mapped by load() without any parsing. Layout (little endian):
+//   header  magic "DBJS", int version, long count, double dt, double startX, startY, startTheta
+//   sample  double time (s), float x, float y
+public class InputTrace {
+	static final int	MAGIC = 0x534A4244;	// "DBJS"
+	static final int	VERSION = 1;
+	static final int	HEADER_SIZE = 64;
+	static final int	SAMPLE_SIZE = 16;
+
+	private final ByteBuffer buffer;
+	private final int count;
+
+	public InputTrace(double[] times, double[] xs, double[] ys) {
+		if(times.length != xs.length || times.length != ys.length) {
+			throw new IllegalArgumentException("Trace arrays must have the same length");
+		}
+		this.buffer = ByteBuffer.allocate(HEADER_SIZE + times.length * SAMPLE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		writeHeader(buffer, times.length, 0.0, 0.0, 0.0, 0.0);
+		for(int i = 0; i < times.length; i++) {
+			if(i > 0 && times[i] < times[i - 1]) {
+				throw new IllegalArgumentException("Trace samples must be sorted by time");
+			}
+			writeSample(buffer, i, times[i], xs[i], ys[i]);
+		}
+		this.count = times.length;
+	}
+
+	private InputTrace(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+		if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a joystick trace file");
+		}
+		if(buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported trace version " + buffer.getInt(4));
+		}
+		long count = buffer.getLong(8);
+		if(count < 0 || HEADER_SIZE + count * SAMPLE_SIZE > buffer.capacity()) {
+			throw new IOException("Truncated trace file");
+		}
+		this.count = (int)count;
+	}
+
+	// Map a trace file, the samples are read from the file when they are used
+	public static InputTrace load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Trace file is too large");
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new InputTrace(buffer);
+		}
+	}
+
+	static void writeHeader(ByteBuffer buffer, long count, double dt, double startX, double startY, double startTheta) {
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putLong(8, count);
+		buffer.putDouble(16, dt);
+		buffer.putDouble(24, startX);
+		buffer.putDouble(32, startY);
+		buffer.putDouble(40, startTheta);
+	}
+
+	static void writeSample(ByteBuffer buffer, int i, double time, double x, double y) {
+		int offset = HEADER_SIZE + i * SAMPLE_SIZE;
+		buffer.putDouble(offset, time);
+		buffer.putFloat(offset + 8, (float)x);
+		buffer.putFloat(offset + 12, (float)y);
+	}
+
+	int size()				{ return count; }
+	double getTime(int i)	{ return buffer.getDouble(HEADER_SIZE + i * SAMPLE_SIZE);	   }
+	double getX(int i)		{ return buffer.getFloat(HEADER_SIZE + i * SAMPLE_SIZE + 8);  }
+	double getY(int i)		{ return buffer.getFloat(HEADER_SIZE + i * SAMPLE_SIZE + 12); }
+
+	// Simulation step and robot pose when the trace was recorded (0 if unknown)
+	double getTimeStep()	{ return buffer.getDouble(16); }
+	double getStartX()		{ return buffer.getDouble(24); }
+	double getStartY()		{ return buffer.getDouble(32); }
+	double getStartTheta()	{ return buffer.getDouble(40); }
+
+	double getDuration() {
+		return count == 0 ? 0.0 : getTime(count - 1);
+	}
+
+	// Index of the sample that holds at the given time (-1 before the first sample). Starting
+	// from the index returned for an earlier time makes a sequential replay O(1) per step.
+	int indexAt(double time, int hint) {
+		int i = hint < 0 ? 0 : hint;
+		if(i < count && getTime(i) > time) {
+			i = 0;
+		}
+		while(i + 1 < count && getTime(i + 1) <= time) {
+			i++;
+		}
+		return i < count && getTime(i) <= time ? i : -1;
+	}
+}
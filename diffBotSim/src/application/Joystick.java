@@ -1,5 +1,6 @@
 package application;
 
+import javafx.animation.AnimationTimer;
 import javafx.event.EventHandler;
 import javafx.scene.control.Label;
 import javafx.scene.input.MouseEvent;
@@ -8,13 +9,24 @@ import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
 import javafx.scene.shape.Line;
 
-public class Joystick extends Pane{
+// Mouse joystick. The mouse events only publish the handle position into an InputCell, the
+// handle and the label are redrawn from the cell at most once per pulse, so a fast mouse
+// cannot flood the FX thread with layout and text updates. The redraw only runs while the
+// joystick is in a scene.
+public class Joystick extends Pane implements InputSource {
 	private double baseRadius;
 	private double handleRadius;
 	private double width;
 	private double height;
 	
-	private double handleX = 0, handleY = 0;
+	private final InputCell cell = new InputCell();
+	private long shownValue = InputCell.EMPTY;
+	private final AnimationTimer refresh = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			refresh();
+		}
+	};
 	
 	private Circle handle;
 	private Circle base;
@@ -27,7 +39,7 @@ public class Joystick extends Pane{
 		this(250, 250);
 	}
 	
-	private Joystick(double width, double height) {
+	public Joystick(double width, double height) {
 		this.height = height;
 		this.width = width;
 		this.setPrefSize(width, height);
@@ -53,43 +65,61 @@ public class Joystick extends Pane{
 	     
 	    handle.setOnMouseDragged(mouseDragged);
 	    handle.setOnMouseReleased(mouseReleased);
+	    
+	    cell.publish(0.0, 0.0);
+	    this.sceneProperty().addListener((observable, oldScene, newScene) -> {
+	    	if(newScene != null) {
+	    		refresh.start();
+	    	}
+	    	else {
+	    		refresh.stop();
+	    	}
+	    });
 	}
 	
 	private void mouseDragHandler(MouseEvent event) {
-		double mouseX = event.getX();
-        double mouseY = event.getY();
-        double deltaX = mouseX - width/2;
-        double deltaY = mouseY - height/2;
-        double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
-        
-        if (distance <= baseRadius) {
-        	handle.setCenterX(mouseX);
-        	handle.setCenterY(mouseY);
-		} else {
-		    double angle = Math.atan2(deltaY, deltaX);
-		    handle.setCenterX(width/2 + baseRadius * Math.cos(angle));
-		    handle.setCenterY(height/2 + baseRadius * Math.sin(angle));
-		}
-        
-		// Print the x and y values relative to the center (150, 150)
-		this.handleX = (handle.getCenterX() - width/2) / baseRadius;
-		this.handleY = -(handle.getCenterY() - height/2) / baseRadius;
-		String coordinates = String.format("%.2f, %.2f", this.handleX, this.handleY);
-
-		this.label.setText(coordinates);
+		// Position relative to the center, the handle stays inside the base
+		double x = (event.getX() - width/2) / baseRadius;
+		double y = -(event.getY() - height/2) / baseRadius;
+		this.setHandle(x, y);
 	}
 	
 	private void mouseReleaseHandler(MouseEvent event) {
-		handle.setCenterX(width/2);
-	    handle.setCenterY(height/2);
-	    this.handleX = 0.0;
-	    this.handleY = 0.0;
+		cell.publish(0.0, 0.0);
+	}
+	
+	// Move the handle programmatically, x and y are in [-1, 1] like getHandleX()/getHandleY()
+	void setHandle(double x, double y) {
+		double distance = Math.sqrt(x*x + y*y);
+		if(distance > 1.0) {
+			x /= distance;
+			y /= distance;
+		}
+		cell.publish(x, y);
+	}
+	
+	// Redraw the handle and the label if the position changed since the last pulse
+	private void refresh() {
+		long value = cell.get();
+		if(value == this.shownValue) {
+			return;
+		}
+		this.shownValue = value;
+		double x = InputCell.x(value), y = InputCell.y(value);
+		handle.setCenterX(width/2 + x * baseRadius);
+		handle.setCenterY(height/2 - y * baseRadius);
+		this.label.setText(String.format("%.2f, %.2f", x, y));
+	}
+	
+	@Override
+	public long sample(double time) {
+		return cell.get();
 	}
 	
 	public double getHandleX() {
-		return this.handleX;
+		return InputCell.x(cell.get());
 	}
 	public double getHandleY() {
-		return this.handleY;
+		return InputCell.y(cell.get());
 	}
 }
@@ -1,11 +1,12 @@
 package application;
 
-public class JoystickRobotLogic {
-	public JoystickRobotLogic(RobotGraphics robot, Joystick joystick) {
-		double joystickX = joystick.getHandleX();
-		double joystickY = joystick.getHandleY();
-		double maxRightVel = robot.getMaxRightWheelSpeed();
-		double maxLeftVel = robot.getMaxLeftWheelSpeed();
+public class JoystickRobotLogic implements ControlLaw {
+	@Override
+	public void compute(ControlInput input, WheelCommand output) {
+		double joystickX = input.joystickX;
+		double joystickY = input.joystickY;
+		double maxRightVel = input.maxRightWheelSpeed;
+		double maxLeftVel = input.maxLeftWheelSpeed;
 		double rightWheelVel = 0.0;
 		double leftWheelVel = 0.0;
 		
@@ -18,6 +19,7 @@ public class JoystickRobotLogic {
             leftWheelVel = (leftWheelVel / maxWheelVel) * maxLeftVel;
             rightWheelVel = (rightWheelVel / maxWheelVel) * maxRightVel;
         }		
-		robot.setWheelsSpeed(leftWheelVel, rightWheelVel);
+		output.leftWheelSpeed = leftWheelVel;
+		output.rightWheelSpeed = rightWheelVel;
 	}
 }
@@ -0,0 +1,275 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import javax.imageio.ImageIO;
+
+// Characterization of a joystick mapping: the law is evaluated on a regular grid of the joystick
+// square, rows in parallel, and for every point gives the wheel speeds, the body twist (v, omega),
+// whether a wheel is saturated and the turning radius. The joystick itself is limited to the unit
+// disk, the points outside of it are only kept for the interpolation of a LookupControlLaw.
+public class JoystickSweep {
+	private final Supplier<ControlLaw> law;
+	private final double leftWheelRadius, rightWheelRadius, wheelsSeparation;
+	private final double maxLeftWheelSpeed, maxRightWheelSpeed;
+
+	// The engine gives the wheels and their limits, each row of the sweep gets its own ControlLaw
+	public JoystickSweep(SimulationEngine robot, Supplier<ControlLaw> law) {
+		if(!robot.isConfigured()) {
+			throw new IllegalArgumentException("The engine is not fully configured");
+		}
+		this.law = law;
+		this.leftWheelRadius = robot.getLeftWheelRadius();
+		this.rightWheelRadius = robot.getRightWheelRadius();
+		this.wheelsSeparation = robot.getWheelsSeparation();
+		this.maxLeftWheelSpeed = robot.getMaxLeftWheelSpeed();
+		this.maxRightWheelSpeed = robot.getMaxRightWheelSpeed();
+	}
+
+	// Grids of resolution x resolution points, row major, row 0 at joystickY = -1 and column 0 at
+	// joystickX = -1
+	public static class Result {
+		private static final int	OUTSIDE_COLOR = 0x303030;
+		private static final int	SATURATED_COLOR = 0xE08020, FREE_COLOR = 0xD0D0D0;
+
+		public final int resolution;
+		public final double maxLeftWheelSpeed, maxRightWheelSpeed;	// rad/s
+		public final double[] leftWheelSpeed, rightWheelSpeed;		// rad/s
+		public final double[] linearVel;							// m/s
+		public final double[] angularVel;							// rad/s
+		public final double[] turningRadius;						// m, infinite when going straight
+		public final boolean[] saturated;
+
+		Result(int resolution, double maxLeftWheelSpeed, double maxRightWheelSpeed) {
+			int n = resolution * resolution;
+			this.resolution = resolution;
+			this.maxLeftWheelSpeed = maxLeftWheelSpeed;
+			this.maxRightWheelSpeed = maxRightWheelSpeed;
+			this.leftWheelSpeed = new double[n];
+			this.rightWheelSpeed = new double[n];
+			this.linearVel = new double[n];
+			this.angularVel = new double[n];
+			this.turningRadius = new double[n];
+			this.saturated = new boolean[n];
+		}
+
+		public double getJoystickX(int column)	{ return gridValue(column, resolution); }
+		public double getJoystickY(int row)		{ return gridValue(row, resolution); }
+
+		public boolean isInDisk(int column, int row) {
+			double x = getJoystickX(column), y = getJoystickY(row);
+			return x*x + y*y <= 1.0;
+		}
+
+		// Diverging heatmap of a grid, negative values in blue and positive ones in red, clamped at
+		// +/- limit. The top of the image is joystickY = 1 and the points out of the disk are grey.
+		public BufferedImage heatmap(double[] values, double limit) {
+			BufferedImage image = new BufferedImage(resolution, resolution, BufferedImage.TYPE_INT_RGB);
+			for(int row = 0; row < resolution; row++) {
+				for(int column = 0; column < resolution; column++) {
+					int color = OUTSIDE_COLOR;
+					if(isInDisk(column, row)) {
+						color = divergingColor(values[row * resolution + column] / limit);
+					}
+					image.setRGB(column, resolution - 1 - row, color);
+				}
+			}
+			return image;
+		}
+
+		public BufferedImage saturationMap() {
+			BufferedImage image = new BufferedImage(resolution, resolution, BufferedImage.TYPE_INT_RGB);
+			for(int row = 0; row < resolution; row++) {
+				for(int column = 0; column < resolution; column++) {
+					int color = OUTSIDE_COLOR;
+					if(isInDisk(column, row)) {
+						color = saturated[row * resolution + column] ? SATURATED_COLOR : FREE_COLOR;
+					}
+					image.setRGB(column, resolution - 1 - row, color);
+				}
+			}
+			return image;
+		}
+
+		// Writes one PNG per quantity, the turning radius is clamped at radiusLimit meters
+		public void writeHeatmaps(Path directory, double radiusLimit) throws IOException {
+			double maxWheelSpeed = Math.max(maxLeftWheelSpeed, maxRightWheelSpeed);
+			Files.createDirectories(directory);
+			write(heatmap(leftWheelSpeed, maxLeftWheelSpeed), directory.resolve("left_wheel_speed.png"));
+			write(heatmap(rightWheelSpeed, maxRightWheelSpeed), directory.resolve("right_wheel_speed.png"));
+			write(heatmap(linearVel, maxAbs(linearVel, maxWheelSpeed)), directory.resolve("linear_vel.png"));
+			write(heatmap(angularVel, maxAbs(angularVel, maxWheelSpeed)), directory.resolve("angular_vel.png"));
+			write(heatmap(turningRadius, radiusLimit), directory.resolve("turning_radius.png"));
+			write(saturationMap(), directory.resolve("saturation.png"));
+		}
+
+		// Fraction (0 to 1) of the joystick disk where a wheel is saturated
+		public double getSaturatedFraction() {
+			int inDisk = 0, count = 0;
+			for(int row = 0; row < resolution; row++) {
+				for(int column = 0; column < resolution; column++) {
+					if(isInDisk(column, row)) {
+						inDisk++;
+						count += saturated[row * resolution + column] ? 1 : 0;
+					}
+				}
+			}
+			return (double)count / inDisk;
+		}
+
+		// Table of the wheel speeds, as fractions of their maximum, for a LookupControlLaw
+		public LookupControlLaw toLookupTable() {
+			float[] table = new float[2 * resolution * resolution];
+			for(int i = 0; i < resolution * resolution; i++) {
+				table[2*i] = (float)(leftWheelSpeed[i] / maxLeftWheelSpeed);
+				table[2*i + 1] = (float)(rightWheelSpeed[i] / maxRightWheelSpeed);
+			}
+			return new LookupControlLaw(resolution, table);
+		}
+
+		// The largest magnitude of a grid inside the disk, fallback when it is all zeros
+		private double maxAbs(double[] values, double fallback) {
+			double max = 0.0;
+			for(int row = 0; row < resolution; row++) {
+				for(int column = 0; column < resolution; column++) {
+					if(isInDisk(column, row)) {
+						max = Math.max(max, Math.abs(values[row * resolution + column]));
+					}
+				}
+			}
+			return max > 0.0 ? max : fallback;
+		}
+
+		private static void write(BufferedImage image, Path file) throws IOException {
+			ImageIO.write(image, "png", file.toFile());
+		}
+
+		// -1 blue, 0 white, 1 red
+		private static int divergingColor(double value) {
+			double t = Math.max(-1.0, Math.min(1.0, value));
+			int fade = (int)Math.round(255 * (1.0 - Math.abs(t)));
+			return t >= 0 ? 0xFF0000 | fade << 8 | fade : fade << 16 | fade << 8 | 0xFF;
+		}
+	}
+
+	// Difference of the wheel speeds of two laws, in rad/s
+	public static class Deviation {
+		public final long points;
+		public final double maxError;
+		public final double rmsError;
+		public final double worstX, worstY;		// joystick position of the max error
+
+		Deviation(long points, double maxError, double rmsError, double worstX, double worstY) {
+			this.points = points;
+			this.maxError = maxError;
+			this.rmsError = rmsError;
+			this.worstX = worstX;
+			this.worstY = worstY;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d points, max error %.5f rad/s at (%.3f, %.3f), rms error %.5f rad/s",
+					points, maxError, worstX, worstY, rmsError);
+		}
+	}
+
+	public Result run(int resolution) {
+		if(resolution < 2) {
+			throw new IllegalArgumentException("The resolution must be at least 2");
+		}
+		Result result = new Result(resolution, maxLeftWheelSpeed, maxRightWheelSpeed);
+		IntStream.range(0, resolution).parallel().forEach(row -> {
+			ControlLaw law = this.law.get();
+			ControlInput input = this.newInput();
+			WheelCommand output = new WheelCommand();
+			input.joystickY = gridValue(row, resolution);
+			for(int column = 0; column < resolution; column++) {
+				input.joystickX = gridValue(column, resolution);
+				law.compute(input, output);
+				this.record(result, row * resolution + column, output.leftWheelSpeed, output.rightWheelSpeed);
+			}
+		});
+		return result;
+	}
+
+	// Compares the law of the sweep with another one at the centers of the cells of a grid inside
+	// the disk, so that none of the points falls on the nodes of a lookup table
+	public Deviation compare(Supplier<ControlLaw> other, int resolution) {
+		if(resolution < 2) {
+			throw new IllegalArgumentException("The resolution must be at least 2");
+		}
+		double[] rowMax = new double[resolution], rowSquares = new double[resolution];
+		int[] rowWorst = new int[resolution];
+		long[] rowPoints = new long[resolution];
+		IntStream.range(0, resolution).parallel().forEach(row -> {
+			ControlLaw expected = this.law.get(), actual = other.get();
+			ControlInput input = this.newInput();
+			WheelCommand expectedOutput = new WheelCommand(), actualOutput = new WheelCommand();
+			input.joystickY = cellCenter(row, resolution);
+			for(int column = 0; column < resolution; column++) {
+				input.joystickX = cellCenter(column, resolution);
+				if(input.joystickX * input.joystickX + input.joystickY * input.joystickY > 1.0) {
+					continue;
+				}
+				expected.compute(input, expectedOutput);
+				actual.compute(input, actualOutput);
+				double error = Math.max(Math.abs(expectedOutput.leftWheelSpeed - actualOutput.leftWheelSpeed),
+						Math.abs(expectedOutput.rightWheelSpeed - actualOutput.rightWheelSpeed));
+				if(error > rowMax[row] || rowPoints[row] == 0) {
+					rowMax[row] = error;
+					rowWorst[row] = column;
+				}
+				rowSquares[row] += error * error;
+				rowPoints[row]++;
+			}
+		});
+
+		long points = 0;
+		double squares = 0.0, maxError = 0.0;
+		int worstRow = resolution / 2;
+		for(int row = 0; row < resolution; row++) {
+			points += rowPoints[row];
+			squares += rowSquares[row];
+			if(rowPoints[row] > 0 && rowMax[row] >= maxError) {
+				maxError = rowMax[row];
+				worstRow = row;
+			}
+		}
+		return new Deviation(points, maxError, Math.sqrt(squares / Math.max(1, points)),
+				cellCenter(rowWorst[worstRow], resolution), cellCenter(worstRow, resolution));
+	}
+
+	private ControlInput newInput() {
+		ControlInput input = new ControlInput();
+		input.maxLeftWheelSpeed = maxLeftWheelSpeed;
+		input.maxRightWheelSpeed = maxRightWheelSpeed;
+		return input;
+	}
+
+	private void record(Result result, int i, double left, double right) {
+		double v = DFKEquation.computeLinearVel(rightWheelRadius, leftWheelRadius, right, left);
+		double omega = DFKEquation.computeAngularVel(rightWheelRadius, leftWheelRadius, right, left, wheelsSeparation);
+		result.leftWheelSpeed[i] = left;
+		result.rightWheelSpeed[i] = right;
+		result.linearVel[i] = v;
+		result.angularVel[i] = omega;
+		result.turningRadius[i] = omega == 0.0 ? Double.POSITIVE_INFINITY : v / omega;
+		// same threshold as the saturation time of the Tournament
+		result.saturated[i] = Math.abs(left) >= maxLeftWheelSpeed * 0.999 || Math.abs(right) >= maxRightWheelSpeed * 0.999;
+	}
+
+	// Node i of n evenly spaced nodes over [-1, 1]
+	static double gridValue(int i, int n) {
+		return -1.0 + 2.0 * i / (n - 1);
+	}
+
+	private static double cellCenter(int i, int n) {
+		return -1.0 + (2.0 * i + 1.0) / n;
+	}
+}
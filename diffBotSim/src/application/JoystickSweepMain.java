@@ -0,0 +1,54 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+
+// Sweeps JoystickRobotLogic, writes its heatmaps and a lookup table, then checks that the table
+// drives the robot like the analytic law
+//   JoystickSweepMain [output dir] [heatmap resolution] [table resolution]
+public class JoystickSweepMain {
+	public static void main(String[] args) throws IOException {
+		Path directory = Paths.get(args.length > 0 ? args[0] : "sweep");
+		int resolution = args.length > 1 ? Integer.parseInt(args[1]) : 1025;
+		int tableResolution = args.length > 2 ? Integer.parseInt(args[2]) : 33;
+
+		SimulationEngine engine = new SimulationEngine();
+		// Units are SI (meters, radians, seconds), same robot as Main
+		engine.setRobotLength(2.2);
+		engine.setWheelsSeparation(1.6);
+		engine.setWheelsRadius(0.4, 0.4);
+		engine.setWorkspaceDimensions(32, 16);
+		engine.setRobotPose(8, 1.9);
+		engine.setRobotOrientation(Math.PI / 2);
+		engine.setMaxWheelsSpeed(29.0, 29.0);
+
+		JoystickSweep sweep = new JoystickSweep(engine, JoystickRobotLogic::new);
+		long start = System.nanoTime();
+		JoystickSweep.Result result = sweep.run(resolution);
+		System.out.printf("Swept %d points in %.1f ms, wheel saturated on %.1f%% of the disk%n",
+				resolution * resolution, (System.nanoTime() - start) / 1e6, 100 * result.getSaturatedFraction());
+		result.writeHeatmaps(directory, 5 * engine.getWheelsSeparation());
+
+		LookupControlLaw table = sweep.run(tableResolution).toLookupTable();
+		table.write(directory.resolve("joystick_table.bin"));
+		System.out.printf("Lookup table %dx%d, %d bytes%n", tableResolution, tableResolution, table.getSize());
+		System.out.println("Open loop: " + sweep.compare(() -> table, resolution));
+
+		// Closed loop: both laws on the same random joystick traces
+		Tournament tournament = new Tournament(engine);
+		tournament.setTargetHeading(0.0, 0.05);
+		tournament.addStrategy("JoystickRobotLogic", JoystickRobotLogic::new);
+		tournament.addStrategy("LookupControlLaw", () -> table);
+		Random random = new Random(7);
+		for(int i = 0; i < 200; i++) {
+			tournament.addTrace(TournamentMain.randomTrace(random, 30.0, 0.5));
+		}
+		List<Tournament.Result> results = tournament.run();
+		for(Tournament.Result closedLoop : results) {
+			System.out.println(closedLoop);
+		}
+	}
+}
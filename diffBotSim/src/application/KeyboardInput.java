@@ -0,0 +1,36 @@
+package application;
+
+import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
+
+// Drives the robot with the arrow keys (or WASD) of a scene: up/down for y, left/right for x.
+// Holding two keys gives a diagonal, which is normalized like the joystick handle.
+public class KeyboardInput implements InputSource {
+	private final InputCell cell = new InputCell();
+	private boolean isUp, isDown, isLeft, isRight;
+
+	public KeyboardInput(Scene scene) {
+		scene.addEventHandler(KeyEvent.KEY_PRESSED, e -> this.setKey(e, true));
+		scene.addEventHandler(KeyEvent.KEY_RELEASED, e -> this.setKey(e, false));
+		cell.publish(0.0, 0.0);
+	}
+
+	private void setKey(KeyEvent event, boolean isPressed) {
+		switch(event.getCode()) {
+			case UP: case W:	this.isUp = isPressed;		break;
+			case DOWN: case S:	this.isDown = isPressed;	break;
+			case LEFT: case A:	this.isLeft = isPressed;	break;
+			case RIGHT: case D:	this.isRight = isPressed;	break;
+			default: return;
+		}
+		double x = (isRight ? 1 : 0) - (isLeft ? 1 : 0);
+		double y = (isUp ? 1 : 0) - (isDown ? 1 : 0);
+		double norm = x != 0 && y != 0 ? Math.sqrt(0.5) : 1.0;
+		cell.publish(x * norm, y * norm);
+	}
+
+	@Override
+	public long sample(double time) {
+		return cell.get();
+	}
+}
@@ -0,0 +1,74 @@
+package application;
+
+import java.util.Arrays;
+
+// Fixed size histogram of durations in nanoseconds with about 6% resolution over the whole
+// long range: values below 32 ns have their own bucket, above that every power of two is split
+// in 16 linear buckets. Recording is O(1) and does not allocate.
+public class LatencyHistogram {
+	private static final int SUB_BUCKETS = 16;
+	private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long max = 0;
+	private long sum = 0;
+
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[index(value)]++;
+		count++;
+		sum += value;
+		if(value > max) {
+			max = value;
+		}
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		max = 0;
+		sum = 0;
+	}
+
+	long getCount()	{ return this.count; }
+	long getMax()	{ return this.max;	 }
+
+	double getMean() {
+		return count == 0 ? 0.0 : (double)sum / count;
+	}
+
+	// Value below which the given fraction (0 to 1) of the recorded values fall
+	long getPercentile(double fraction) {
+		if(count == 0) {
+			return 0;
+		}
+		long rank = (long)Math.ceil(fraction * count);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if(seen >= Math.max(1, rank)) {
+				return Math.min(max, middle(i));
+			}
+		}
+		return max;
+	}
+
+	private static int index(long value) {
+		if(value < 2 * SUB_BUCKETS) {
+			return (int)value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int)(value >>> (exponent - 4));	// in [16, 32)
+		return (exponent - 4) * SUB_BUCKETS + mantissa;
+	}
+
+	private static long middle(int index) {
+		if(index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKETS + 3;
+		long lower = (long)(index % SUB_BUCKETS + SUB_BUCKETS) << (exponent - 4);
+		return lower + (1L << (exponent - 5));
+	}
+}
@@ -0,0 +1,204 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+// Simulated 2D lidar mounted on the pose of the robot. Attached to a SimulationEngine with
+// setLidar(), it scans every 1/rate simulated seconds and the latest scan is given to the
+// ControlLaw through ControlInput.scan.
+//
+// Every beam walks the cells of the occupancy grid and of the obstacle index it crosses (DDA),
+// so its cost depends on the range and not on the size of the map. Large scans are split in
+// chunks of beams cast in parallel on the common fork/join pool. The noise is drawn from a
+// counter based generator, so a scan only depends on the pose, the seed and the scan number
+// and a replay gives the same scans whatever the threads did.
+public class Lidar {
+	private static final int	CHUNK_BEAMS = 64;
+	private static final double	TIME_EPSILON = 1e-9;
+
+	private final int		beams;
+	private final double	fieldOfView, firstAngle, angleStep, maxRange;
+	private final double	rate, period;
+	private final double[]	beamCos, beamSin;	// beam directions in the robot frame
+	private double			noise = 0.0;	// standard deviation of the range noise (m)
+	private long			seed = 0;
+
+	private long			scanCount = 0;
+	private double			nextScanTime = 0.0;
+	private long			lastScanNanos;
+	private volatile LidarScan latest;
+
+	// fieldOfView in (0, 2*pi] centered on the heading, maxRange in m, rate in Hz (simulated time)
+	public Lidar(int beams, double fieldOfView, double maxRange, double rate) {
+		if(beams < 1) {
+			throw new IllegalArgumentException("A lidar needs at least one beam");
+		}
+		if(fieldOfView <= 0 || fieldOfView > 2*Math.PI) {
+			throw new IllegalArgumentException("Field of view must be in (0, 2*pi]");
+		}
+		if(maxRange <= 0 || rate <= 0) {
+			throw new IllegalArgumentException("Range and rate must be > 0");
+		}
+		this.beams = beams;
+		this.fieldOfView = fieldOfView;
+		this.maxRange = maxRange;
+		this.rate = rate;
+		this.period = 1.0 / rate;
+		// a full turn does not repeat its first beam
+		boolean isFullTurn = fieldOfView > 2*Math.PI - 1e-9;
+		this.angleStep = beams == 1 ? 0.0 : fieldOfView / (isFullTurn ? beams : beams - 1);
+		this.firstAngle = beams == 1 ? 0.0 : isFullTurn ? -Math.PI : -fieldOfView/2;
+		this.beamCos = new double[beams];
+		this.beamSin = new double[beams];
+		for(int i = 0; i < beams; i++) {
+			beamCos[i] = Math.cos(firstAngle + i * angleStep);
+			beamSin[i] = Math.sin(firstAngle + i * angleStep);
+		}
+	}
+
+	// Same configuration and noise as another lidar, without its scans
+	public Lidar(Lidar other) {
+		this(other.beams, other.fieldOfView, other.maxRange, other.rate);
+		this.setNoise(other.noise, other.seed);
+	}
+
+	// Gaussian range noise, 0 (default) for exact ranges
+	public void setNoise(double standardDeviation, long seed) {
+		if(standardDeviation < 0) {
+			throw new IllegalArgumentException("Noise must be >= 0");
+		}
+		this.noise = standardDeviation;
+		this.seed = seed;
+	}
+
+	// Latest scan, null before the first one
+	public LidarScan getLatestScan()	{ return this.latest;	}
+	int getBeamCount()					{ return this.beams;	}
+	double getMaxRange()				{ return this.maxRange;	}
+	long getLastScanNanos()				{ return this.lastScanNanos; }
+
+	// Scan schedule, noise counter and latest scan, see SimulationEngine.writeState()
+	int getStateSize() {
+		return 8 + 8 + 4 + 4 * 8 + beams * 8;
+	}
+
+	void writeState(ByteBuffer buffer) {
+		LidarScan latest = this.latest;
+		buffer.putLong(scanCount).putDouble(nextScanTime).putInt(latest != null ? beams : 0);
+		if(latest != null) {
+			buffer.putDouble(latest.time).putDouble(latest.x).putDouble(latest.y).putDouble(latest.theta);
+			for(int i = 0; i < beams; i++) {
+				buffer.putDouble(latest.ranges[i]);
+			}
+		}
+		else {
+			buffer.position(buffer.position() + 4 * 8 + beams * 8);
+		}
+	}
+
+	void readState(ByteBuffer buffer) {
+		this.scanCount = buffer.getLong();
+		this.nextScanTime = buffer.getDouble();
+		int count = buffer.getInt();
+		if(count == 0) {
+			buffer.position(buffer.position() + 4 * 8 + beams * 8);
+			this.latest = null;
+			return;
+		}
+		if(count != beams) {
+			throw new IllegalArgumentException("The state is from a lidar with " + count + " beams");
+		}
+		double time = buffer.getDouble(), x = buffer.getDouble(), y = buffer.getDouble(), theta = buffer.getDouble();
+		double[] ranges = new double[beams];
+		for(int i = 0; i < beams; i++) {
+			ranges[i] = buffer.getDouble();
+		}
+		this.latest = new LidarScan(time, x, y, theta, firstAngle, angleStep, maxRange, ranges);
+	}
+
+	// Called by the engine, scans when the next scan is due or when the time went backwards
+	void update(SimulationEngine engine) {
+		double time = engine.getTime();
+		LidarScan latest = this.latest;
+		boolean isRewound = latest != null && time < latest.time;
+		if(latest != null && !isRewound && time < nextScanTime - TIME_EPSILON) {
+			return;
+		}
+		// a late scan does not make the next ones come in a burst
+		this.nextScanTime = isRewound || nextScanTime + period <= time ? time + period : nextScanTime + period;
+		this.latest = this.scan(engine);
+	}
+
+	// Scan from the current pose of the engine, against its walls, map and obstacles
+	LidarScan scan(SimulationEngine engine) {
+		long start = System.nanoTime();
+		double x = engine.getRobotXPose(), y = engine.getRobotYPose(), theta = engine.getRobotOrientation();
+		double[] ranges = new double[beams];
+		long scanIndex = scanCount++;
+		if(beams > CHUNK_BEAMS) {
+			IntStream.range(0, (beams + CHUNK_BEAMS - 1) / CHUNK_BEAMS).parallel().forEach(chunk ->
+					this.cast(engine, x, y, theta, scanIndex, ranges, chunk * CHUNK_BEAMS, Math.min(beams, (chunk + 1) * CHUNK_BEAMS)));
+		}
+		else {
+			this.cast(engine, x, y, theta, scanIndex, ranges, 0, beams);
+		}
+		this.lastScanNanos = System.nanoTime() - start;
+		return new LidarScan(engine.getTime(), x, y, theta, firstAngle, angleStep, maxRange, ranges);
+	}
+
+	private void cast(SimulationEngine engine, double x, double y, double theta, long scanIndex,
+			double[] ranges, int first, int last) {
+		double cos = Math.cos(theta), sin = Math.sin(theta);
+		double width = engine.getWorkspaceWidth(), height = engine.getWorkspaceHeight();
+		ObstacleMap obstacles = engine.getObstacles();
+		OccupancyGrid map = engine.getMap();
+		for(int i = first; i < last; i++) {
+			// beam direction rotated to the world frame
+			double dx = cos * beamCos[i] - sin * beamSin[i];
+			double dy = sin * beamCos[i] + cos * beamSin[i];
+
+			// workspace walls
+			double range = maxRange;
+			if(dx > 0.0) {
+				range = Math.min(range, (width - x) / dx);
+			}
+			else if(dx < 0.0) {
+				range = Math.min(range, -x / dx);
+			}
+			if(dy > 0.0) {
+				range = Math.min(range, (height - y) / dy);
+			}
+			else if(dy < 0.0) {
+				range = Math.min(range, -y / dy);
+			}
+			if(map != null) {
+				range = Math.min(range, map.rayDistance(x, y, dx, dy, range));
+			}
+			if(obstacles != null) {
+				range = Math.min(range, obstacles.rayDistance(x, y, dx, dy, range));
+			}
+			range = Math.max(0.0, range);
+
+			if(this.noise > 0.0 && range < maxRange) {
+				range = Math.min(maxRange, Math.max(0.0, range + noise * gaussian(seed, scanIndex * beams + i)));
+			}
+			ranges[i] = range;
+		}
+	}
+
+	// Standard normal sample that only depends on the seed and the counter (SplitMix64 and
+	// Box-Muller), so that the beams can be cast in any order on any thread
+	private static double gaussian(long seed, long counter) {
+		long a = mix(seed + counter * 0x9E3779B97F4A7C15L);
+		long b = mix(a);
+		double u1 = ((a >>> 11) + 1) * 0x1.0p-53;	// (0, 1]
+		double u2 = (b >>> 11) * 0x1.0p-53;
+		return Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
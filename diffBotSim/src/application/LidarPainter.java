@@ -0,0 +1,50 @@
+package application;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// Draws the latest LidarScan on a canvas: the beams from the pose of the scan as faint lines
+// and the hits as dots. Hits outside of the camera view are skipped.
+abstract class LidarPainter {
+	private static final Color BEAM_COLOR = Color.rgb(255, 0, 0, 0.12);
+	private static final double HIT_SIZE = 2.0;
+
+	public static void paint(GraphicsContext gc, LidarScan scan, RobotGraphics robot) {
+		Camera camera = robot.getCamera();
+		double windowWidth_ = robot.getWindowWidth();
+		double windowHeight_ = robot.getWindowHeight();
+		double originX_ = camera.toScreenX(scan.x);
+		double originY_ = camera.toScreenY(scan.y);
+		int beams = scan.getBeamCount();
+
+		gc.setLineWidth(1);
+		gc.setStroke(BEAM_COLOR);
+		gc.beginPath();
+		for(int i = 0; i < beams; i++) {
+			gc.moveTo(originX_, originY_);
+			gc.lineTo(hitScreenX(camera, scan, i), hitScreenY(camera, scan, i));
+		}
+		gc.stroke();
+
+		gc.setFill(Color.RED);
+		for(int i = 0; i < beams; i++) {
+			if(!scan.isHit(i)) {
+				continue;
+			}
+			double x_ = hitScreenX(camera, scan, i);
+			double y_ = hitScreenY(camera, scan, i);
+			if(x_ < 0 || y_ < 0 || x_ > windowWidth_ || y_ > windowHeight_) {
+				continue;
+			}
+			gc.fillRect(x_ - HIT_SIZE/2, y_ - HIT_SIZE/2, HIT_SIZE, HIT_SIZE);
+		}
+	}
+
+	// End of beam i on the screen
+	private static double hitScreenX(Camera camera, LidarScan scan, int i) {
+		return camera.toScreenX(scan.x + scan.ranges[i] * Math.cos(scan.theta + scan.getAngle(i)));
+	}
+	private static double hitScreenY(Camera camera, LidarScan scan, int i) {
+		return camera.toScreenY(scan.y + scan.ranges[i] * Math.sin(scan.theta + scan.getAngle(i)));
+	}
+}
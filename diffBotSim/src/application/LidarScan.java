@@ -0,0 +1,41 @@
+package application;
+
+// Immutable result of one Lidar scan. Beam i points at getAngle(i) radians from the heading of
+// the robot (counterclockwise), its range is the distance to the first wall or obstacle, or
+// getMaxRange() when nothing was hit.
+public final class LidarScan {
+	final double	time;			// simulated time of the scan (s)
+	final double	x, y, theta;	// pose the scan was taken from
+	final double	firstAngle, angleStep, maxRange;
+	final double[]	ranges;
+
+	LidarScan(double time, double x, double y, double theta,
+			double firstAngle, double angleStep, double maxRange, double[] ranges) {
+		this.time = time;
+		this.x = x;
+		this.y = y;
+		this.theta = theta;
+		this.firstAngle = firstAngle;
+		this.angleStep = angleStep;
+		this.maxRange = maxRange;
+		this.ranges = ranges;
+	}
+
+	public int getBeamCount()		{ return ranges.length;	}
+	public double getRange(int i)	{ return ranges[i];		}
+	public double getAngle(int i)	{ return firstAngle + i * angleStep; }
+	public double getMaxRange()		{ return this.maxRange;	}
+	public double getTime()			{ return this.time;		}
+	public boolean isHit(int i)		{ return ranges[i] < maxRange; }
+
+	// Shortest range of the beams between the two angles (rad, relative to the heading)
+	public double getMinRange(double fromAngle, double toAngle) {
+		int first = Math.max(0, (int)Math.ceil((fromAngle - firstAngle) / angleStep));
+		int last = Math.min(ranges.length - 1, (int)Math.floor((toAngle - firstAngle) / angleStep));
+		double min = maxRange;
+		for(int i = first; i <= last; i++) {
+			min = Math.min(min, ranges[i]);
+		}
+		return min;
+	}
+}
@@ -0,0 +1,77 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// ControlLaw read from a table of wheel speeds sampled on a regular grid of the joystick square
+// (JoystickSweep.Result.toLookupTable) and bilinearly interpolated, the way a firmware would map
+// the joystick with a table instead of the analytic law. The speeds are stored as fractions of
+// the maximum wheel speeds and scaled by the limits of the input. The table is written as a
+// little endian int resolution followed by the left and right fractions of every node as floats.
+public class LookupControlLaw implements ControlLaw {
+	private final int resolution;
+	private final float[] table;	// left and right interleaved, row major from joystickY = -1
+	private final double scale;		// nodes per joystick unit
+
+	LookupControlLaw(int resolution, float[] table) {
+		if(resolution < 2 || table.length != 2 * resolution * resolution) {
+			throw new IllegalArgumentException("The table does not match its resolution");
+		}
+		this.resolution = resolution;
+		this.table = table;
+		this.scale = (resolution - 1) / 2.0;
+	}
+
+	@Override
+	public void compute(ControlInput input, WheelCommand output) {
+		double x = (Math.max(-1.0, Math.min(1.0, input.joystickX)) + 1.0) * scale;
+		double y = (Math.max(-1.0, Math.min(1.0, input.joystickY)) + 1.0) * scale;
+		int column = Math.min((int)x, resolution - 2);
+		int row = Math.min((int)y, resolution - 2);
+		double tx = x - column;
+		double ty = y - row;
+
+		int bottom = 2 * (row * resolution + column);
+		int top = bottom + 2 * resolution;
+		double left = lerp(lerp(table[bottom], table[bottom + 2], tx), lerp(table[top], table[top + 2], tx), ty);
+		double right = lerp(lerp(table[bottom + 1], table[bottom + 3], tx), lerp(table[top + 1], table[top + 3], tx), ty);
+		output.leftWheelSpeed = left * input.maxLeftWheelSpeed;
+		output.rightWheelSpeed = right * input.maxRightWheelSpeed;
+	}
+
+	public int getResolution() {
+		return this.resolution;
+	}
+
+	// Size of the table in bytes
+	public int getSize() {
+		return 4 + 4 * table.length;
+	}
+
+	public void write(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(getSize()).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(resolution);
+		for(float value : table) {
+			buffer.putFloat(value);
+		}
+		Files.write(file, buffer.array());
+	}
+
+	public static LookupControlLaw read(Path file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		int resolution = buffer.getInt();
+		if(resolution < 2 || buffer.remaining() != 8L * resolution * resolution) {
+			throw new IOException("Not a lookup table: " + file);
+		}
+		float[] table = new float[2 * resolution * resolution];
+		buffer.asFloatBuffer().get(table);
+		return new LookupControlLaw(resolution, table);
+	}
+
+	private static double lerp(double a, double b, double t) {
+		return a + (b - a) * t;
+	}
+}
@@ -5,6 +5,7 @@ import javax.naming.CannotProceedException;
 import javafx.application.Application;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
+import javafx.scene.layout.BorderPane;
 
 
 public class Main extends Application {
@@ -25,9 +26,13 @@ public class Main extends Application {
 		robot.setMaxWheelsSpeed(29.0, 29.0);
 		robot.showTrailer(true);
 		robot.connectJoystick(joystick);
+		// the last minute of the run, one snapshot every 0.1 s
+		robot.enableRewind(600, 0.1);
 		robot.startAnimation();
 		
-		Scene scene = new Scene(robot,800,400);
+		BorderPane root = new BorderPane(robot);
+		root.setBottom(new RewindBar(robot));
+		Scene scene = new Scene(root,800,435);
 		primaryStage.setScene(scene);
 		primaryStage.setTitle("Differential Robot Simulator");
 		primaryStage.show();
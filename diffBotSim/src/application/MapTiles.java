@@ -0,0 +1,158 @@
+package application;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+// Draws an OccupancyGrid as cached image tiles of TILE x TILE pixels. A tile is built at the
+// level of detail of the current scale (level n: a pixel covers 2^n x 2^n cells and keeps the
+// darkest of them, so thin walls stay visible) and only the tiles in view are built and drawn.
+// The most recently used tiles are kept, the others are dropped.
+//
+// From level PYRAMID_BASE on, the darkest cells come from a pyramid built once per level: the
+// base level is reduced from the map in one pass over its rows, every other level from the one
+// below it, 2 x 2 cells into 1. The finer levels read the map directly. The pyramid takes 1/48
+// of the size of the map.
+class MapTiles {
+	static final int TILE = 256;
+	private static final int MAX_TILES = 64;
+	private static final int PYRAMID_BASE = 3;
+
+	private final OccupancyGrid map;
+	private final int[] pixels = new int[TILE * TILE];
+	// darkest cell of each 2^level x 2^level block, one array per row, built on first use
+	private final byte[][][] pyramid = new byte[31][][];
+	private final Map<Long, WritableImage> tiles = new LinkedHashMap<Long, WritableImage>(MAX_TILES, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, WritableImage> eldest) {
+			return size() > MAX_TILES;
+		}
+	};
+
+	MapTiles(OccupancyGrid map) {
+		this.map = map;
+	}
+
+	OccupancyGrid getMap() {
+		return this.map;
+	}
+
+	// Draw the part of the map inside the given workspace rectangle (m)
+	void paint(GraphicsContext gc, RobotGraphics robot, double viewMinX, double viewMinY, double viewMaxX, double viewMaxY) {
+		double resolution = map.getResolution();
+		double cellWidth_ = DimensionsMapper.metersToPixelsX(robot, resolution);
+		double cellHeight_ = DimensionsMapper.metersToPixelsY(robot, resolution);
+		double cellsPerPixel = 1.0 / Math.max(1e-9, Math.min(cellWidth_, cellHeight_));
+		int level = Math.max(0, Math.min(30 - 8, (int)Math.floor(Math.log(cellsPerPixel) / Math.log(2))));
+		long cellsPerTile = (long)TILE << level;
+
+		// tile rows start at the top of the map like the cell rows
+		int firstColumn = (int)Math.max(0, Math.floor(viewMinX / resolution / cellsPerTile));
+		int lastColumn = (int)Math.min((map.getWidth() - 1) / cellsPerTile, Math.floor(viewMaxX / resolution / cellsPerTile));
+		int firstRow = (int)Math.max(0, Math.floor((map.getHeight() - viewMaxY / resolution) / cellsPerTile));
+		int lastRow = (int)Math.min((map.getHeight() - 1) / cellsPerTile, Math.floor((map.getHeight() - viewMinY / resolution) / cellsPerTile));
+
+		double tileWidth_ = cellWidth_ * cellsPerTile;
+		double tileHeight_ = cellHeight_ * cellsPerTile;
+		gc.setImageSmoothing(false);
+		for(int row = firstRow; row <= lastRow; row++) {
+			for(int column = firstColumn; column <= lastColumn; column++) {
+				WritableImage tile = this.getTile(level, column, row);
+				double x_ = DimensionsMapper.worldToScreenX(robot, column * cellsPerTile * resolution);
+				double y_ = DimensionsMapper.worldToScreenY(robot, (map.getHeight() - row * cellsPerTile) * resolution);
+				gc.drawImage(tile, x_, y_, tileWidth_, tileHeight_);
+			}
+		}
+		gc.setImageSmoothing(true);
+	}
+
+	private WritableImage getTile(int level, int column, int row) {
+		long key = ((long)level << 56) | ((long)row << 28) | column;
+		WritableImage tile = tiles.get(key);
+		if(tile == null) {
+			tile = this.buildTile(level, column, row);
+			tiles.put(key, tile);
+		}
+		return tile;
+	}
+
+	private WritableImage buildTile(int level, int column, int row) {
+		if(level >= PYRAMID_BASE) {
+			byte[][] blocks = this.getPyramidLevel(level);
+			int firstBlockColumn = column * TILE;
+			int firstBlockRow = row * TILE;
+			for(int py = 0; py < TILE; py++) {
+				byte[] blockRow = firstBlockRow + py < blocks.length ? blocks[firstBlockRow + py] : null;
+				for(int px = 0; px < TILE; px++) {
+					int darkest = blockRow != null && firstBlockColumn + px < blockRow.length ? blockRow[firstBlockColumn + px] & 0xFF : 255;
+					pixels[py * TILE + px] = (255 - darkest) << 24;
+				}
+			}
+		}
+		else {
+			int scale = 1 << level;
+			long firstCellColumn = (long)column * TILE * scale;
+			long firstCellRow = (long)row * TILE * scale;
+			for(int py = 0; py < TILE; py++) {
+				for(int px = 0; px < TILE; px++) {
+					int darkest = 255;
+					long cellRow = firstCellRow + (long)py * scale;
+					long cellColumn = firstCellColumn + (long)px * scale;
+					for(long r = cellRow; r < Math.min(cellRow + scale, map.getHeight()) && darkest > 0; r++) {
+						for(long c = cellColumn; c < Math.min(cellColumn + scale, map.getWidth()); c++) {
+							darkest = Math.min(darkest, map.getCell((int)c, (int)r));
+						}
+					}
+					// free cells are transparent, walls are opaque black
+					pixels[py * TILE + px] = (255 - darkest) << 24;
+				}
+			}
+		}
+		WritableImage tile = new WritableImage(TILE, TILE);
+		tile.getPixelWriter().setPixels(0, 0, TILE, TILE, PixelFormat.getIntArgbInstance(), pixels, 0, TILE);
+		return tile;
+	}
+
+	private byte[][] getPyramidLevel(int level) {
+		if(pyramid[level] != null) {
+			return pyramid[level];
+		}
+		int scale = 1 << level;
+		int width = (int)(((long)map.getWidth() + scale - 1) >> level);
+		int height = (int)(((long)map.getHeight() + scale - 1) >> level);
+		byte[][] blocks = new byte[height][width];
+		if(level == PYRAMID_BASE) {
+			byte[] cells = new byte[map.getWidth()];
+			for(int r = 0; r < height; r++) {
+				byte[] blockRow = blocks[r];
+				Arrays.fill(blockRow, (byte)255);
+				for(int cellRow = r << level; cellRow < Math.min((long)(r + 1) << level, map.getHeight()); cellRow++) {
+					map.getRow(cellRow, cells);
+					for(int c = 0; c < cells.length; c++) {
+						if((cells[c] & 0xFF) < (blockRow[c >> level] & 0xFF)) {
+							blockRow[c >> level] = cells[c];
+						}
+					}
+				}
+			}
+		}
+		else {
+			byte[][] finer = this.getPyramidLevel(level - 1);
+			for(int r = 0; r < height; r++) {
+				byte[] top = finer[2*r];
+				byte[] bottom = 2*r + 1 < finer.length ? finer[2*r + 1] : top;
+				for(int c = 0; c < width; c++) {
+					int right = Math.min(2*c + 1, top.length - 1);
+					int darkest = Math.min(Math.min(top[2*c] & 0xFF, top[right] & 0xFF), Math.min(bottom[2*c] & 0xFF, bottom[right] & 0xFF));
+					blocks[r][c] = (byte)darkest;
+				}
+			}
+		}
+		pyramid[level] = blocks;
+		return blocks;
+	}
+}
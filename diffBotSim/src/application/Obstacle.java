@@ -0,0 +1,126 @@
+package application;
+
+// Static obstacle of the workspace: a convex polygon (rectangles are polygons) or a circle.
+// Units are meters, y axis pointing up like the rest of the simulation.
+public final class Obstacle {
+	final double[]	xs, ys;				// polygon vertices, null for a circle
+	final double	centerX, centerY, radius;	// circle only
+	final double	minX, minY, maxX, maxY;		// bounding box
+
+	private Obstacle(double[] xs, double[] ys, double centerX, double centerY, double radius) {
+		this.xs = xs;
+		this.ys = ys;
+		this.centerX = centerX;
+		this.centerY = centerY;
+		this.radius = radius;
+		if(xs == null) {
+			this.minX = centerX - radius;
+			this.minY = centerY - radius;
+			this.maxX = centerX + radius;
+			this.maxY = centerY + radius;
+		}
+		else {
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+			for(int i = 0; i < xs.length; i++) {
+				minX = Math.min(minX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxX = Math.max(maxX, xs[i]);
+				maxY = Math.max(maxY, ys[i]);
+			}
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+	}
+
+	// Axis aligned rectangle from its lower left corner
+	public static Obstacle rectangle(double x, double y, double width, double height) {
+		if(width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Rectangle dimensions must be > 0");
+		}
+		return new Obstacle(new double[] {x, x + width, x + width, x}, new double[] {y, y, y + height, y + height}, 0, 0, 0);
+	}
+
+	// Convex polygon, the vertices are given in order (either winding)
+	public static Obstacle polygon(double[] xs, double[] ys) {
+		if(xs.length != ys.length || xs.length < 3) {
+			throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+		}
+		int sign = 0;
+		for(int i = 0; i < xs.length; i++) {
+			int j = (i + 1) % xs.length;
+			int k = (i + 2) % xs.length;
+			double cross = (xs[j] - xs[i]) * (ys[k] - ys[j]) - (ys[j] - ys[i]) * (xs[k] - xs[j]);
+			if(cross != 0.0) {
+				if(sign != 0 && (cross > 0) != (sign > 0)) {
+					throw new IllegalArgumentException("Polygon obstacles must be convex");
+				}
+				sign = cross > 0 ? 1 : -1;
+			}
+		}
+		if(sign == 0) {
+			throw new IllegalArgumentException("Polygon has no area");
+		}
+		return new Obstacle(xs.clone(), ys.clone(), 0, 0, 0);
+	}
+
+	public static Obstacle circle(double centerX, double centerY, double radius) {
+		if(radius <= 0) {
+			throw new IllegalArgumentException("Circle radius must be > 0");
+		}
+		return new Obstacle(null, null, centerX, centerY, radius);
+	}
+
+	boolean isCircle() {
+		return this.xs == null;
+	}
+
+	boolean intersectsPolygon(double[] px, double[] py, int n) {
+		if(this.isCircle()) {
+			return SeparatingAxis.polygonCircleOverlap(px, py, n, centerX, centerY, radius);
+		}
+		return SeparatingAxis.polygonsOverlap(xs, ys, xs.length, px, py, n);
+	}
+
+	boolean intersectsCircle(double cx, double cy, double r) {
+		if(this.isCircle()) {
+			return SeparatingAxis.circlesOverlap(centerX, centerY, radius, cx, cy, r);
+		}
+		return SeparatingAxis.polygonCircleOverlap(xs, ys, xs.length, cx, cy, r);
+	}
+
+	// Distance along the ray from (ox, oy) in the unit direction (dx, dy) to the boundary of the
+	// obstacle, infinite when the ray misses it and 0 when it starts inside a circle
+	double rayDistance(double ox, double oy, double dx, double dy) {
+		if(this.isCircle()) {
+			double fx = ox - centerX, fy = oy - centerY;
+			double b = fx*dx + fy*dy;
+			double c = fx*fx + fy*fy - radius*radius;
+			if(c <= 0.0) {
+				return 0.0;
+			}
+			double discriminant = b*b - c;
+			if(discriminant < 0.0 || b > 0.0) {
+				return Double.POSITIVE_INFINITY;
+			}
+			return -b - Math.sqrt(discriminant);
+		}
+		double best = Double.POSITIVE_INFINITY;
+		for(int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+			double ex = xs[i] - xs[j], ey = ys[i] - ys[j];
+			double denominator = dx*ey - dy*ex;
+			if(denominator == 0.0) {
+				continue;
+			}
+			double ax = xs[j] - ox, ay = ys[j] - oy;
+			double t = (ax*ey - ay*ex) / denominator;
+			double u = (ax*dy - ay*dx) / denominator;
+			if(t >= 0.0 && t < best && u >= 0.0 && u <= 1.0) {
+				best = t;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,118 @@
+package application;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// Canvas with the static obstacles, the occupancy grid map and the reference path, shared by the
+// renderers. They do not move, so the canvas is only repainted when they change or the camera
+// moves, and only what is in view is drawn.
+class ObstacleLayer extends Canvas {
+	private static final Color FILL = Color.DARKSLATEGRAY;
+	private static final Color PATH_COLOR = Color.rgb(0, 160, 0, 0.6);
+
+	private ObstacleMap painted;
+	private MapTiles	mapTiles;
+	private ReferencePath paintedPath;
+	private int		paintedGeneration;
+	private int		paintedCameraVersion;
+	private boolean	isDirty = true;
+	// reused for the polygons
+	private double[] xs_ = new double[8], ys_ = new double[8];
+
+	void resize(RobotGraphics robot) {
+		this.setWidth(robot.getWindowWidth());
+		this.setHeight(robot.getWindowHeight());
+		this.isDirty = true;
+	}
+
+	void update(RobotGraphics robot) {
+		ObstacleMap obstacles = robot.getObstacles();
+		OccupancyGrid map = robot.getMap();
+		OccupancyGrid paintedMap = this.mapTiles == null ? null : mapTiles.getMap();
+		ReferencePath path = robot.getReferencePath();
+		Camera camera = robot.getCamera();
+		if(!this.isDirty && obstacles == this.painted && map == paintedMap && path == this.paintedPath
+				&& camera.getVersion() == this.paintedCameraVersion
+				&& (obstacles == null || obstacles.getGeneration() == this.paintedGeneration)) {
+			return;
+		}
+		this.paintedCameraVersion = camera.getVersion();
+		double viewMinX = camera.getViewMinX(), viewMinY = camera.getViewMinY();
+		double viewMaxX = camera.getViewMaxX(), viewMaxY = camera.getViewMaxY();
+		GraphicsContext gc = this.getGraphicsContext2D();
+		gc.clearRect(0, 0, this.getWidth(), this.getHeight());
+		if(map != paintedMap) {
+			this.mapTiles = map == null ? null : new MapTiles(map);
+		}
+		if(this.mapTiles != null) {
+			mapTiles.paint(gc, robot, viewMinX, viewMinY, viewMaxX, viewMaxY);
+		}
+		if(obstacles != null) {
+			this.paintedGeneration = obstacles.getGeneration();
+			gc.setFill(FILL);
+			for(int i = 0; i < obstacles.size(); i++) {
+				Obstacle obstacle = obstacles.get(i);
+				if(obstacle.maxX < viewMinX || obstacle.minX > viewMaxX || obstacle.maxY < viewMinY || obstacle.minY > viewMaxY) {
+					continue;
+				}
+				if(obstacle.isCircle()) {
+					double x_ = DimensionsMapper.worldToScreenX(robot, obstacle.centerX - obstacle.radius);
+					double y_ = DimensionsMapper.worldToScreenY(robot, obstacle.centerY + obstacle.radius);
+					gc.fillOval(x_, y_, DimensionsMapper.metersToPixelsX(robot, 2*obstacle.radius),
+							DimensionsMapper.metersToPixelsY(robot, 2*obstacle.radius));
+					continue;
+				}
+				int n = obstacle.xs.length;
+				if(n > xs_.length) {
+					this.xs_ = new double[n];
+					this.ys_ = new double[n];
+				}
+				for(int k = 0; k < n; k++) {
+					xs_[k] = DimensionsMapper.worldToScreenX(robot, obstacle.xs[k]);
+					ys_[k] = DimensionsMapper.worldToScreenY(robot, obstacle.ys[k]);
+				}
+				gc.fillPolygon(xs_, ys_, n);
+			}
+		}
+		if(path != null) {
+			this.paintPath(gc, path, robot);
+		}
+		this.painted = obstacles;
+		this.paintedPath = path;
+		this.isDirty = false;
+	}
+
+	// Polyline of the waypoints, a waypoint less than a pixel away from the previous one drawn is
+	// skipped and the segments out of view are left out
+	private void paintPath(GraphicsContext gc, ReferencePath path, RobotGraphics robot) {
+		double width_ = this.getWidth(), height_ = this.getHeight();
+		gc.setLineWidth(2);
+		gc.setStroke(PATH_COLOR);
+		gc.beginPath();
+		double previousX_ = DimensionsMapper.worldToScreenX(robot, path.getX(0));
+		double previousY_ = DimensionsMapper.worldToScreenY(robot, path.getY(0));
+		boolean isDrawing = false;
+		for(int i = 1; i < path.size(); i++) {
+			double x_ = DimensionsMapper.worldToScreenX(robot, path.getX(i));
+			double y_ = DimensionsMapper.worldToScreenY(robot, path.getY(i));
+			if(i < path.size() - 1 && Math.abs(x_ - previousX_) < 1 && Math.abs(y_ - previousY_) < 1) {
+				continue;
+			}
+			if(Math.max(x_, previousX_) < 0 || Math.min(x_, previousX_) > width_
+					|| Math.max(y_, previousY_) < 0 || Math.min(y_, previousY_) > height_) {
+				isDrawing = false;
+			}
+			else {
+				if(!isDrawing) {
+					gc.moveTo(previousX_, previousY_);
+					isDrawing = true;
+				}
+				gc.lineTo(x_, y_);
+			}
+			previousX_ = x_;
+			previousY_ = y_;
+		}
+		gc.stroke();
+	}
+}
@@ -0,0 +1,236 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Static obstacles indexed by a uniform grid. Every obstacle is stored in all the cells its
+// bounding box covers, so a query only tests the obstacles of the cells under the query box
+// and its cost depends on what is nearby, not on the size of the map. The cells are kept in
+// compressed rows (one array of obstacle indices plus the start of every cell).
+//
+// Obstacles are added first, the grid is then built by the first query. The grid is an immutable
+// Index published through a single volatile field, so a query always sees a whole grid, and
+// once built the map is only read and can be shared by several engines and threads.
+public class ObstacleMap {
+	private static final int MAX_CELLS = 1 << 24;
+
+	private final double cellSize;
+	private final List<Obstacle> obstacles = new ArrayList<>();
+	// null until the next query after a change
+	private volatile Index index = null;
+	private volatile int generation = 0;
+
+	// cellSize (m) should be about the size of the robot or of the typical obstacle
+	public ObstacleMap(double cellSize) {
+		if(cellSize <= 0) {
+			throw new IllegalArgumentException("Cell size must be > 0");
+		}
+		this.cellSize = cellSize;
+	}
+
+	public synchronized void add(Obstacle obstacle) {
+		obstacles.add(obstacle);
+		this.index = null;
+		this.generation++;
+	}
+
+	public synchronized void clear() {
+		obstacles.clear();
+		this.index = null;
+		this.generation++;
+	}
+
+	synchronized int size()				{ return obstacles.size();  }
+	synchronized Obstacle get(int i)	{ return obstacles.get(i);  }
+	int getGeneration()					{ return this.generation;	}
+	double getCellSize()				{ return this.cellSize;		}
+
+	// Does the convex polygon (n vertices) overlap an obstacle
+	boolean intersectsPolygon(double[] xs, double[] ys, int n) {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for(int i = 0; i < n; i++) {
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		return this.getIndex().query(minX, minY, maxX, maxY, xs, ys, n, 0, 0, 0);
+	}
+
+	boolean intersectsCircle(double cx, double cy, double r) {
+		return this.getIndex().query(cx - r, cy - r, cx + r, cy + r, null, null, 0, cx, cy, r);
+	}
+
+	// Distance along the ray from (ox, oy) in the unit direction (dx, dy) to the nearest
+	// obstacle, infinite when there is none within maxRange
+	double rayDistance(double ox, double oy, double dx, double dy, double maxRange) {
+		return this.getIndex().rayDistance(ox, oy, dx, dy, maxRange);
+	}
+
+	private Index getIndex() {
+		Index index = this.index;
+		return index != null ? index : this.build();
+	}
+
+	private synchronized Index build() {
+		if(this.index == null) {
+			this.index = new Index(obstacles.toArray(new Obstacle[0]), cellSize);
+		}
+		return this.index;
+	}
+
+	// Grid of a fixed set of obstacles, never modified once built
+	private static final class Index {
+		private final double	cellSize;
+		private final Obstacle[] indexed;
+		private final int[]		cellStart;
+		private final int[]		cellItems;
+		private final double	originX, originY;
+		private final int		columns, rows;
+
+		Index(Obstacle[] indexed, double cellSize) {
+			this.cellSize = cellSize;
+			double minX = 0, minY = 0, maxX = 0, maxY = 0;
+			for(int i = 0; i < indexed.length; i++) {
+				minX = i == 0 ? indexed[i].minX : Math.min(minX, indexed[i].minX);
+				minY = i == 0 ? indexed[i].minY : Math.min(minY, indexed[i].minY);
+				maxX = i == 0 ? indexed[i].maxX : Math.max(maxX, indexed[i].maxX);
+				maxY = i == 0 ? indexed[i].maxY : Math.max(maxY, indexed[i].maxY);
+			}
+			this.originX = minX;
+			this.originY = minY;
+			long columns = (long)Math.floor((maxX - minX) / cellSize) + 1;
+			long rows = (long)Math.floor((maxY - minY) / cellSize) + 1;
+			if(columns * rows > MAX_CELLS) {
+				throw new IllegalArgumentException("Obstacle grid is too large, use a larger cell size");
+			}
+			this.columns = (int)columns;
+			this.rows = (int)rows;
+
+			// count the obstacles of every cell, then fill the cells
+			int[] cellStart = new int[this.columns * this.rows + 1];
+			for(Obstacle obstacle : indexed) {
+				for(int row = row(obstacle.minY); row <= row(obstacle.maxY); row++) {
+					for(int column = column(obstacle.minX); column <= column(obstacle.maxX); column++) {
+						cellStart[row * this.columns + column + 1]++;
+					}
+				}
+			}
+			for(int cell = 0; cell < cellStart.length - 1; cell++) {
+				cellStart[cell + 1] += cellStart[cell];
+			}
+			int[] cellItems = new int[cellStart[cellStart.length - 1]];
+			int[] next = cellStart.clone();
+			for(int i = 0; i < indexed.length; i++) {
+				Obstacle obstacle = indexed[i];
+				for(int row = row(obstacle.minY); row <= row(obstacle.maxY); row++) {
+					for(int column = column(obstacle.minX); column <= column(obstacle.maxX); column++) {
+						cellItems[next[row * this.columns + column]++] = i;
+					}
+				}
+			}
+			this.indexed = indexed;
+			this.cellStart = cellStart;
+			this.cellItems = cellItems;
+		}
+
+		private boolean query(double minX, double minY, double maxX, double maxY,
+				double[] xs, double[] ys, int n, double cx, double cy, double r) {
+			int firstColumn = Math.max(0, column(minX));
+			int lastColumn = Math.min(columns - 1, column(maxX));
+			int firstRow = Math.max(0, row(minY));
+			int lastRow = Math.min(rows - 1, row(maxY));
+			for(int row = firstRow; row <= lastRow; row++) {
+				for(int column = firstColumn; column <= lastColumn; column++) {
+					int cell = row * columns + column;
+					for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+						Obstacle obstacle = indexed[cellItems[k]];
+						if(obstacle.maxX < minX || obstacle.minX > maxX || obstacle.maxY < minY || obstacle.minY > maxY) {
+							continue;
+						}
+						// an obstacle in several cells is only tested in the first cell it shares with the query
+						if(column != Math.max(firstColumn, column(obstacle.minX)) || row != Math.max(firstRow, row(obstacle.minY))) {
+							continue;
+						}
+						if(xs != null ? obstacle.intersectsPolygon(xs, ys, n) : obstacle.intersectsCircle(cx, cy, r)) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		// The cells crossed by the ray are walked in order (DDA) and the walk stops at the first
+		// cell that holds a closer hit.
+		double rayDistance(double ox, double oy, double dx, double dy, double maxRange) {
+			// clip the ray to the extent of the grid
+			double gridMaxX = originX + columns * cellSize, gridMaxY = originY + rows * cellSize;
+			double tEnter = 0.0, tExit = maxRange;
+			if(dx != 0.0) {
+				double t0 = (originX - ox) / dx, t1 = (gridMaxX - ox) / dx;
+				tEnter = Math.max(tEnter, Math.min(t0, t1));
+				tExit = Math.min(tExit, Math.max(t0, t1));
+			}
+			else if(ox < originX || ox > gridMaxX) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if(dy != 0.0) {
+				double t0 = (originY - oy) / dy, t1 = (gridMaxY - oy) / dy;
+				tEnter = Math.max(tEnter, Math.min(t0, t1));
+				tExit = Math.min(tExit, Math.max(t0, t1));
+			}
+			else if(oy < originY || oy > gridMaxY) {
+				return Double.POSITIVE_INFINITY;
+			}
+			if(tEnter > tExit) {
+				return Double.POSITIVE_INFINITY;
+			}
+
+			int column = Math.min(columns - 1, Math.max(0, column(ox + dx*tEnter)));
+			int row = Math.min(rows - 1, Math.max(0, row(oy + dy*tEnter)));
+			int stepColumn = dx > 0.0 ? 1 : -1;
+			int stepRow = dy > 0.0 ? 1 : -1;
+			double tDeltaX = dx != 0.0 ? cellSize / Math.abs(dx) : Double.POSITIVE_INFINITY;
+			double tDeltaY = dy != 0.0 ? cellSize / Math.abs(dy) : Double.POSITIVE_INFINITY;
+			double tMaxX = dx != 0.0 ? (originX + (column + (dx > 0.0 ? 1 : 0)) * cellSize - ox) / dx : Double.POSITIVE_INFINITY;
+			double tMaxY = dy != 0.0 ? (originY + (row + (dy > 0.0 ? 1 : 0)) * cellSize - oy) / dy : Double.POSITIVE_INFINITY;
+
+			double best = Double.POSITIVE_INFINITY;
+			while(true) {
+				int cell = row * columns + column;
+				for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+					best = Math.min(best, indexed[cellItems[k]].rayDistance(ox, oy, dx, dy));
+				}
+				double tCellExit = Math.min(tMaxX, tMaxY);
+				if(best <= tCellExit || tCellExit > tExit) {
+					break;
+				}
+				if(tMaxX < tMaxY) {
+					column += stepColumn;
+					tMaxX += tDeltaX;
+					if(column < 0 || column >= columns) {
+						break;
+					}
+				}
+				else {
+					row += stepRow;
+					tMaxY += tDeltaY;
+					if(row < 0 || row >= rows) {
+						break;
+					}
+				}
+			}
+			return best <= maxRange ? best : Double.POSITIVE_INFINITY;
+		}
+
+		private int column(double x) {
+			return (int)Math.floor((x - originX) / cellSize);
+		}
+
+		private int row(double y) {
+			return (int)Math.floor((y - originY) / cellSize);
+		}
+	}
+}
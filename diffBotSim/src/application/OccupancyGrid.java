@@ -0,0 +1,242 @@
+package application;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Occupancy grid map of the workspace, one grey byte per cell like a floor plan image: dark
+// cells (below the threshold, 128 by default) are walls. The file is memory-mapped and never
+// copied to the heap, a cell lookup reads one byte of the mapping. Maps above 2 GB are mapped
+// in several segments of whole rows.
+//
+// Row 0 of the file is the top of the map (largest y), the cell (0, 0) of the workspace is the
+// lower left corner of the image. resolution is the size of a cell in meters.
+public class OccupancyGrid {
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	private final int width, height;		// cells
+	private final double resolution;		// m per cell
+	private final MappedByteBuffer[] segments;
+	private final int rowsPerSegment;
+	private int occupiedBelow = 128;
+
+	private OccupancyGrid(FileChannel channel, long offset, int width, int height, double resolution) throws IOException {
+		if(width <= 0 || height <= 0) {
+			throw new IOException("Invalid map size " + width + "x" + height);
+		}
+		if(resolution <= 0) {
+			throw new IllegalArgumentException("Map resolution must be > 0");
+		}
+		if(channel.size() < offset + (long)width * height) {
+			throw new IOException("Truncated map file");
+		}
+		this.width = width;
+		this.height = height;
+		this.resolution = resolution;
+		this.rowsPerSegment = (int)Math.max(1, SEGMENT_SIZE / width);
+		this.segments = new MappedByteBuffer[(height + rowsPerSegment - 1) / rowsPerSegment];
+		for(int i = 0; i < segments.length; i++) {
+			int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+			long start = offset + (long)i * rowsPerSegment * width;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, (long)rows * width);
+		}
+	}
+
+	// Binary PGM (P5) with 8 bit cells
+	public static OccupancyGrid loadPgm(Path file, double resolution) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 4096));
+			if(!nextToken(header).equals("P5")) {
+				throw new IOException("Not a binary PGM file");
+			}
+			int width = Integer.parseInt(nextToken(header));
+			int height = Integer.parseInt(nextToken(header));
+			int maxValue = Integer.parseInt(nextToken(header));
+			if(maxValue > 255) {
+				throw new IOException("Only 8 bit PGM maps are supported");
+			}
+			// a single whitespace separates the header from the cells
+			return new OccupancyGrid(channel, header.position() + 1, width, height, resolution);
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid PGM header", e);
+		}
+	}
+
+	// Raw cells without header, row by row from the top
+	public static OccupancyGrid loadRaw(Path file, int width, int height, double resolution) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new OccupancyGrid(channel, 0, width, height, resolution);
+		}
+	}
+
+	private static String nextToken(MappedByteBuffer header) throws IOException {
+		StringBuilder token = new StringBuilder();
+		while(header.hasRemaining()) {
+			char c = (char)(header.get() & 0xFF);
+			if(c == '#' && token.length() == 0) {
+				while(header.hasRemaining() && header.get() != '\n') {
+					// skip the comment
+				}
+			}
+			else if(Character.isWhitespace(c)) {
+				if(token.length() > 0) {
+					header.position(header.position() - 1);
+					return token.toString();
+				}
+			}
+			else {
+				token.append(c);
+			}
+		}
+		throw new IOException("Truncated PGM header");
+	}
+
+	// Cells with a value below the threshold are occupied
+	void setOccupiedThreshold(int occupiedBelow) {
+		if(occupiedBelow < 0 || occupiedBelow > 256) {
+			throw new IllegalArgumentException("Threshold must be in [0, 256]");
+		}
+		this.occupiedBelow = occupiedBelow;
+	}
+
+	int getWidth()				{ return this.width;	  }
+	int getHeight()				{ return this.height;	  }
+	double getResolution()		{ return this.resolution; }
+	double getWorkspaceWidth()	{ return width * resolution;  }
+	double getWorkspaceHeight() { return height * resolution; }
+
+	// Grey value of a cell, row 0 at the top
+	int getCell(int column, int row) {
+		return segments[row / rowsPerSegment].get((row % rowsPerSegment) * width + column) & 0xFF;
+	}
+
+	// Copy the width cells of a row into cells
+	void getRow(int row, byte[] cells) {
+		segments[row / rowsPerSegment].get((row % rowsPerSegment) * width, cells, 0, width);
+	}
+
+	boolean isOccupiedCell(int column, int row) {
+		if(column < 0 || row < 0 || column >= width || row >= height) {
+			return false;
+		}
+		return this.getCell(column, row) < occupiedBelow;
+	}
+
+	// Cell under a point of the workspace
+	boolean isOccupied(double x, double y) {
+		return this.isOccupiedCell((int)Math.floor(x / resolution), height - 1 - (int)Math.floor(y / resolution));
+	}
+
+	// Distance along the ray from (ox, oy) in the unit direction (dx, dy) to the first occupied
+	// cell, infinite when there is none within maxRange. Only the cells crossed by the ray are
+	// read, in order (DDA traversal).
+	double rayDistance(double ox, double oy, double dx, double dy, double maxRange) {
+		double mapWidth = this.getWorkspaceWidth(), mapHeight = this.getWorkspaceHeight();
+		double tEnter = 0.0, tExit = maxRange;
+		if(dx != 0.0) {
+			double t0 = -ox / dx, t1 = (mapWidth - ox) / dx;
+			tEnter = Math.max(tEnter, Math.min(t0, t1));
+			tExit = Math.min(tExit, Math.max(t0, t1));
+		}
+		else if(ox < 0.0 || ox > mapWidth) {
+			return Double.POSITIVE_INFINITY;
+		}
+		if(dy != 0.0) {
+			double t0 = -oy / dy, t1 = (mapHeight - oy) / dy;
+			tEnter = Math.max(tEnter, Math.min(t0, t1));
+			tExit = Math.min(tExit, Math.max(t0, t1));
+		}
+		else if(oy < 0.0 || oy > mapHeight) {
+			return Double.POSITIVE_INFINITY;
+		}
+		if(tEnter > tExit) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		// cellY counts from the bottom of the map, the rows from the top
+		int column = Math.min(width - 1, Math.max(0, (int)Math.floor((ox + dx*tEnter) / resolution)));
+		int cellY = Math.min(height - 1, Math.max(0, (int)Math.floor((oy + dy*tEnter) / resolution)));
+		int stepColumn = dx > 0.0 ? 1 : -1;
+		int stepY = dy > 0.0 ? 1 : -1;
+		double tDeltaX = dx != 0.0 ? resolution / Math.abs(dx) : Double.POSITIVE_INFINITY;
+		double tDeltaY = dy != 0.0 ? resolution / Math.abs(dy) : Double.POSITIVE_INFINITY;
+		double tMaxX = dx != 0.0 ? ((column + (dx > 0.0 ? 1 : 0)) * resolution - ox) / dx : Double.POSITIVE_INFINITY;
+		double tMaxY = dy != 0.0 ? ((cellY + (dy > 0.0 ? 1 : 0)) * resolution - oy) / dy : Double.POSITIVE_INFINITY;
+
+		// the cells are read straight from the segment of the current row, without getCell()
+		int row = height - 1 - cellY;
+		MappedByteBuffer segment = segments[row / rowsPerSegment];
+		int rowStart = (row % rowsPerSegment) * width;
+		double t = tEnter;
+		while(t <= tExit) {
+			if((segment.get(rowStart + column) & 0xFF) < occupiedBelow) {
+				return t;
+			}
+			if(tMaxX < tMaxY) {
+				t = tMaxX;
+				tMaxX += tDeltaX;
+				column += stepColumn;
+				if(column < 0 || column >= width) {
+					break;
+				}
+			}
+			else {
+				t = tMaxY;
+				tMaxY += tDeltaY;
+				row -= stepY;
+				if(row < 0 || row >= height) {
+					break;
+				}
+				rowStart -= stepY * width;
+				if(rowStart < 0 || rowStart >= segment.capacity()) {
+					segment = segments[row / rowsPerSegment];
+					rowStart = (row % rowsPerSegment) * width;
+				}
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	// Does the convex polygon (n vertices) overlap an occupied cell
+	boolean intersectsPolygon(double[] xs, double[] ys, int n) {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+		for(int i = 0; i < n; i++) {
+			minX = Math.min(minX, xs[i]);
+			minY = Math.min(minY, ys[i]);
+			maxX = Math.max(maxX, xs[i]);
+			maxY = Math.max(maxY, ys[i]);
+		}
+		return this.query(minX, minY, maxX, maxY, xs, ys, n, 0, 0, 0);
+	}
+
+	boolean intersectsCircle(double cx, double cy, double r) {
+		return this.query(cx - r, cy - r, cx + r, cy + r, null, null, 0, cx, cy, r);
+	}
+
+	private boolean query(double minX, double minY, double maxX, double maxY,
+			double[] xs, double[] ys, int n, double cx, double cy, double r) {
+		int firstColumn = Math.max(0, (int)Math.floor(minX / resolution));
+		int lastColumn = Math.min(width - 1, (int)Math.floor(maxX / resolution));
+		int firstRow = Math.max(0, height - 1 - (int)Math.floor(maxY / resolution));
+		int lastRow = Math.min(height - 1, height - 1 - (int)Math.floor(minY / resolution));
+		for(int row = firstRow; row <= lastRow; row++) {
+			double y0 = (height - 1 - row) * resolution;
+			for(int column = firstColumn; column <= lastColumn; column++) {
+				if(this.getCell(column, row) >= occupiedBelow) {
+					continue;
+				}
+				double x0 = column * resolution;
+				boolean isOverlapping = xs != null
+						? SeparatingAxis.boxPolygonOverlap(x0, y0, x0 + resolution, y0 + resolution, xs, ys, n)
+						: SeparatingAxis.boxCircleOverlap(x0, y0, x0 + resolution, y0 + resolution, cx, cy, r);
+				if(isOverlapping) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
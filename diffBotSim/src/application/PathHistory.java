@@ -0,0 +1,201 @@
+package application;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Unbounded history of the driven path (in meters). Samples are appended into fixed size
+// primitive chunks, each chunk keeps its bounding box so off screen chunks can be skipped.
+// When a chunk is full, simplified versions of it (Douglas-Peucker) are computed in the
+// background, one per tolerance of LOD_TOLERANCES, so the whole history can be drawn at a
+// cost that depends on the screen resolution rather than on the length of the session.
+class PathHistory {
+	static final int		CHUNK_SIZE = 4096;
+	static final double[]	LOD_TOLERANCES = {0.01, 0.05, 0.25, 1.0, 5.0};
+
+	private static final ExecutorService simplifier = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "PathHistory simplifier");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	static class Chunk {
+		final double[]		xPoints = new double[CHUNK_SIZE];
+		final double[]		yPoints = new double[CHUNK_SIZE];
+		volatile int		size = 0;
+		// bounding box, only grows so a reader may see a slightly smaller one
+		volatile double		minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		volatile double		maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		// simplified copies of the chunk, index i matches LOD_TOLERANCES[i]; null until computed
+		volatile double[][]	lodXPoints, lodYPoints;
+
+		boolean intersects(double minX, double minY, double maxX, double maxY) {
+			return this.maxX >= minX && this.minX <= maxX && this.maxY >= minY && this.minY <= maxY;
+		}
+
+		private void add(double x, double y) {
+			int index = this.size;
+			xPoints[index] = x;
+			yPoints[index] = y;
+			if(x < minX) minX = x;
+			if(x > maxX) maxX = x;
+			if(y < minY) minY = y;
+			if(y > maxY) maxY = y;
+			this.size = index + 1;
+		}
+	}
+
+	private volatile Chunk[]	chunks = new Chunk[16];
+	private volatile int		chunkCount = 0;
+	private long				sampleCount = 0;
+	private double				minDistance = 0.01;
+	private double				lastX, lastY;
+
+	// A sample is only stored if it is further than minDistance (m) from the previous one
+	void setMinDistance(double minDistance) {
+		if(minDistance < 0.0) {
+			throw new IllegalArgumentException("Minimum distance must be >= 0");
+		}
+		this.minDistance = minDistance;
+	}
+
+	void clear() {
+		this.chunks = new Chunk[16];
+		this.chunkCount = 0;
+		this.sampleCount = 0;
+	}
+
+	// Must always be called from the same thread
+	void add(double x, double y) {
+		int count = this.chunkCount;
+		if(count > 0) {
+			double dx = x - lastX;
+			double dy = y - lastY;
+			if(dx*dx + dy*dy <= minDistance*minDistance) {
+				return;
+			}
+		}
+		Chunk chunk = count > 0 ? chunks[count - 1] : null;
+		if(chunk == null || chunk.size == CHUNK_SIZE) {
+			Chunk next = new Chunk();
+			if(chunk != null) {
+				// the chunks overlap by one point so that the path stays connected
+				next.add(lastX, lastY);
+				this.simplifyLater(chunk);
+			}
+			this.appendChunk(next);
+			chunk = next;
+		}
+		chunk.add(x, y);
+		this.lastX = x;
+		this.lastY = y;
+		this.sampleCount++;
+	}
+
+	private void appendChunk(Chunk chunk) {
+		Chunk[] array = this.chunks;
+		int count = this.chunkCount;
+		if(count == array.length) {
+			Chunk[] grown = new Chunk[array.length * 2];
+			System.arraycopy(array, 0, grown, 0, count);
+			array = grown;
+		}
+		array[count] = chunk;
+		this.chunks = array;
+		this.chunkCount = count + 1;
+	}
+
+	private void simplifyLater(Chunk chunk) {
+		simplifier.execute(() -> {
+			double[][] lodX = new double[LOD_TOLERANCES.length][];
+			double[][] lodY = new double[LOD_TOLERANCES.length][];
+			boolean[] keep = new boolean[chunk.size];
+			int[] stack = new int[2 * chunk.size];
+			for(int level = 0; level < LOD_TOLERANCES.length; level++) {
+				int kept = simplify(chunk.xPoints, chunk.yPoints, chunk.size, LOD_TOLERANCES[level], keep, stack);
+				double[] xs = new double[kept];
+				double[] ys = new double[kept];
+				for(int i = 0, j = 0; i < chunk.size; i++) {
+					if(keep[i]) {
+						xs[j] = chunk.xPoints[i];
+						ys[j] = chunk.yPoints[i];
+						j++;
+					}
+				}
+				lodX[level] = xs;
+				lodY[level] = ys;
+			}
+			chunk.lodYPoints = lodY;
+			chunk.lodXPoints = lodX;
+		});
+	}
+
+	// Douglas-Peucker simplification without recursion, marks the points to keep and returns their number
+	static int simplify(double[] xPoints, double[] yPoints, int size, double tolerance, boolean[] keep, int[] stack) {
+		for(int i = 0; i < size; i++) {
+			keep[i] = false;
+		}
+		if(size < 3) {
+			for(int i = 0; i < size; i++) {
+				keep[i] = true;
+			}
+			return size;
+		}
+		keep[0] = true;
+		keep[size - 1] = true;
+		int kept = 2;
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = size - 1;
+		double tolerance2 = tolerance * tolerance;
+
+		while(top > 0) {
+			int last = stack[--top];
+			int first = stack[--top];
+			double ax = xPoints[first], ay = yPoints[first];
+			double dx = xPoints[last] - ax, dy = yPoints[last] - ay;
+			double length2 = dx*dx + dy*dy;
+			double maxDistance2 = -1.0;
+			int farthest = -1;
+			for(int i = first + 1; i < last; i++) {
+				double px = xPoints[i] - ax, py = yPoints[i] - ay;
+				double distance2;
+				if(length2 == 0.0) {
+					distance2 = px*px + py*py;
+				}
+				else {
+					double cross = px*dy - py*dx;
+					distance2 = cross*cross / length2;
+				}
+				if(distance2 > maxDistance2) {
+					maxDistance2 = distance2;
+					farthest = i;
+				}
+			}
+			if(farthest >= 0 && maxDistance2 > tolerance2) {
+				keep[farthest] = true;
+				kept++;
+				stack[top++] = first;
+				stack[top++] = farthest;
+				stack[top++] = farthest;
+				stack[top++] = last;
+			}
+		}
+		return kept;
+	}
+
+	// Coarsest level whose error stays below maxError (m), -1 when the raw points must be used
+	static int levelFor(double maxError) {
+		int level = -1;
+		for(int i = 0; i < LOD_TOLERANCES.length; i++) {
+			if(LOD_TOLERANCES[i] <= maxError) {
+				level = i;
+			}
+		}
+		return level;
+	}
+
+	int getChunkCount()		{ return this.chunkCount;	}
+	Chunk getChunk(int i)	{ return this.chunks[i];	}
+	long getSampleCount()	{ return this.sampleCount;	}
+}
@@ -0,0 +1,49 @@
+package application;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+// Draws a PathHistory on a canvas. Chunks outside of the camera view are skipped and the
+// simplified copy of a chunk is used whenever its error is below half a pixel.
+abstract class PathHistoryPainter {
+	private static final double MAX_ERROR_PIXELS = 0.5;
+
+	public static void paint(GraphicsContext gc, PathHistory history, RobotGraphics robot) {
+		Camera camera = robot.getCamera();
+		double maxScale = Math.max(camera.getScaleX(), camera.getScaleY());
+		if(history.getChunkCount() == 0 || !(maxScale > 0.0)) {
+			return;
+		}
+		int level = PathHistory.levelFor(MAX_ERROR_PIXELS / maxScale);
+		double minX = camera.getViewMinX(), minY = camera.getViewMinY();
+		double maxX = camera.getViewMaxX(), maxY = camera.getViewMaxY();
+
+		gc.setLineWidth(1);
+		gc.setStroke(Color.DARKGRAY);
+		gc.beginPath();
+		int chunkCount = history.getChunkCount();
+		for(int c = 0; c < chunkCount; c++) {
+			PathHistory.Chunk chunk = history.getChunk(c);
+			if(!chunk.intersects(minX, minY, maxX, maxY)) {
+				continue;
+			}
+			double[] xPoints = chunk.xPoints;
+			double[] yPoints = chunk.yPoints;
+			int size = chunk.size;
+			double[][] lodXPoints = chunk.lodXPoints;
+			if(level >= 0 && lodXPoints != null) {
+				xPoints = lodXPoints[level];
+				yPoints = chunk.lodYPoints[level];
+				size = xPoints.length;
+			}
+			if(size < 2) {
+				continue;
+			}
+			gc.moveTo(camera.toScreenX(xPoints[0]), camera.toScreenY(yPoints[0]));
+			for(int i = 1; i < size; i++) {
+				gc.lineTo(camera.toScreenX(xPoints[i]), camera.toScreenY(yPoints[i]));
+			}
+		}
+		gc.stroke();
+	}
+}
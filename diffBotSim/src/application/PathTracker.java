@@ -0,0 +1,54 @@
+package application;
+
+// Scores how closely the robot follows a ReferencePath. Every tick the pose is projected on the
+// path and the cross-track and heading errors are added to streaming statistics. The progress
+// is the farthest arc length reached, so driving over an earlier part of a crossing path does
+// not move it back. Updated by the simulation thread and read by the view, hence the lock.
+public class PathTracker {
+	// Resolution of the percentiles: 1 cm up to 10 m, 1 mrad over half a turn
+	static final double	CROSS_TRACK_BIN = 0.01;
+	static final int	CROSS_TRACK_BINS = 1000;
+	static final double	HEADING_BIN = 0.001;
+	static final int	HEADING_BINS = (int)Math.ceil(Math.PI / HEADING_BIN);
+
+	private final ReferencePath path;
+	private final ReferencePath.Projection projection = new ReferencePath.Projection();
+	private final ErrorStats crossTrackError = new ErrorStats(CROSS_TRACK_BIN, CROSS_TRACK_BINS);
+	private final ErrorStats headingError = new ErrorStats(HEADING_BIN, HEADING_BINS);
+	private double progress = 0.0;
+
+	public PathTracker(ReferencePath path) {
+		this.path = path;
+	}
+
+	public synchronized void update(double x, double y, double theta) {
+		path.project(x, y, projection);
+		crossTrackError.record(projection.crossTrackError);
+		headingError.record(DFKEquation.wrapAngle(theta - projection.heading));
+		this.progress = Math.max(this.progress, projection.progress);
+	}
+
+	public synchronized void reset() {
+		crossTrackError.reset();
+		headingError.reset();
+		this.progress = 0.0;
+	}
+
+	// Adds the statistics of this tracker to the given ones
+	synchronized void mergeInto(ErrorStats crossTrackError, ErrorStats headingError) {
+		crossTrackError.merge(this.crossTrackError);
+		headingError.merge(this.headingError);
+	}
+
+	ReferencePath getPath()	{ return this.path; }
+
+	// Fraction (0 to 1) of the path driven so far
+	synchronized double getProgress() {
+		return this.progress / path.getLength();
+	}
+
+	public synchronized String summary() {
+		return String.format("cross-track (m) %s%nheading (rad) %s%nprogress %.1f%% of %.1f m",
+				crossTrackError, headingError, 100 * this.progress / path.getLength(), path.getLength());
+	}
+}
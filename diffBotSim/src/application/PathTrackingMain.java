@@ -0,0 +1,56 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Scores recorded joystick traces against a reference route, headless and in parallel
+//   PathTrackingMain <path file> <trace file>...
+// The robot starts on the first waypoint, facing along the path. The workspace spans from the
+// origin to the farthest waypoint plus MARGIN, so that the robot can leave the path.
+public class PathTrackingMain {
+	private static final double MARGIN = 10.0;	// m
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: PathTrackingMain <path file> <trace file>...");
+			System.exit(2);
+		}
+		ReferencePath path = ReferencePath.load(Paths.get(args[0]));
+		double maxX = 0.0, maxY = 0.0;
+		for(int i = 0; i < path.size(); i++) {
+			if(path.getX(i) < 0.0 || path.getY(i) < 0.0) {
+				System.err.println("The waypoints must be in the workspace, x >= 0 and y >= 0");
+				System.exit(2);
+			}
+			maxX = Math.max(maxX, path.getX(i));
+			maxY = Math.max(maxY, path.getY(i));
+		}
+
+		SimulationEngine engine = new SimulationEngine();
+		// Units are SI (meters, radians, seconds), same robot as Main
+		engine.setRobotLength(2.2);
+		engine.setWheelsSeparation(1.6);
+		engine.setWheelsRadius(0.4, 0.4);
+		engine.setWorkspaceDimensions(maxX + MARGIN, maxY + MARGIN);
+		engine.setRobotPose(path.getX(0), path.getY(0));
+		engine.setRobotOrientation(path.getHeading(0));
+		engine.setMaxWheelsSpeed(29.0, 29.0);
+
+		Tournament tournament = new Tournament(engine);
+		tournament.setReferencePath(path);
+		tournament.addStrategy("JoystickRobotLogic", JoystickRobotLogic::new);
+		for(int i = 1; i < args.length; i++) {
+			tournament.addTrace(InputTrace.load(Paths.get(args[i])));
+		}
+
+		long start = System.nanoTime();
+		List<Tournament.Result> results = tournament.run();
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("Reference path: %d waypoints, %.1f m%n", path.size(), path.getLength());
+		for(Tournament.Result result : results) {
+			System.out.println(result);
+		}
+		System.out.printf("%d runs in %.2f s%n", args.length - 1, elapsed / 1e9);
+	}
+}
@@ -0,0 +1,201 @@
+package application;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Runs the simulation on its own thread at a fixed rate, independently of the rendering, so a
+// slow frame no longer slows down the simulated time. The time step of the engine is set to
+// 1/rate and the steps are paced against the wall clock, scaled by the time scale.
+//
+// The poses before and after a step are read in the same locked step, and published in a double
+// buffer of two preallocated PoseSnapshots: the physics thread fills the one that is not
+// published and then publishes it, while the renderer copies the published one. Each snapshot
+// has a sequence like a seqlock, so a reader overtaken by two steps while copying copies again
+// instead of keeping a torn pose, and neither side ever waits for a lock. If the thread falls far
+// behind (e.g. a debugger pause) the missed steps are skipped instead of being caught up in a
+// burst.
+public class PhysicsThread {
+	private static final long MAX_LAG_NANOS = 100_000_000;
+	private static final long PAUSED_PARK_NANOS = 1_000_000;
+
+	private final SimulationEngine engine;
+	private final Object lock;
+	private final Runnable step;
+	private final double rate;
+	private final long period;		// ns per step at a time scale of 1
+	private final PoseSnapshot[] snapshots = {new PoseSnapshot(), new PoseSnapshot()};
+	private final AtomicLong[] sequences = {new AtomicLong(), new AtomicLong()};
+	private volatile int published = 0;
+	private final AtomicInteger pendingSteps = new AtomicInteger();
+	private volatile double timeScale = 1.0;
+	private volatile boolean isPaused = false;
+	private volatile boolean isRunning = false;
+	// set when the wall clock schedule has to restart from now
+	private volatile boolean isRebased = true;
+	private Thread thread;
+
+	// step must advance the engine by one time step (control, engine.step(), logging...), it is
+	// called on the physics thread holding lock, the lock that keeps the other threads out of the
+	// engine. republish() must also be called holding it.
+	public PhysicsThread(SimulationEngine engine, double rate, Object lock, Runnable step) {
+		if(rate <= 0) {
+			throw new IllegalArgumentException("Physics rate must be > 0");
+		}
+		this.engine = engine;
+		this.rate = rate;
+		this.period = (long)(1e9 / rate);
+		this.lock = lock;
+		this.step = step;
+		engine.setTimeStep(1.0 / rate);
+		this.publish(engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation());
+	}
+
+	public synchronized void start() {
+		if(this.isRunning) {
+			return;
+		}
+		this.isRunning = true;
+		this.isRebased = true;
+		this.thread = new Thread(this::run, "Physics");
+		this.thread.setDaemon(true);
+		this.thread.setPriority(Thread.MAX_PRIORITY);
+		this.thread.start();
+	}
+
+	public synchronized void stop() {
+		this.isRunning = false;
+		if(this.thread != null) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.thread = null;
+		}
+	}
+
+	public void pause() {
+		this.isPaused = true;
+	}
+
+	public void resume() {
+		this.isRebased = true;
+		this.isPaused = false;
+	}
+
+	// Do exactly one step while paused
+	public void singleStep() {
+		pendingSteps.incrementAndGet();
+		LockSupport.unpark(thread);
+	}
+
+	// Simulated seconds per wall clock second, e.g. 0.1 for slow motion
+	public void setTimeScale(double timeScale) {
+		if(timeScale <= 0) {
+			throw new IllegalArgumentException("Time scale must be > 0");
+		}
+		this.timeScale = timeScale;
+		this.isRebased = true;
+	}
+
+	// Publish the current state of the engine again after it was changed outside of a step,
+	// e.g. restored from a snapshot, so that a paused view shows it
+	void republish() {
+		this.publish(engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation());
+	}
+
+	// Copy the latest snapshot into out
+	void readSnapshot(PoseSnapshot out) {
+		while(true) {
+			int front = this.published;
+			AtomicLong sequence = sequences[front];
+			long before = sequence.getAcquire();
+			if((before & 1) == 0) {
+				out.copy(snapshots[front]);
+				VarHandle.loadLoadFence();
+				if(sequence.getOpaque() == before) {
+					return;
+				}
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	double getRate()			{ return this.rate;			}
+	double getTimeScale()		{ return this.timeScale;	}
+	boolean isPaused()			{ return this.isPaused;		}
+	boolean isRunning()			{ return this.isRunning;	}
+
+	// Wall clock nanoseconds between two steps at the current time scale
+	long getStepNanos() {
+		return (long)(period / timeScale);
+	}
+
+	private void run() {
+		long baseTime = 0;
+		long baseStep = 0;
+		long steps = 0;
+		while(this.isRunning) {
+			if(this.isPaused) {
+				if(pendingSteps.get() > 0) {
+					pendingSteps.decrementAndGet();
+					this.doStep();
+					steps++;
+				}
+				else {
+					LockSupport.parkNanos(PAUSED_PARK_NANOS);
+				}
+				continue;
+			}
+			pendingSteps.set(0);
+
+			long now = System.nanoTime();
+			if(this.isRebased) {
+				this.isRebased = false;
+				baseTime = now;
+				baseStep = steps;
+			}
+			long due = baseTime + (long)((steps - baseStep) * (period / timeScale));
+			if(now < due) {
+				LockSupport.parkNanos(due - now);
+				continue;
+			}
+			if(now - due > MAX_LAG_NANOS) {
+				this.isRebased = true;
+			}
+			this.doStep();
+			steps++;
+		}
+	}
+
+	private void doStep() {
+		synchronized(lock) {
+			double x = engine.getRobotXPose();
+			double y = engine.getRobotYPose();
+			double theta = engine.getRobotOrientation();
+			try {
+				step.run();
+			} catch (RuntimeException e) {
+				System.err.println("Physics step failed, pausing: " + e);
+				this.isPaused = true;
+			}
+			this.publish(x, y, theta);
+		}
+	}
+
+	// Only one thread publishes at a time, the physics thread or a republish(), both hold the lock
+	private void publish(double previousX, double previousY, double previousTheta) {
+		int back = this.published ^ 1;
+		AtomicLong sequence = sequences[back];
+		sequence.setOpaque(sequence.getPlain() + 1);
+		VarHandle.storeStoreFence();
+		snapshots[back].set(engine.getStepCount(), engine.getTime(),
+				engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation(),
+				previousX, previousY, previousTheta, engine.isCollision(), System.nanoTime());
+		sequence.setRelease(sequence.getPlain() + 1);
+		this.published = back;
+	}
+}
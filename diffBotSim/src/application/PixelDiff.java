@@ -0,0 +1,82 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+// Pixel comparison of rendered frames for the regression tests of the renderers. Two pixels
+// differ when one of their color channels differs by more than the tolerance (0 to 255), which
+// absorbs the antialiasing noise between platforms.
+public abstract class PixelDiff {
+	public static class Result {
+		public final long pixels;
+		public final long differentPixels;
+		public final int maxDifference;		// largest channel difference
+		public final BufferedImage diff;	// differing pixels in red over a faded expected frame
+
+		Result(long pixels, long differentPixels, int maxDifference, BufferedImage diff) {
+			this.pixels = pixels;
+			this.differentPixels = differentPixels;
+			this.maxDifference = maxDifference;
+			this.diff = diff;
+		}
+
+		// At most that fraction (0 to 1) of the pixels differ
+		public boolean isMatch(double maxFraction) {
+			return differentPixels <= maxFraction * pixels;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d of %d pixels differ (%.3f%%), max channel difference %d",
+					differentPixels, pixels, 100.0 * differentPixels / pixels, maxDifference);
+		}
+	}
+
+	public static Result compare(BufferedImage expected, BufferedImage actual, int tolerance) {
+		int width = expected.getWidth(), height = expected.getHeight();
+		if(actual.getWidth() != width || actual.getHeight() != height) {
+			throw new IllegalArgumentException("Frames have different sizes: " + width + "x" + height
+					+ " and " + actual.getWidth() + "x" + actual.getHeight());
+		}
+		BufferedImage diff = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] expectedRow = new int[width], actualRow = new int[width], diffRow = new int[width];
+		long differentPixels = 0;
+		int maxDifference = 0;
+		for(int y = 0; y < height; y++) {
+			expected.getRGB(0, y, width, 1, expectedRow, 0, width);
+			actual.getRGB(0, y, width, 1, actualRow, 0, width);
+			for(int x = 0; x < width; x++) {
+				int a = expectedRow[x], b = actualRow[x];
+				int difference = Math.max(Math.max(Math.abs((a >> 16 & 0xFF) - (b >> 16 & 0xFF)),
+						Math.abs((a >> 8 & 0xFF) - (b >> 8 & 0xFF))), Math.abs((a & 0xFF) - (b & 0xFF)));
+				maxDifference = Math.max(maxDifference, difference);
+				if(difference > tolerance) {
+					differentPixels++;
+					diffRow[x] = 0xFF0000;
+				}
+				else {
+					// faded grey copy of the expected frame
+					int grey = 192 + ((a >> 16 & 0xFF) + (a >> 8 & 0xFF) + (a & 0xFF)) / 12;
+					diffRow[x] = grey << 16 | grey << 8 | grey;
+				}
+			}
+			diff.setRGB(0, y, width, 1, diffRow, 0, width);
+		}
+		return new Result((long)width * height, differentPixels, maxDifference, diff);
+	}
+
+	public static Result compare(Path expected, Path actual, int tolerance) throws IOException {
+		return compare(read(expected), read(actual), tolerance);
+	}
+
+	private static BufferedImage read(Path file) throws IOException {
+		BufferedImage image = ImageIO.read(file.toFile());
+		if(image == null) {
+			throw new IOException("Not an image: " + file);
+		}
+		return image;
+	}
+}
@@ -0,0 +1,39 @@
+package application;
+
+// State of the robot after one step of the physics thread. It also holds the pose before that
+// step, so a renderer can interpolate across the step without keeping history. The physics
+// thread fills preallocated snapshots and a reader copies the published one into its own.
+public final class PoseSnapshot {
+	long	step;
+	double	time;			// simulated time (s)
+	double	x, y, theta;
+	double	previousX, previousY, previousTheta;
+	boolean	isCollision;
+	long	publishedAt;	// System.nanoTime() when the step was done
+
+	void set(long step, double time, double x, double y, double theta,
+			double previousX, double previousY, double previousTheta, boolean isCollision, long publishedAt) {
+		this.step = step;
+		this.time = time;
+		this.x = x;
+		this.y = y;
+		this.theta = theta;
+		this.previousX = previousX;
+		this.previousY = previousY;
+		this.previousTheta = previousTheta;
+		this.isCollision = isCollision;
+		this.publishedAt = publishedAt;
+	}
+
+	void copy(PoseSnapshot other) {
+		this.set(other.step, other.time, other.x, other.y, other.theta,
+				other.previousX, other.previousY, other.previousTheta, other.isCollision, other.publishedAt);
+	}
+
+	// Pose at a fraction (0 to 1) of the step, written to pose as {x, y, theta}
+	void interpolate(double alpha, double[] pose) {
+		pose[0] = previousX + (x - previousX) * alpha;
+		pose[1] = previousY + (y - previousY) * alpha;
+		pose[2] = DFKEquation.wrapAngle(previousTheta + DFKEquation.wrapAngle(theta - previousTheta) * alpha);
+	}
+}
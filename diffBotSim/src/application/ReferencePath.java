@@ -0,0 +1,224 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+// Reference route the robot should follow, a polyline of waypoints. The segments are indexed by
+// a uniform grid like the ObstacleMap: every segment is stored in all the cells its bounding box
+// covers, in compressed rows. The nearest point of the path is searched in rings of cells around
+// the query, nearest ring first, and the search stops as soon as no farther ring can hold a
+// closer segment, so a query costs about the same for a hundred or a million waypoints.
+// The path is immutable and can be shared by several trackers and threads.
+public class ReferencePath {
+	private static final int MAX_CELLS = 1 << 22;
+
+	private final double[] xs, ys;		// waypoints
+	private final double[] distance;	// arc length from the first waypoint to every waypoint (m)
+	private final double[] heading;		// direction of every segment (rad)
+	private final double cellSize;
+	private final double originX, originY;
+	private final int	columns, rows;
+	private final int[]	cellStart;
+	private final int[]	cellItems;
+
+	// Nearest point of the path to a position, the same instance is reused every query
+	public static class Projection {
+		public int segment;
+		public double x, y;
+		public double crossTrackError;	// m, > 0 when the position is on the left of the path
+		public double heading;			// rad, direction of the path at the nearest point
+		public double progress;			// m, arc length from the first waypoint
+	}
+
+	public ReferencePath(double[] xs, double[] ys) {
+		int n = xs.length;
+		if(n < 2 || ys.length != n) {
+			throw new IllegalArgumentException("A path needs at least two waypoints with both coordinates");
+		}
+		this.xs = xs.clone();
+		this.ys = ys.clone();
+		this.distance = new double[n];
+		this.heading = new double[n - 1];
+		double minX = xs[0], minY = ys[0], maxX = xs[0], maxY = ys[0];
+		for(int i = 0; i < n - 1; i++) {
+			double dx = xs[i + 1] - xs[i], dy = ys[i + 1] - ys[i];
+			distance[i + 1] = distance[i] + Math.sqrt(dx*dx + dy*dy);
+			heading[i] = Math.atan2(dy, dx);
+			minX = Math.min(minX, xs[i + 1]);
+			minY = Math.min(minY, ys[i + 1]);
+			maxX = Math.max(maxX, xs[i + 1]);
+			maxY = Math.max(maxY, ys[i + 1]);
+		}
+		if(distance[n - 1] <= 0.0) {
+			throw new IllegalArgumentException("The path has no length");
+		}
+		// a repeated waypoint has no direction of its own, it keeps the one of the segment before
+		// it, or after it at the start of the path
+		int firstMoving = 0;
+		while(distance[firstMoving + 1] == 0.0) {
+			firstMoving++;
+		}
+		for(int i = 0; i < n - 1; i++) {
+			if(distance[i + 1] == distance[i]) {
+				heading[i] = i < firstMoving ? heading[firstMoving] : heading[i - 1];
+			}
+		}
+
+		// as many cells as segments over the extent of the path, so that the empty space around a
+		// sparse path is not split in tiny cells, but not smaller than the mean segment
+		double width = maxX - minX, height = maxY - minY;
+		double cellSize = Math.max(distance[n - 1] / (n - 1), Math.sqrt(width * height / (n - 1)));
+		if((width / cellSize + 1) * (height / cellSize + 1) > MAX_CELLS) {
+			cellSize = Math.max(width, height) / (Math.sqrt(MAX_CELLS) - 1);
+		}
+		this.cellSize = cellSize;
+		this.originX = minX;
+		this.originY = minY;
+		this.columns = (int)(width / cellSize) + 1;
+		this.rows = (int)(height / cellSize) + 1;
+
+		// count the segments of every cell, then fill the compressed rows
+		this.cellStart = new int[columns * rows + 1];
+		for(int i = 0; i < n - 1; i++) {
+			for(int row = row(Math.min(ys[i], ys[i + 1])); row <= row(Math.max(ys[i], ys[i + 1])); row++) {
+				for(int column = column(Math.min(xs[i], xs[i + 1])); column <= column(Math.max(xs[i], xs[i + 1])); column++) {
+					cellStart[row * columns + column + 1]++;
+				}
+			}
+		}
+		for(int cell = 0; cell < columns * rows; cell++) {
+			cellStart[cell + 1] += cellStart[cell];
+		}
+		this.cellItems = new int[cellStart[columns * rows]];
+		int[] next = Arrays.copyOf(cellStart, columns * rows);
+		for(int i = 0; i < n - 1; i++) {
+			for(int row = row(Math.min(ys[i], ys[i + 1])); row <= row(Math.max(ys[i], ys[i + 1])); row++) {
+				for(int column = column(Math.min(xs[i], xs[i + 1])); column <= column(Math.max(xs[i], xs[i + 1])); column++) {
+					cellItems[next[row * columns + column]++] = i;
+				}
+			}
+		}
+	}
+
+	// Text file of one waypoint per line, x and y in meters separated by a comma, a semicolon or
+	// spaces. Empty lines and lines starting with # are skipped.
+	public static ReferencePath load(Path file) throws IOException {
+		List<String> lines = Files.readAllLines(file);
+		double[] xs = new double[lines.size()], ys = new double[lines.size()];
+		int n = 0;
+		for(int i = 0; i < lines.size(); i++) {
+			String line = lines.get(i).trim();
+			if(line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] values = line.split("[,;\\s]+");
+			try {
+				xs[n] = Double.parseDouble(values[0]);
+				ys[n] = Double.parseDouble(values[1]);
+			} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+				throw new IOException(file + ":" + (i + 1) + ": not a waypoint: " + line);
+			}
+			n++;
+		}
+		return new ReferencePath(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n));
+	}
+
+	public void project(double x, double y, Projection out) {
+		int queryColumn = Math.max(0, Math.min(columns - 1, column(x)));
+		int queryRow = Math.max(0, Math.min(rows - 1, row(y)));
+		int lastRing = Math.max(Math.max(queryColumn, columns - 1 - queryColumn), Math.max(queryRow, rows - 1 - queryRow));
+		double best = Double.POSITIVE_INFINITY;
+		int bestSegment = 0;
+
+		for(int ring = 0; ring <= lastRing; ring++) {
+			int firstRow = Math.max(0, queryRow - ring), lastRow = Math.min(rows - 1, queryRow + ring);
+			for(int row = firstRow; row <= lastRow; row++) {
+				boolean isEdgeRow = row == queryRow - ring || row == queryRow + ring;
+				int lastColumn = Math.min(columns - 1, queryColumn + ring);
+				// between the first and last rows of the ring only its first and last columns are new
+				int columnStep = isEdgeRow ? 1 : 2 * ring;
+				for(int column = isEdgeRow ? Math.max(0, queryColumn - ring) : queryColumn - ring; column <= lastColumn; column += columnStep) {
+					if(column < 0) {
+						continue;
+					}
+					int cell = row * columns + column;
+					for(int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+						int segment = cellItems[k];
+						double d = squaredDistance(segment, x, y);
+						if(d < best || (d == best && segment < bestSegment)) {
+							best = d;
+							bestSegment = segment;
+						}
+					}
+				}
+			}
+			// the cells of the next ring are at least ring cells away from the query
+			double bound = ring * cellSize;
+			if(best <= bound * bound) {
+				break;
+			}
+		}
+		this.fill(bestSegment, x, y, out);
+	}
+
+	// Same result as project by testing every segment, the reference of the grid search
+	void projectLinear(double x, double y, Projection out) {
+		double best = Double.POSITIVE_INFINITY;
+		int bestSegment = 0;
+		for(int segment = 0; segment < heading.length; segment++) {
+			double d = squaredDistance(segment, x, y);
+			if(d < best) {
+				best = d;
+				bestSegment = segment;
+			}
+		}
+		this.fill(bestSegment, x, y, out);
+	}
+
+	private double squaredDistance(int segment, double x, double y) {
+		double t = parameter(segment, x, y);
+		double dx = xs[segment] + t * (xs[segment + 1] - xs[segment]) - x;
+		double dy = ys[segment] + t * (ys[segment + 1] - ys[segment]) - y;
+		return dx*dx + dy*dy;
+	}
+
+	// Position of the nearest point along the segment, 0 at its start and 1 at its end
+	private double parameter(int segment, double x, double y) {
+		double dx = xs[segment + 1] - xs[segment], dy = ys[segment + 1] - ys[segment];
+		double lengthSquared = dx*dx + dy*dy;
+		if(lengthSquared == 0.0) {
+			return 0.0;
+		}
+		double t = ((x - xs[segment]) * dx + (y - ys[segment]) * dy) / lengthSquared;
+		return Math.max(0.0, Math.min(1.0, t));
+	}
+
+	private void fill(int segment, double x, double y, Projection out) {
+		double t = parameter(segment, x, y);
+		double dx = xs[segment + 1] - xs[segment], dy = ys[segment + 1] - ys[segment];
+		out.segment = segment;
+		out.x = xs[segment] + t * dx;
+		out.y = ys[segment] + t * dy;
+		double error = Math.sqrt((x - out.x) * (x - out.x) + (y - out.y) * (y - out.y));
+		out.crossTrackError = dx * (y - ys[segment]) - dy * (x - xs[segment]) >= 0.0 ? error : -error;
+		out.heading = heading[segment];
+		out.progress = distance[segment] + t * (distance[segment + 1] - distance[segment]);
+	}
+
+	private int column(double x) {
+		return (int)Math.floor((x - originX) / cellSize);
+	}
+
+	private int row(double y) {
+		return (int)Math.floor((y - originY) / cellSize);
+	}
+
+	public int size()			{ return xs.length;					}
+	public double getLength()	{ return distance[xs.length - 1];	}
+	double getX(int i)			{ return xs[i];						}
+	double getY(int i)			{ return ys[i];						}
+	double getHeading(int segment) { return heading[segment];		}
+}
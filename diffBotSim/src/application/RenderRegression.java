@@ -0,0 +1,89 @@
+package application;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+
+import javax.imageio.ImageIO;
+
+import javafx.application.Platform;
+
+// Pixel regression test of the renderings: every robot shape is driven for one second with
+// both renderers, exported offscreen, and the last frame is compared with a baseline image.
+//   RenderRegression <baseline dir> <output dir> [--update]
+// --update replaces the baseline with the new frames. Exits with 1 when a frame differs or has
+// no baseline. The baseline of the repository is in regression/baseline. Runs without a
+// display with -Dglass.platform=Monocle -Dmonocle.platform=Headless -Dprism.order=sw
+public class RenderRegression {
+	private static final int	WIDTH = 800, HEIGHT = 400;
+	private static final int	FRAMES = 30;
+	private static final int	TOLERANCE = 16;
+	private static final double	MAX_DIFFERENT_FRACTION = 0.001;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Path baseline = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		boolean isUpdate = args.length > 2 && args[2].equals("--update");
+		CountDownLatch started = new CountDownLatch(1);
+		Platform.startup(started::countDown);
+		started.await();
+		Files.createDirectories(baseline);
+
+		boolean isFailed = false;
+		for(RobotGraphics.Shape shape : RobotGraphics.Shape.values()) {
+			for(String renderer : new String[] {"RETAINED", "CANVAS"}) {
+				String name = shape.name().toLowerCase() + "_" + renderer.toLowerCase();
+				Path frame = render(shape, renderer, output.resolve(name));
+				Path expected = baseline.resolve(name + ".png");
+				if(isUpdate) {
+					Files.copy(frame, expected, StandardCopyOption.REPLACE_EXISTING);
+					System.out.println(name + ": baseline written");
+					continue;
+				}
+				// a missing baseline would let every frame pass, it has to be written with --update
+				if(!Files.exists(expected)) {
+					System.out.println(name + ": FAILED, no baseline " + expected);
+					isFailed = true;
+					continue;
+				}
+				PixelDiff.Result result = PixelDiff.compare(expected, frame, TOLERANCE);
+				boolean isMatch = result.isMatch(MAX_DIFFERENT_FRACTION);
+				System.out.println(name + ": " + (isMatch ? "ok, " : "FAILED, ") + result);
+				if(!isMatch) {
+					ImageIO.write(result.diff, "png", output.resolve(name + "_diff.png").toFile());
+					isFailed = true;
+				}
+			}
+		}
+		Platform.exit();
+		System.exit(isFailed ? 1 : 0);
+	}
+
+	// Same robot as Main, driven on a curve, returns the last exported frame
+	private static Path render(RobotGraphics.Shape shape, String renderer, Path directory) throws IOException, InterruptedException {
+		RobotGraphics[] robot = new RobotGraphics[1];
+		CountDownLatch created = new CountDownLatch(1);
+		Platform.runLater(() -> {
+			robot[0] = new RobotGraphics();
+			robot[0].setRenderer("CANVAS".equals(renderer) ? new CanvasRenderer() : new RetainedRenderer());
+			robot[0].setRobotShape(shape);
+			robot[0].setRobotLength(2.2);
+			robot[0].setWheelsSeparation(1.6);
+			robot[0].setWheelsRadius(0.4, 0.4);
+			robot[0].setWorkspaceDimensions(32, 16);
+			robot[0].setRobotPose(8, 1.9);
+			robot[0].setRobotOrientation(Math.PI / 2);
+			robot[0].setMaxWheelsSpeed(29.0, 29.0);
+			robot[0].setWheelsSpeed(12.0, 9.0);
+			created.countDown();
+		});
+		created.await();
+		try (FrameExporter exporter = new FrameExporter(robot[0], WIDTH, HEIGHT, 30, directory, FrameExporter.Format.PNG, 1)) {
+			exporter.export(FRAMES);
+		}
+		return directory.resolve(String.format("frame_%06d.png", FRAMES - 1));
+	}
+}
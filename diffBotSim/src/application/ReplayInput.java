@@ -0,0 +1,38 @@
+package application;
+
+// Plays a recorded InputTrace back as an input. The trace starts at the first sampled tick and
+// every tick gets the recorded sample in force half a time step after it, which keeps the
+// lookup away from the recorded sample times so a replay with the same time step is exact.
+public class ReplayInput implements InputSource {
+	private final InputTrace trace;
+	private final double timeStep;
+	private double	startTime = Double.NaN;
+	private int		sample = -1;
+	private boolean	isFinished = false;
+
+	public ReplayInput(InputTrace trace, double timeStep) {
+		this.trace = trace;
+		this.timeStep = timeStep;
+	}
+
+	@Override
+	public long sample(double time) {
+		if(Double.isNaN(startTime)) {
+			this.startTime = time;
+		}
+		double elapsed = time - startTime;
+		// the tick at the time of the last sample is the last one
+		double lookup = elapsed + timeStep/2;
+		if(lookup > trace.getDuration()) {
+			this.isFinished = true;
+		}
+		sample = trace.indexAt(lookup, sample);
+		if(sample < 0) {
+			return InputCell.pack(0.0f, 0.0f);
+		}
+		return InputCell.pack((float)trace.getX(sample), (float)trace.getY(sample));
+	}
+
+	// The whole trace was played
+	boolean isFinished() { return this.isFinished; }
+}
@@ -0,0 +1,242 @@
+package application;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.transform.Rotate;
+
+// Retained mode backend: the scene graph nodes are created once and every frame only
+// updates their positions and transforms. The grid and the obstacles are cached canvases that
+// are only repainted when the camera moves, and the robot nodes are hidden when out of view.
+// The trail is drawn on its own canvas from a ring of pixel coordinates that mirrors the Trail:
+// a tick only converts the points added since the previous frame, a Polyline would box every
+// point and shift its whole list once the trail is full.
+class RetainedRenderer implements RobotRenderer {
+	private static final double[] TRAIL_DASHES = {15.0, 15.0};
+
+	private final RobotGeometry geometry = new RobotGeometry();
+
+	private final GridLayer	gridLayer = new GridLayer();
+	private final ObstacleLayer obstacleLayer = new ObstacleLayer();
+	private final GhostPainter ghostPainter = new GhostPainter();
+	private final Canvas	overlayLayer = new Canvas();
+	private final Canvas	trailLayer = new Canvas();
+	private final Circle	circleBody = new Circle();
+	private final Rectangle	rectangleBody = new Rectangle();
+	private final Rotate	bodyRotate = new Rotate();
+	private final Rectangle	leftWheel = new Rectangle();
+	private final Rectangle	rightWheel = new Rectangle();
+	private final Circle	caster = new Circle();
+
+	private RobotGraphics.Shape shape;
+	// trail points in pixels, the point number n of the trail is in slot n % capacity
+	private double[] trailX_ = new double[0];
+	private double[] trailY_ = new double[0];
+	private long	trailAddedCount;
+	private int		trailGeneration = -1;
+	private boolean	isTrailerDirty = true;
+	private int		trailerCameraVersion;
+	private boolean	wasOverlayShown = false;
+
+	RetainedRenderer() {
+		GraphicsContext trailGc = trailLayer.getGraphicsContext2D();
+		trailGc.setLineWidth(1);
+		trailGc.setLineDashes(TRAIL_DASHES);
+		rectangleBody.getTransforms().add(bodyRotate);
+		leftWheel.setFill(Color.BLACK);
+		rightWheel.setFill(Color.BLACK);
+		caster.setFill(Color.BLACK);
+	}
+
+	@Override
+	public void attach(RobotGraphics robot) {
+		robot.getChildren().addAll(gridLayer, obstacleLayer, overlayLayer, trailLayer, circleBody, rectangleBody, leftWheel, rightWheel, caster);
+		this.shape = null;
+		this.resize(robot);
+	}
+
+	@Override
+	public void detach(RobotGraphics robot) {
+		robot.getChildren().removeAll(gridLayer, obstacleLayer, overlayLayer, trailLayer, circleBody, rectangleBody, leftWheel, rightWheel, caster);
+	}
+
+	@Override
+	public void resize(RobotGraphics robot) {
+		gridLayer.resize(robot);
+		obstacleLayer.resize(robot);
+		overlayLayer.setWidth(robot.getWindowWidth());
+		overlayLayer.setHeight(robot.getWindowHeight());
+		trailLayer.setWidth(robot.getWindowWidth());
+		trailLayer.setHeight(robot.getWindowHeight());
+
+		// the trail points are in pixels and must be recomputed
+		this.isTrailerDirty = true;
+	}
+
+	@Override
+	public void render(RobotGraphics robot) {
+		if(robot.getRobotShape() != this.shape) {
+			this.changeShape(robot.getRobotShape());
+		}
+		geometry.update(robot);
+		gridLayer.update(robot);
+		obstacleLayer.update(robot);
+		if(robot.getCamera().getVersion() != this.trailerCameraVersion) {
+			this.trailerCameraVersion = robot.getCamera().getVersion();
+			this.isTrailerDirty = true;
+		}
+
+		// The path history, the lidar scan and the ghosts are drawn on their own canvas, the first
+		// two have too many points to be kept as nodes
+		LidarScan scan = robot.isLidarShown() ? robot.getLidar().getLatestScan() : null;
+		GhostFleet ghosts = robot.getGhosts();
+		boolean isOverlayShown = robot.isPathHistoryShown() || scan != null || ghosts != null;
+		if(isOverlayShown || this.wasOverlayShown) {
+			GraphicsContext gc = overlayLayer.getGraphicsContext2D();
+			gc.clearRect(0, 0, overlayLayer.getWidth(), overlayLayer.getHeight());
+			if(robot.isPathHistoryShown()) {
+				PathHistoryPainter.paint(gc, robot.getPathHistory(), robot);
+			}
+			if(scan != null) {
+				LidarPainter.paint(gc, scan, robot);
+			}
+			if(ghosts != null) {
+				ghostPainter.paint(gc, ghosts, robot);
+			}
+			this.wasOverlayShown = isOverlayShown;
+		}
+
+		trailLayer.setVisible(robot.isTrailerShown());
+		if(robot.isTrailerShown()) {
+			this.updateTrailer(robot);
+		}
+
+		boolean isVisible = geometry.isInView(robot.getWindowWidth(), robot.getWindowHeight());
+		circleBody.setVisible(isVisible && this.shape == RobotGraphics.Shape.CENTERED_CIRCLE);
+		rectangleBody.setVisible(isVisible && this.shape != RobotGraphics.Shape.CENTERED_CIRCLE);
+		leftWheel.setVisible(isVisible);
+		rightWheel.setVisible(isVisible);
+		caster.setVisible(isVisible && geometry.hasCaster);
+		if(!isVisible) {
+			return;
+		}
+
+		if(this.shape == RobotGraphics.Shape.CENTERED_CIRCLE) {
+			circleBody.setRadius(geometry.bodyRadius_);
+			circleBody.setCenterX(geometry.x_);
+			circleBody.setCenterY(geometry.y_);
+		}
+		else {
+			rectangleBody.setX(geometry.bodyX_);
+			rectangleBody.setY(geometry.bodyY_);
+			rectangleBody.setWidth(geometry.bodyWidth_);
+			rectangleBody.setHeight(geometry.bodyHeight_);
+			bodyRotate.setPivotX(geometry.x_);
+			bodyRotate.setPivotY(geometry.y_);
+			bodyRotate.setAngle(geometry.rotate_);
+		}
+
+		leftWheel.setX(geometry.leftWheelX_);
+		leftWheel.setY(geometry.leftWheelY_);
+		leftWheel.setWidth(geometry.leftWheelWidth_);
+		leftWheel.setHeight(geometry.leftWheelHeight_);
+		leftWheel.setRotate(geometry.rotate_);
+
+		rightWheel.setX(geometry.rightWheelX_);
+		rightWheel.setY(geometry.rightWheelY_);
+		rightWheel.setWidth(geometry.rightWheelWidth_);
+		rightWheel.setHeight(geometry.rightWheelHeight_);
+		rightWheel.setRotate(geometry.rotate_);
+
+		if(geometry.hasCaster) {
+			caster.setRadius(geometry.casterRadius_);
+			caster.setCenterX(geometry.casterX_);
+			caster.setCenterY(geometry.casterY_);
+		}
+	}
+
+	// Only the points added since the previous frame are converted, all of them when the camera
+	// moved or the trail was reset. The canvas is only repainted when the trail changed.
+	private void updateTrailer(RobotGraphics robot) {
+		Trail trail = robot.getTrail();
+		int capacity = trail.capacity();
+		long newPoints = trail.getAddedCount() - this.trailAddedCount;
+		if(trailX_.length != capacity) {
+			this.trailX_ = new double[capacity];
+			this.trailY_ = new double[capacity];
+			this.isTrailerDirty = true;
+		}
+		boolean isRebuilt = trail.getGeneration() != this.trailGeneration || this.isTrailerDirty || newPoints >= trail.size();
+		if(!isRebuilt && newPoints == 0) {
+			return;
+		}
+
+		int size = trail.size();
+		long first = trail.getAddedCount() - size;
+		int start = isRebuilt ? 0 : size - (int)newPoints;
+		int slot = (int)((first + start) % capacity);
+		for(int i = start; i < size; i++) {
+			trailX_[slot] = toPixelsX(robot, trail.getX(i));
+			trailY_[slot] = toPixelsY(robot, trail.getY(i));
+			if(++slot == capacity) {
+				slot = 0;
+			}
+		}
+		this.trailAddedCount = trail.getAddedCount();
+		this.trailGeneration = trail.getGeneration();
+		this.isTrailerDirty = false;
+		this.paintTrailer((int)(first % capacity), size);
+	}
+
+	// Strokes the ring oldest point first, skipping the segments out of view
+	private void paintTrailer(int first, int size) {
+		GraphicsContext gc = trailLayer.getGraphicsContext2D();
+		double windowWidth_ = trailLayer.getWidth(), windowHeight_ = trailLayer.getHeight();
+		gc.clearRect(0, 0, windowWidth_, windowHeight_);
+		if(size < 2) {
+			return;
+		}
+		gc.setStroke(RobotGeometry.trailColor(this.shape));
+		gc.beginPath();
+		int capacity = trailX_.length;
+		double previousX_ = trailX_[first], previousY_ = trailY_[first];
+		int slot = first;
+		boolean isDrawing = false;
+		for(int i = 1; i < size; i++) {
+			if(++slot == capacity) {
+				slot = 0;
+			}
+			double x_ = trailX_[slot], y_ = trailY_[slot];
+			if(Math.max(x_, previousX_) < 0 || Math.min(x_, previousX_) > windowWidth_
+					|| Math.max(y_, previousY_) < 0 || Math.min(y_, previousY_) > windowHeight_) {
+				isDrawing = false;
+			}
+			else {
+				if(!isDrawing) {
+					gc.moveTo(previousX_, previousY_);
+					isDrawing = true;
+				}
+				gc.lineTo(x_, y_);
+			}
+			previousX_ = x_;
+			previousY_ = y_;
+		}
+		gc.stroke();
+	}
+
+	private static double toPixelsX(RobotGraphics robot, double x) {
+		return DimensionsMapper.worldToScreenX(robot, x);
+	}
+	private static double toPixelsY(RobotGraphics robot, double y) {
+		return DimensionsMapper.worldToScreenY(robot, y);
+	}
+
+	private void changeShape(RobotGraphics.Shape shape) {
+		this.shape = shape;
+		this.isTrailerDirty = true;
+		circleBody.setFill(RobotGeometry.bodyColor(shape));
+		rectangleBody.setFill(RobotGeometry.bodyColor(shape));
+	}
+}
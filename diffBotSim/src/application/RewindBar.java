@@ -0,0 +1,87 @@
+package application;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+
+// Scrubber over the rewind history of a RobotGraphics: dragging the slider pauses the run and
+// restores the snapshot under it, the button pauses and resumes. While the run goes on the
+// slider follows the newest snapshot. The bar is only refreshed while it is in a scene.
+public class RewindBar extends HBox {
+	private final RobotGraphics robot;
+	private final Button playButton = new Button("Pause");
+	private final Slider slider = new Slider(0, 0, 0);
+	private final Label timeLabel = new Label("0.00 s");
+	private boolean isUpdating = false;
+	private double	shownTime = -1.0;
+	private final AnimationTimer refresh = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			update();
+		}
+	};
+
+	public RewindBar(RobotGraphics robot) {
+		this.robot = robot;
+		this.setSpacing(8);
+		this.setPadding(new Insets(4, 8, 4, 8));
+		this.setAlignment(Pos.CENTER_LEFT);
+		HBox.setHgrow(slider, Priority.ALWAYS);
+		slider.setBlockIncrement(1);
+		timeLabel.setMinWidth(70);
+		this.getChildren().addAll(playButton, slider, timeLabel);
+
+		playButton.setOnAction(e -> {
+			if(robot.isPaused()) {
+				robot.resume();
+			}
+			else {
+				robot.pause();
+			}
+		});
+		slider.valueProperty().addListener((observable, previous, value) -> {
+			SnapshotRing rewind = robot.getRewind();
+			int index = (int)Math.round(value.doubleValue());
+			if(!this.isUpdating && rewind != null && index < rewind.size() && index != rewind.getRestored()) {
+				robot.rewindTo(index);
+			}
+		});
+		this.sceneProperty().addListener((observable, oldScene, newScene) -> {
+			if(newScene != null) {
+				refresh.start();
+			}
+			else {
+				refresh.stop();
+			}
+		});
+	}
+
+	private void update() {
+		SnapshotRing rewind = robot.getRewind();
+		String action = robot.isPaused() ? "Play" : "Pause";
+		if(!action.equals(playButton.getText())) {
+			playButton.setText(action);
+		}
+		if(rewind == null || rewind.size() == 0) {
+			return;
+		}
+		this.isUpdating = true;
+		if(slider.getMax() != rewind.size() - 1) {
+			slider.setMax(rewind.size() - 1);
+		}
+		int index = rewind.getRestored() >= 0 ? rewind.getRestored() : rewind.size() - 1;
+		if(!robot.isPaused() && !slider.isValueChanging()) {
+			slider.setValue(index);
+		}
+		this.isUpdating = false;
+		if(rewind.getTime(index) != this.shownTime) {
+			this.shownTime = rewind.getTime(index);
+			timeLabel.setText(String.format("%.2f s", shownTime));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package application;
+
+import javafx.scene.paint.Color;
+
+// Pixel geometry of the robot parts for the current frame. It is computed once per frame
+// and shared by the renderers, so every backend draws exactly the same robot.
+class RobotGeometry {
+	// Note: Units are Pixels and Degrees, y axis pointing down
+	double		x_, y_;			// robot pose, also the pivot of the body rotation
+	double		rotate_;		// rotation of the body and wheels
+	double		bodyX_, bodyY_, bodyWidth_, bodyHeight_;
+	double		bodyRadius_;	// CENTERED_CIRCLE only
+	double		leftWheelX_, leftWheelY_, leftWheelWidth_, leftWheelHeight_;
+	double		rightWheelX_, rightWheelY_, rightWheelWidth_, rightWheelHeight_;
+	double		casterX_, casterY_, casterRadius_;
+	boolean		hasCaster;
+
+	void update(RobotGraphics robot) {
+		RobotGraphics.Shape shape = robot.getRobotShape();
+		double orientation = robot.getOrientationRadians();
+		double robotLength_ = robot.getRobotLengthPixels();
+		double wheelSeparation_ = robot.getWheelSeparationPixels();
+
+		this.x_ = robot.getXPosePixels();
+		this.y_ = robot.getWindowHeight() - robot.getYPosePixels();
+		this.rotate_ = -robot.getOrientationDegrees();
+
+		// Position the robot body
+		this.bodyRadius_ = robotLength_/2;
+		this.bodyWidth_ = robotLength_;
+		this.bodyHeight_ = wheelSeparation_;
+		this.bodyY_ = y_ - wheelSeparation_/2;
+		if(shape == RobotGraphics.Shape.FRONT_WHEEL) {
+			this.bodyX_ = x_ - robotLength_;
+		}
+		else if(shape == RobotGraphics.Shape.REAR_WHEEL) {
+			this.bodyX_ = x_;
+		}
+		else {
+			this.bodyX_ = x_ - robotLength_/2;
+		}
+
+		// Position the robot left wheel
+		double leftWheelRadius_ = DimensionsMapper.metersToPixelsX(robot, robot.getLeftWheelRadius());
+		this.leftWheelX_ = x_ - (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - leftWheelRadius_;
+		this.leftWheelY_ = y_ - (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - leftWheelRadius_/2.6;
+		this.leftWheelHeight_ = leftWheelRadius_/1.3;
+		this.leftWheelWidth_ = leftWheelRadius_*2;
+
+		// Position the robot right wheel
+		double rightWheelRadius_ = DimensionsMapper.metersToPixelsX(robot, robot.getRightWheelRadius());
+		this.rightWheelX_ = x_ + (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - rightWheelRadius_;
+		this.rightWheelY_ = y_ + (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - rightWheelRadius_/2.6;
+		this.rightWheelHeight_ = rightWheelRadius_/1.3;
+		this.rightWheelWidth_ = rightWheelRadius_*2;
+
+		// Position the caster wheel
+		double casterDist_ = 0.75 * robotLength_;
+		this.casterRadius_ = rightWheelRadius_/4.0;
+		this.hasCaster = true;
+		if(shape == RobotGraphics.Shape.FRONT_WHEEL) {
+			this.casterX_ = x_ - Math.cos(orientation)*casterDist_;
+			this.casterY_ = y_ + Math.sin(orientation)*casterDist_;
+		}
+		else if(shape == RobotGraphics.Shape.REAR_WHEEL) {
+			this.casterX_ = x_ + Math.cos(orientation)*casterDist_;
+			this.casterY_ = y_ - Math.sin(orientation)*casterDist_;
+		}
+		else {
+			this.hasCaster = false;
+		}
+	}
+
+	// Is any part of the robot inside the window
+	boolean isInView(double windowWidth_, double windowHeight_) {
+		double reach_ = bodyWidth_ + bodyHeight_ + leftWheelWidth_ + rightWheelWidth_;
+		return x_ + reach_ >= 0 && x_ - reach_ <= windowWidth_ && y_ + reach_ >= 0 && y_ - reach_ <= windowHeight_;
+	}
+
+	static Color bodyColor(RobotGraphics.Shape shape) {
+		switch(shape) {
+			case CENTERED_CIRCLE:	return Color.PALEVIOLETRED;
+			case CENTERED_SQUARED:	return Color.RED;
+			case FRONT_WHEEL:		return Color.LIGHTSKYBLUE;
+			default:				return Color.LIGHTCORAL;
+		}
+	}
+
+	static Color trailColor(RobotGraphics.Shape shape) {
+		return bodyColor(shape);
+	}
+}
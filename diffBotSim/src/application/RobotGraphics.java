@@ -1,18 +1,21 @@
 package application;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 import javax.naming.CannotProceedException;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
+import javafx.geometry.VPos;
+import javafx.scene.input.MouseButton;
 import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-import javafx.scene.shape.Line;
-import javafx.scene.shape.Polyline;
 import javafx.scene.shape.Rectangle;
-import javafx.scene.transform.Rotate;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
 import javafx.util.Duration;
 
 public class RobotGraphics extends Pane {
@@ -23,56 +26,146 @@ public class RobotGraphics extends Pane {
 	}
 	// Note: Units are SI (Radiant, Meter, Second)
 	private Shape		shape = Shape.CENTERED_SQUARED;
-	private double 		wheelsSeparation;
-	private double 		rightWheelRadius, leftWheelRadius;
-	private double 		workspaceWidth, workspaceHeight;
-	private double 		xPose, yPose;
-	private double 		xVel, yVel, angularVel;
-	private double 		orientation = 0.0;
-	private double 		rightWheelSpeed = 0.0, leftWheelSpeed = 0.0;
-	private double		maxRightWheelSpeed = 5.0, maxLeftWheelSpeed = 5.0;
-	private double 		robotLength, robotLength_, wheelSeparation_;
+	private SimulationEngine engine = new SimulationEngine();
+	private double		x, y, orientation;
+	private double 		robotLength_, wheelSeparation_;
 	// Note: Units are Pixels and Degrees
 	private double		xPose_, yPose_;
 	private double		orientation_;
 	private double 		windowWidth_, windowHeight_;
 	private boolean		showTrailer = true;
 	
-	// Some flags for optimization
 	private boolean		isCollision = false;
-	private boolean		wasRed = false;
+	private final Camera camera = new Camera();
+	private double		dragX_, dragY_;
 	
-	// array of the points to be traces behind the robot
-	private double[] xPoints = new double[250];
-	private double[] yPoints = new double[250];
-	private int numberOfPoints = 0;
+	// Some flags for optimization
+	private boolean		wasRed = false;
 	
-	// flags that must be set to start the animation
-	boolean isRobotLengthSet, isXPoseSet, isYPoseSet, isWorkspaceWidthSet, isWorkspaceHeightSet,
-			isWheelSeparationSet, isRightWheelRadiusSet, isLeftWheelRadiusSet;
+	// points to be traced behind the robot
+	private Trail trail = new Trail(250);
+	// whole driven path, only recorded while it is shown
+	private PathHistory pathHistory = new PathHistory();
+	private boolean		showPathHistory = false;
+	private boolean		showLidar = false;
 	
 	private Timeline animation;
 	private EventHandler<ActionEvent> eventHandler = e -> { this.animationLoop(); };
 	
-	private Joystick joystick;
+	// Physics on its own thread (physicsRate > 0), the frames are then drawn by an AnimationTimer
+	// from the snapshots it publishes
+	private double		physicsRate = 0.0;
+	private PhysicsThread physics;
+	private final double[] interpolatedPose = new double[3];
+	private final PoseSnapshot snapshot = new PoseSnapshot();
+	private final AnimationTimer renderTimer = new AnimationTimer() {
+		@Override
+		public void handle(long now) {
+			renderPulse();
+		}
+	};
+	
+	// pause, single step and time scale when the physics runs on the frames
+	private boolean		isPaused = false;
+	private int			pendingSteps = 0;
+	private double		timeScale = 1.0;
+	private double		stepBudget = 0.0;
+	
+	// the input is sampled once per simulation step, on the simulation thread, from the
+	// lock-free cell the source publishes into, so the physics never reads JavaFX state
+	private volatile InputSource input;
+	private ControlLaw controlLaw = new JoystickRobotLogic();
+	// the law given to the engine, the input of the robot's law is recorded and fanned out to
+	// the ghosts, whatever its source
+	private final ControlLaw fanOutLaw = (input, output) -> {
+		this.record(input);
+		controlLaw.compute(input, output);
+		GhostFleet ghosts = this.ghosts;
+		if(ghosts != null) {
+			ghosts.applyControl(input);
+		}
+	};
+	
+	// joystick recording and replay, the samples are stamped with the simulated time since the
+	// start of the recording
+	private InputRecorder recorder;
+	private double		recordStartTime;
+	private double		recordedX, recordedY;
+	private ReplayInput	replay;
+	private int			replaySpeed = 1;
+	private TelemetryLogger telemetry;
+	// snapshots of the run taken every rewindInterval simulated seconds, null when disabled
+	private SnapshotRing rewind;
+	private double		rewindInterval;
+	private double		nextRewindTime;
+	// external controller, it overrides the joystick while it sends commands
+	private volatile UdpBridge bridge;
+	// live state for dashboards, see TelemetryServer
+	private volatile TelemetryServer telemetryServer;
+	private volatile GhostFleet ghosts;
+	private volatile PathTracker tracker;
+	
+	// per stage frame timing, shown by an optional overlay refreshed every OVERLAY_FRAMES frames
+	private static final int OVERLAY_FRAMES = 30;
+	private final FrameProfiler profiler = new FrameProfiler(this.refreshRate);
+	private Text		frameStats;
+	private Text		trackingStats;
+	private RobotRenderer renderer = new RetainedRenderer();
 	
 	public RobotGraphics() {
 		// start the animation loop
 		animation = new Timeline(new KeyFrame(Duration.millis(1/this.refreshRate * 1000), eventHandler));
 		animation.setCycleCount(Timeline.INDEFINITE);
+		engine.setTimeStep(1/this.refreshRate);
 		this.setStyle("-fx-border-color: black; -fx-border-width: 2px;");
-		for(int i=0; i<xPoints.length; i++) {
-			xPoints[i] = 0.0;
-			yPoints[i] = 0.0;
-		}
+		renderer.attach(this);
+		
+		// nothing is drawn outside of the view once zoomed in
+		Rectangle clip = new Rectangle();
+		clip.widthProperty().bind(this.widthProperty());
+		clip.heightProperty().bind(this.heightProperty());
+		this.setClip(clip);
+		
+		// wheel to zoom at the cursor, drag to pan, double click to see the whole workspace
+		this.setOnScroll(e -> {
+			camera.zoomAt(Math.pow(1.1, e.getDeltaY() / 40.0), e.getX(), e.getY());
+			this.paint();
+		});
+		this.setOnMousePressed(e -> {
+			this.dragX_ = e.getX();
+			this.dragY_ = e.getY();
+		});
+		this.setOnMouseDragged(e -> {
+			camera.pan(e.getX() - dragX_, e.getY() - dragY_);
+			this.dragX_ = e.getX();
+			this.dragY_ = e.getY();
+			this.paint();
+		});
+		this.setOnMouseClicked(e -> {
+			if(e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) {
+				camera.reset();
+				this.paint();
+			}
+		});
 	}
 	
 	public void startAnimation() throws CannotProceedException {
-		if(isRobotLengthSet&&isXPoseSet&&isYPoseSet&&isWorkspaceWidthSet&&isWorkspaceHeightSet)
-			if(isWheelSeparationSet&&isRightWheelRadiusSet&&isLeftWheelRadiusSet) {
+		if(engine.isConfigured()) {
+			if(this.physicsRate > 0) {
+				this.physics = new PhysicsThread(engine, this.physicsRate, this, this::threadStep);
+				physics.setTimeScale(this.timeScale);
+				if(this.isPaused) {
+					physics.pause();
+				}
+				physics.start();
+				renderTimer.start();
+			}
+			else {
+				engine.setTimeStep(1/this.refreshRate);
 				animation.play();
-				return;
 			}
+			return;
+		}
 		throw new CannotProceedException("Not all required parameters are set. Make sure the following"
 				+ "parameters are correctly set:"
 				+ "* Robot Length\n"
@@ -84,63 +177,203 @@ public class RobotGraphics extends Pane {
 				+ "* Left wheel radius");
 	}
 	
-	private void animationLoop() {
-		if(this.joystick != null) {
-			new JoystickRobotLogic(this, this.joystick);
+	public void stopAnimation() {
+		animation.stop();
+		renderTimer.stop();
+		if(this.physics != null) {
+			physics.stop();
+			this.physics = null;
 		}
-		this.xVel = DFKEquation.computeXVel(this);	// m/s
-		this.yVel = DFKEquation.computeYVel(this);	// m/s
-		this.angularVel = DFKEquation.computeAngularVel(this);	// rad/s
-		this.xPose += xVel/refreshRate;
-		this.yPose += yVel/refreshRate;
-		
-		this.isCollision = false;
+	}
+	
+	// package-private so that a frame can be driven by the benchmarks
+	void animationLoop() {
+		profiler.beginFrame();
 		
-		if(this.xPose > this.workspaceWidth) {
-			this.xPose = this.workspaceWidth;
-			this.isCollision = true;
+		// a replay can run faster than real time by doing several steps per frame
+		int steps;
+		if(this.isPaused) {
+			steps = this.pendingSteps;
+			this.pendingSteps = 0;
 		}
-		else if(this.xPose < 0) {
-			this.xPose = 0.0;
-			this.isCollision = true;
+		else {
+			stepBudget += (this.replay != null ? this.replaySpeed : 1) * this.timeScale;
+			steps = (int)stepBudget;
+			stepBudget -= steps;
 		}
-		if(this.yPose > this.workspaceHeight) {
-			this.yPose = this.workspaceHeight;
-			this.isCollision = true;
-		}
-		else if(this.yPose < 0) {
-			this.yPose = 0.0;
-			this.isCollision = true;
+		this.stepFrame(steps);
+	}
+	
+	// Frame of the offscreen FrameExporter: a number of simulation steps, then the drawing
+	void renderOffscreen(int steps) {
+		profiler.beginFrame();
+		this.stepFrame(steps);
+	}
+	
+	private void stepFrame(int steps) {
+		for(int i = 0; i < steps; i++) {
+			this.controlStep();
+			profiler.lap(FrameProfiler.Stage.CONTROL);
+			this.physicsStep();
+			profiler.lap(FrameProfiler.Stage.PHYSICS);
+			profiler.addSubSteps(engine.getLastSubSteps());
 		}
 		
-		this.orientation += this.angularVel/refreshRate;
-		
-		// Remap meters to pixels
-		this.xPose_ = DimensionsMapper.metersToPixelsX(this, this.xPose);
-		this.yPose_ = DimensionsMapper.metersToPixelsY(this, this.yPose);
-		
-		// Remap radians to degrees
-		this.orientation_ = this.orientation * 180.0 / Math.PI;
-		
-		// Shift previous points to the right
-        for (int i = xPoints.length - 1; i > 0; i--) {
-        	xPoints[i] = xPoints[i - 1];
-        	yPoints[i] = yPoints[i - 1];
-        }
-        // Insert new point
-		this.xPoints[0] = this.xPose_;
-		this.yPoints[0] = this.windowHeight_ - this.yPose_;
+		// The view only reads the state of the engine
+		this.renderFrame(engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation(), engine.isCollision());
+	}
+	
+	// Frame drawn while the physics runs on its own thread: the view lags one physics step
+	// behind and interpolates between the last two published poses
+	private void renderPulse() {
+		profiler.beginFrame();
+		physics.readSnapshot(snapshot);
+		double alpha = 1.0;
+		if(!physics.isPaused()) {
+			alpha = (double)(System.nanoTime() - snapshot.publishedAt) / physics.getStepNanos();
+			alpha = Math.max(0.0, Math.min(1.0, alpha));
+		}
+		snapshot.interpolate(alpha, interpolatedPose);
+		this.renderFrame(interpolatedPose[0], interpolatedPose[1], interpolatedPose[2], snapshot.isCollision);
+	}
+	
+	private void renderFrame(double x, double y, double theta, boolean isCollision) {
+		this.x = x;
+		this.y = y;
+		this.orientation = theta;
+		this.isCollision = isCollision;
+		camera.follow(x, y);
 		
-		if(numberOfPoints < this.xPoints.length) {
-			numberOfPoints++;
+		// Insert new point, the oldest one is dropped once the trail is full
+		trail.add(x, y, this.orientation);
+		if(this.showPathHistory) {
+			pathHistory.add(x, y);
+		}
+		if(this.rewind != null) {
+			this.captureRewind();
 		}
+		profiler.lap(FrameProfiler.Stage.TRAIL);
 		
-		this.getChildren().clear();
 		this.paint();
+		profiler.lap(FrameProfiler.Stage.PAINT);
+		profiler.endFrame();
+		TelemetryServer telemetryServer = this.telemetryServer;
+		if(telemetryServer != null) {
+			telemetryServer.publishFrame(profiler);
+		}
+		
+		if(this.frameStats != null && profiler.getFrames() % OVERLAY_FRAMES == 0) {
+			frameStats.setText(profiler.summary());
+		}
+		if(this.trackingStats != null && profiler.getFrames() % OVERLAY_FRAMES == 0) {
+			trackingStats.setText(tracker.summary());
+		}
+	}
+	
+	
+	private synchronized void captureRewind() {
+		double time = engine.getTime();
+		if(time >= nextRewindTime - 1e-9) {
+			rewind.capture(engine, trail);
+			this.nextRewindTime = time + rewindInterval;
+		}
 	}
 	
+	// One step on the physics thread, which holds the lock of this so that the setters stay out
+	// of the middle of a step
+	private void threadStep() {
+		this.controlStep();
+		this.physicsStep();
+	}
+	
+	private void controlStep() {
+		UdpBridge bridge = this.bridge;
+		InputSource input = this.input;
+		byte command;
+		if(this.replay != null) {
+			long sample = replay.sample(engine.getTime());
+			engine.applyControl(fanOutLaw, InputCell.x(sample), InputCell.y(sample));
+			if(replay.isFinished()) {
+				this.replay = null;
+			}
+		}
+		else if(bridge != null && (command = bridge.apply(engine, fanOutLaw)) != 0) {
+			// commanded by the external controller, wheel speeds do not go through the laws
+			GhostFleet ghosts = this.ghosts;
+			if(command == UdpBridge.WHEELS && ghosts != null) {
+				ghosts.applyWheelsSpeed(engine);
+			}
+			// a trace only holds joystick samples, it could not replay the wheel speeds
+			if(command == UdpBridge.WHEELS && this.recorder != null) {
+				System.err.println("Joystick recording stopped: the robot is driven by wheel speed commands");
+				this.stopRecording();
+			}
+		}
+		else if(input != null) {
+			long sample = input.sample(engine.getTime());
+			if(InputCell.isEmpty(sample)) {
+				// the wheels keep the speeds of the last input, which the replay gets by applying it again
+				if(this.recorder != null && recorder.size() > 0) {
+					this.record(engine.getTime(), recordedX, recordedY);
+				}
+				return;
+			}
+			engine.applyControl(fanOutLaw, InputCell.x(sample), InputCell.y(sample));
+		}
+	}
+	
+	// Record the joystick input applied by a step
+	private void record(ControlInput input) {
+		this.record(input.time, input.joystickX, input.joystickY);
+	}
+	
+	private void record(double time, double x, double y) {
+		if(this.recorder != null) {
+			try {
+				recorder.record(time - recordStartTime, x, y);
+				this.recordedX = x;
+				this.recordedY = y;
+			} catch (IOException e) {
+				System.err.println("Joystick recording stopped: " + e);
+				this.stopRecording();
+			}
+		}
+	}
+	
+	private void physicsStep() {
+		engine.step();
+		GhostFleet ghosts = this.ghosts;
+		if(ghosts != null) {
+			ghosts.step(engine);
+		}
+		PathTracker tracker = this.tracker;
+		if(tracker != null) {
+			tracker.update(engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation());
+		}
+		if(this.telemetry != null) {
+			telemetry.log(engine);
+		}
+		UdpBridge bridge = this.bridge;
+		if(bridge != null) {
+			bridge.publish(engine);
+		}
+		TelemetryServer telemetryServer = this.telemetryServer;
+		if(telemetryServer != null) {
+			telemetryServer.publishStep(engine);
+		}
+	}
 	
-	private void paint() {
+	void paint() {
+		// Remap meters to pixels, the pose in pixels keeps the y axis pointing up
+		camera.setViewport(this.windowWidth_, this.windowHeight_, engine.getWorkspaceWidth(), engine.getWorkspaceHeight());
+		this.xPose_ = DimensionsMapper.worldToScreenX(this, this.x);
+		this.yPose_ = this.windowHeight_ - DimensionsMapper.worldToScreenY(this, this.y);
+		this.robotLength_ = DimensionsMapper.metersToPixelsX(this, engine.getRobotLength());
+		this.wheelSeparation_ = DimensionsMapper.metersToPixelsY(this, engine.getWheelsSeparation());
+		
+		// Remap radians to degrees
+		this.orientation_ = this.orientation * 180.0 / Math.PI;
+		
 		// Draw border collision if needed
 		if(this.isCollision) {
 			if(!this.wasRed) {
@@ -153,326 +386,401 @@ public class RobotGraphics extends Pane {
 			this.wasRed = false;
 		}
 			
-		// draw x/y lines for every meter
-		for(int i = 1; i < (int)this.workspaceWidth; i++) {
-			double section = windowWidth_/this.workspaceWidth;
-			Line line = new Line(i*section, 0.0, i*section, windowHeight_);
-			line.setStrokeWidth(0.15);
-			this.getChildren().add(line);
-		}
-		for(int i = 1; i < (int)this.workspaceHeight; i++) {
-			double section = windowHeight_/this.workspaceHeight;
-			Line line = new Line(0.0, i*section, windowWidth_, i*section);
-			line.setStrokeWidth(0.2);
-			line.setStroke(Color.LIGHTSLATEGREY);
-			this.getChildren().add(line);
+		renderer.render(this);
+	}
+	
+	// Run the physics on its own thread at rate Hz (e.g. 1000) instead of once per frame,
+	// the time step becomes 1/rate. 0 (default) steps the physics on the frames.
+	// Takes effect at the next startAnimation().
+	public void setPhysicsRate(double rate) {
+		if(rate < 0) {
+			throw new IllegalArgumentException("Physics rate must be >= 0");
 		}
-		
-		// Draw the trailing line
-		Polyline trailer = new Polyline();
-		if(this.showTrailer) {
-			trailer.setStrokeWidth(1);
-			trailer.getStrokeDashArray().addAll(15.0, 15.0); // Dash 10 units, gap 5 units
-			for (int i = 0; i < numberOfPoints; i++) {
-				trailer.getPoints().addAll(xPoints[i], yPoints[i]);
-	        }
-			this.getChildren().add(trailer);
+		this.physicsRate = rate;
+	}
+	
+	public void pause() {
+		this.isPaused = true;
+		if(this.physics != null) {
+			physics.pause();
 		}
-			
-		if(this.shape == Shape.CENTERED_CIRCLE) {
-			if(this.showTrailer)
-				trailer.setStroke(Color.PALEVIOLETRED);
-			this.paintCenteredCircle();
+	}
+	
+	public void resume() {
+		this.isPaused = false;
+		if(this.physics != null) {
+			physics.resume();
 		}
-		else if(this.shape == Shape.CENTERED_SQUARED) {
-			if(this.showTrailer)
-				trailer.setStroke(Color.RED);
-			this.paintCenteredSquared();
+	}
+	
+	// Advance exactly one simulation step while paused
+	public void singleStep() {
+		if(this.physics != null) {
+			physics.singleStep();
 		}
-		else if(this.shape == Shape.FRONT_WHEEL) {
-			if(this.showTrailer)
-				trailer.setStroke(Color.LIGHTSKYBLUE);
-			this.paintFrontWheel();
+		else {
+			this.pendingSteps++;
 		}
-		else if(this.shape == Shape.REAR_WHEEL) {
-			if(this.showTrailer)
-				trailer.setStroke(Color.LIGHTCORAL);
-			this.paintRearWheel();
+	}
+	
+	// Simulated seconds per real second, e.g. 0.25 for slow motion
+	public void setTimeScale(double timeScale) {
+		if(timeScale <= 0) {
+			throw new IllegalArgumentException("Time scale must be > 0");
+		}
+		this.timeScale = timeScale;
+		if(this.physics != null) {
+			physics.setTimeScale(timeScale);
 		}
 	}
 	
-	private void paintCenteredCircle() {
-		Circle robotBody = new Circle();
-		Rectangle rightWheel = new Rectangle();
-		Rectangle leftWheel = new Rectangle();
-		
-		// Position the robot body
-		robotBody.setRadius(robotLength_/2);
-		robotBody.setCenterX(xPose_);
-		robotBody.setCenterY(windowHeight_ - yPose_);
-		robotBody.setFill(Color.PALEVIOLETRED);
-		
-		// Position the robot left wheel
-		double leftWheelRadius_ = DimensionsMapper.metersToPixelsX(this, leftWheelRadius);
-		double leftWheelX_ = xPose_ - (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - leftWheelRadius_;
-		double leftWheelY_ = windowHeight_ - yPose_ - (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - leftWheelRadius_/2.6;
-		leftWheel.setX(leftWheelX_);
-		leftWheel.setY(leftWheelY_);
-		leftWheel.setHeight(leftWheelRadius_/1.3);
-		leftWheel.setWidth(leftWheelRadius_*2);
-		leftWheel.setRotate(-orientation_);
-		leftWheel.setFill(Color.BLACK);
-		
-		// Position the robot right wheel
-		double rightWheelRadius_ = DimensionsMapper.metersToPixelsX(this, rightWheelRadius);
-		double rightWheelX_ = xPose_ + (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - rightWheelRadius_;
-		double rightWheelY_ = windowHeight_ - yPose_ + (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - rightWheelRadius_/2.6;
-		rightWheel.setX(rightWheelX_);
-		rightWheel.setY(rightWheelY_);
-		rightWheel.setHeight(rightWheelRadius_/1.3);
-		rightWheel.setWidth(rightWheelRadius_*2);
-		rightWheel.setRotate(-orientation_);
-		rightWheel.setFill(Color.BLACK);
-		
-		this.getChildren().addAll(robotBody, leftWheel, rightWheel);
-		
+	boolean isPaused()		{ return this.isPaused;	 }
+	double getTimeScale()	{ return this.timeScale; }
+	
+	public void connectJoystick(Joystick joystick) {
+		this.connectInput(joystick);
 	}
-	private void paintCenteredSquared() {
-		Rectangle robotBody = new Rectangle();
-		Rectangle rightWheel = new Rectangle();
-		Rectangle leftWheel = new Rectangle();
-		
-		// Position the robot body
-		robotBody.setWidth(robotLength_);
-		robotBody.setHeight(wheelSeparation_);
-		robotBody.setX(xPose_ - robotLength_/2);
-		robotBody.setY(this.getHeight() - yPose_ - wheelSeparation_/2);
-		robotBody.setRotate(-orientation_);
-		robotBody.setFill(Color.RED);
-		
-		// Position the robot left wheel
-		double leftWheelRadius_ = DimensionsMapper.metersToPixelsX(this, leftWheelRadius);
-		double leftWheelX_ = xPose_ - (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - leftWheelRadius_;
-		double leftWheelY_ = windowHeight_ - yPose_ - (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - leftWheelRadius_/2.6;
-		leftWheel.setX(leftWheelX_);
-		leftWheel.setY(leftWheelY_);
-		leftWheel.setHeight(leftWheelRadius_/1.3);
-		leftWheel.setWidth(leftWheelRadius_*2);
-		leftWheel.setRotate(-orientation_);
-		leftWheel.setFill(Color.BLACK);
-		
-		// Position the robot right wheel
-		double rightWheelRadius_ = DimensionsMapper.metersToPixelsX(this, rightWheelRadius);
-		double rightWheelX_ = xPose_ + (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - rightWheelRadius_;
-		double rightWheelY_ = windowHeight_ - yPose_ + (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - rightWheelRadius_/2.6;
-		rightWheel.setX(rightWheelX_);
-		rightWheel.setY(rightWheelY_);
-		rightWheel.setHeight(rightWheelRadius_/1.3);
-		rightWheel.setWidth(rightWheelRadius_*2);
-		rightWheel.setRotate(-orientation_);
-		rightWheel.setFill(Color.BLACK);
-		
-		this.getChildren().addAll(robotBody, leftWheel, rightWheel);
+	
+	// Drive the robot with any input: Joystick, KeyboardInput, ScriptedInput... null for none
+	public void connectInput(InputSource input) {
+		this.input = input;
 	}
 	
-	private void paintFrontWheel() {
-		Rectangle robotBody = new Rectangle();
-		Rectangle rightWheel = new Rectangle();
-		Rectangle leftWheel = new Rectangle();
-		Circle caster = new Circle();
-		
-		// Position the robot body
-		robotBody.setWidth(robotLength_);
-		robotBody.setHeight(wheelSeparation_);
-		robotBody.setX(xPose_ - robotLength_);
-		robotBody.setY(this.getHeight() - yPose_ - wheelSeparation_/2);
-		robotBody.getTransforms().add(new Rotate(-orientation_, xPose_, windowHeight_ - yPose_));
-		robotBody.setFill(Color.LIGHTSKYBLUE);
-		
-		// Position the robot left wheel
-		double leftWheelRadius_ = DimensionsMapper.metersToPixelsX(this, leftWheelRadius);
-		double leftWheelX_ = xPose_ - (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - leftWheelRadius_;
-		double leftWheelY_ = this.getHeight() - yPose_ - (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - leftWheelRadius_/2.6;
-		leftWheel.setX(leftWheelX_);
-		leftWheel.setY(leftWheelY_);
-		leftWheel.setHeight(leftWheelRadius_/1.3);
-		leftWheel.setWidth(leftWheelRadius_*2);
-		leftWheel.setRotate(-orientation_);
-		leftWheel.setFill(Color.BLACK);
-		
-		// Position the robot right wheel
-		double rightWheelRadius_ = DimensionsMapper.metersToPixelsX(this, rightWheelRadius);
-		double rightWheelX_ = xPose_ + (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - rightWheelRadius_;
-		double rightWheelY_ = windowHeight_ - yPose_ + (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - rightWheelRadius_/2.6;
-		rightWheel.setX(rightWheelX_);
-		rightWheel.setY(rightWheelY_);
-		rightWheel.setHeight(rightWheelRadius_/1.3);
-		rightWheel.setWidth(rightWheelRadius_*2);
-		rightWheel.setRotate(-orientation_);
-		rightWheel.setFill(Color.BLACK);
-		
-		// Position the caster wheel
-		double casterDist_ = 0.75 * robotLength_;
-		double casterX_ = xPose_ - Math.cos(orientation)*casterDist_;
-		double casterY_ = windowHeight_ - yPose_ + Math.sin(orientation)*casterDist_;
-		caster.setRadius(rightWheelRadius_/4.0);
-		caster.setCenterX(casterX_);
-		caster.setCenterY(casterY_);
-		caster.setFill(Color.BLACK);
-		
-		this.getChildren().addAll(robotBody, leftWheel, rightWheel, caster);
+	// Take the commands of an external controller, see UdpBridge. null disconnects it.
+	public void connectBridge(UdpBridge bridge) {
+		this.bridge = bridge;
 	}
 	
-	private void paintRearWheel() {
-		Rectangle robotBody = new Rectangle();
-		Rectangle rightWheel = new Rectangle();
-		Rectangle leftWheel = new Rectangle();
-		Circle caster = new Circle();
-		
-		// Position the robot body
-		robotBody.setWidth(robotLength_);
-		robotBody.setHeight(wheelSeparation_);
-		robotBody.setX(xPose_);
-		robotBody.setY(windowHeight_ - yPose_ - wheelSeparation_/2);
-		robotBody.getTransforms().add(new Rotate(-orientation_, xPose_, windowHeight_ - yPose_));
-		robotBody.setFill(Color.LIGHTCORAL);
-		
-		// Position the robot left wheel
-		double leftWheelRadius_ = DimensionsMapper.metersToPixelsX(this, leftWheelRadius);
-		double leftWheelX_ = xPose_ - (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - leftWheelRadius_;
-		double leftWheelY_ = windowHeight_ - yPose_ - (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - leftWheelRadius_/2.6;
-		leftWheel.setX(leftWheelX_);
-		leftWheel.setY(leftWheelY_);
-		leftWheel.setHeight(leftWheelRadius_/1.3);
-		leftWheel.setWidth(leftWheelRadius_*2);
-		leftWheel.setRotate(-orientation_);
-		leftWheel.setFill(Color.BLACK);
-		
-		// Position the robot right wheel
-		double rightWheelRadius_ = DimensionsMapper.metersToPixelsX(this, rightWheelRadius);
-		double rightWheelX_ = xPose_ + (wheelSeparation_/2) * Math.cos(Math.PI/2 - orientation) - rightWheelRadius_;
-		double rightWheelY_ = windowHeight_ - yPose_ + (wheelSeparation_/2) * Math.sin(Math.PI/2 - orientation) - rightWheelRadius_/2.6;
-		rightWheel.setX(rightWheelX_);
-		rightWheel.setY(rightWheelY_);
-		rightWheel.setHeight(rightWheelRadius_/1.3);
-		rightWheel.setWidth(rightWheelRadius_*2);
-		rightWheel.setRotate(-orientation_);
-		rightWheel.setFill(Color.BLACK);
-		
-		// Position the caster wheel
-		double casterDist_ = 0.75 * robotLength_;
-		double casterX_ = xPose_ + Math.cos(orientation)*casterDist_;
-		double casterY_ = windowHeight_ - yPose_ - Math.sin(orientation)*casterDist_;
-		caster.setRadius(rightWheelRadius_/4.0);
-		caster.setCenterX(casterX_);
-		caster.setCenterY(casterY_);
-		caster.setFill(Color.BLACK);
-		
-		this.getChildren().addAll(robotBody, leftWheel, rightWheel, caster);
+	// Publish the state and the frame timings to a TelemetryServer. null disconnects it.
+	public void connectTelemetryServer(TelemetryServer server) {
+		this.telemetryServer = server;
 	}
 	
-	public void connectJoystick(Joystick joystick) {
-		this.joystick = joystick;
+	// Record the joystick input applied by every simulation step into a trace file, whether it
+	// comes from the input source, a replay or a joystick command of the UdpBridge. The recording
+	// stops when the bridge commands the wheel speeds.
+	public synchronized void startRecording(Path file) throws IOException {
+		this.stopRecording();
+		this.recorder = new InputRecorder(file, engine.getTimeStep(),
+				engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation());
+		this.recordStartTime = engine.getTime();
+	}
+	
+	public synchronized void stopRecording() {
+		if(this.recorder != null) {
+			try {
+				recorder.close();
+			} catch (IOException e) {
+				System.err.println("Could not close the joystick recording: " + e);
+			}
+			this.recorder = null;
+		}
 	}
 	
+	// Log the state after every simulation step to a binary file, see TelemetryLogger.
+	// capacity is the number of records buffered before new ones are dropped.
+	public synchronized void startTelemetry(Path file, int capacity) throws IOException {
+		this.stopTelemetry();
+		this.telemetry = new TelemetryLogger(file, capacity);
+	}
 	
-	void setRobotShape(Shape shape) {
-		this.shape = shape;
+	public synchronized void stopTelemetry() {
+		if(this.telemetry != null) {
+			try {
+				telemetry.close();
+				if(telemetry.getDropped() > 0) {
+					System.err.println("Telemetry dropped " + telemetry.getDropped() + " records");
+				}
+			} catch (IOException e) {
+				System.err.println("Could not write the telemetry: " + e);
+			}
+			this.telemetry = null;
+		}
+	}
+	
+	// Drive the robot with a recorded trace instead of the joystick, from the recorded start pose.
+	// speed is the number of simulation steps per frame (1 = real time), with a physics thread
+	// the replay runs at the physics rate and is sped up with setTimeScale() instead.
+	public synchronized void replay(InputTrace trace, int speed) {
+		if(speed < 1) {
+			throw new IllegalArgumentException("Replay speed must be >= 1");
+		}
+		if(trace.getTimeStep() > 0.0) {
+			engine.setRobotPose(trace.getStartX(), trace.getStartY());
+			engine.setRobotOrientation(trace.getStartTheta());
+			engine.setWheelsSpeed(0.0, 0.0);
+		}
+		this.replay = new ReplayInput(trace, engine.getTimeStep());
+		this.replaySpeed = speed;
+		if(this.ghosts != null) {
+			ghosts.align(engine);
+		}
+		if(this.tracker != null) {
+			tracker.reset();
+		}
+	}
+	
+	boolean isReplaying() {
+		return this.replay != null;
+	}
+	
+	// Keep a snapshot every interval simulated seconds, the capacity latest ones, to rewind the run
+	public synchronized void enableRewind(int capacity, double interval) {
+		if(interval <= 0) {
+			throw new IllegalArgumentException("Rewind interval must be > 0");
+		}
+		this.rewind = new SnapshotRing(capacity);
+		this.rewindInterval = interval;
+		this.nextRewindTime = engine.getTime();
+	}
+	
+	// Pause and go back to a snapshot of the rewind history (0 is the oldest). The snapshots
+	// after it are kept while paused, so the history can be scrubbed back and forth; they are
+	// discarded once the run resumes from the restored state.
+	public void rewindTo(int index) {
+		this.pause();
+		synchronized(this) {
+			rewind.restore(index, engine, trail);
+			this.replay = null;
+			this.stepBudget = 0.0;
+			this.nextRewindTime = engine.getTime() + this.rewindInterval;
+			this.x = engine.getRobotXPose();
+			this.y = engine.getRobotYPose();
+			this.orientation = engine.getRobotOrientation();
+			this.isCollision = engine.isCollision();
+			if(this.ghosts != null) {
+				ghosts.align(engine);
+			}
+			if(this.tracker != null) {
+				tracker.reset();
+			}
+			if(this.physics != null) {
+				physics.republish();
+			}
+		}
 		this.paint();
 	}
-	void setRobotLength(double length) {
-		if(length < 0.01) {
-			throw new IllegalArgumentException("Length must be > 0.01 m");
+	
+	SnapshotRing getRewind() { return this.rewind; }
+	
+	// Strategies run next to the robot on the same input and drawn as ghosts, null removes them.
+	// The ghosts start from the current pose of the robot.
+	public synchronized void setGhosts(GhostFleet ghosts) {
+		if(ghosts != null) {
+			ghosts.align(engine);
 		}
-		this.robotLength = length;
-		this.isRobotLengthSet = true;
+		this.ghosts = ghosts;
 	}
-	void setWheelsSeparation(double wheelsSeparation) {
-		if(wheelsSeparation < 0.01) {
-			throw new IllegalArgumentException("Wheel separation must be > 0.01 m");
+	
+	// Route to follow, drawn in the workspace. The robot is scored against it every step and the
+	// scores are shown in the bottom left corner; they restart with a replay or a rewind. null
+	// removes it.
+	public synchronized void setReferencePath(ReferencePath path) {
+		this.tracker = path == null ? null : new PathTracker(path);
+		if(path != null && this.trackingStats == null) {
+			this.trackingStats = new Text(8, this.windowHeight_ - 8, tracker.summary());
+			trackingStats.setTextOrigin(VPos.BOTTOM);
+			trackingStats.setFont(Font.font("Monospaced", 11));
+			trackingStats.setMouseTransparent(true);
+			this.getChildren().add(trackingStats);
 		}
-		this.wheelsSeparation = wheelsSeparation;
-		this.isWheelSeparationSet = true;
+		else if(path == null && this.trackingStats != null) {
+			this.getChildren().remove(trackingStats);
+			this.trackingStats = null;
+		}
+		this.paint();
+	}
+	
+	// Logic that maps the joystick to the wheel speeds, JoystickRobotLogic by default
+	public synchronized void setControlLaw(ControlLaw controlLaw) {
+		this.controlLaw = controlLaw;
 	}
-	void setWheelsRadius(double leftWheelRadius, double	rightWheelRadius) {
-		if(rightWheelRadius < 0.01 || leftWheelRadius < 0.01) {
-			throw new IllegalArgumentException("Wheel radius must be > 0.01 m");
+	
+	
+	// Select the backend used to draw the robot, e.g. RetainedRenderer or CanvasRenderer
+	void setRenderer(RobotRenderer renderer) {
+		this.renderer.detach(this);
+		this.renderer = renderer;
+		renderer.attach(this);
+		if(this.trackingStats != null) {
+			trackingStats.toFront();
 		}
-		this.rightWheelRadius = rightWheelRadius;
-		this.leftWheelRadius = leftWheelRadius;
-		this.isRightWheelRadiusSet = true;
-		this.isLeftWheelRadiusSet = true;
+		if(this.frameStats != null) {
+			frameStats.toFront();
+		}
+		this.paint();
 	}
-	void setWorkspaceDimensions(double workspaceWidth, double workspaceHeight) {
-		if(workspaceWidth < 0.1 || workspaceHeight < 0.1) {
-			throw new IllegalArgumentException("Workspace dimensions are too small");
+	synchronized void setRobotShape(Shape shape) {
+		this.shape = shape;
+		this.updateFootprint();
+		this.paint();
+	}
+	synchronized void setRobotLength(double length) {
+		engine.setRobotLength(length);
+		this.updateFootprint();
+	}
+	synchronized void setWheelsSeparation(double wheelsSeparation) {
+		engine.setWheelsSeparation(wheelsSeparation);
+		this.updateFootprint();
+	}
+	// The engine collides with the body as it is drawn, the wheels are ignored
+	private void updateFootprint() {
+		double length = engine.getRobotLength();
+		if(this.shape == Shape.CENTERED_CIRCLE) {
+			if(length > 0) {
+				engine.setCircularFootprint(length/2);
+			}
+		}
+		else if(this.shape == Shape.FRONT_WHEEL) {
+			engine.setFootprint(length, 0.0, engine.getWheelsSeparation()/2);
+		}
+		else if(this.shape == Shape.REAR_WHEEL) {
+			engine.setFootprint(0.0, length, engine.getWheelsSeparation()/2);
+		}
+		else {
+			engine.setFootprint(length/2, length/2, engine.getWheelsSeparation()/2);
 		}
-		this.workspaceWidth = workspaceWidth;
-		this.workspaceHeight = workspaceHeight;
-		this.isWorkspaceHeightSet = true;
-		this.isWorkspaceWidthSet = true;
 	}
-	void setRobotPose(double x, double y) {
-		this.xPose = x;
-		this.yPose = y;
-		this.isXPoseSet = true;
-		this.isYPoseSet = true;
+	// Range sensor on the robot, its scans are given to the control law, null for none
+	synchronized void setLidar(Lidar lidar) {
+		engine.setLidar(lidar);
 	}
-	void setRobotOrientation(double theta) {
-		this.orientation = theta;
+	// Static obstacles, null for none
+	synchronized void setObstacles(ObstacleMap obstacles) {
+		engine.setObstacles(obstacles);
+		this.paint();
+	}
+	synchronized void setWheelsRadius(double leftWheelRadius, double	rightWheelRadius) {
+		engine.setWheelsRadius(leftWheelRadius, rightWheelRadius);
+	}
+	synchronized void setWorkspaceDimensions(double workspaceWidth, double workspaceHeight) {
+		engine.setWorkspaceDimensions(workspaceWidth, workspaceHeight);
+	}
+	// Drive in a map, the workspace is the extent of the map
+	synchronized void setWorkspaceDimensions(OccupancyGrid map) {
+		engine.setWorkspaceDimensions(map);
+	}
+	synchronized void setRobotPose(double x, double y) {
+		engine.setRobotPose(x, y);
+		this.x = x;
+		this.y = y;
 	}
-	void setWheelsSpeed(double leftWheelSpeed, double rightWheelSpeed) {
-		if(Math.abs(rightWheelSpeed) > this.maxRightWheelSpeed || Math.abs(leftWheelSpeed) > this.maxLeftWheelSpeed) {
-			throw new IllegalArgumentException("Wheel speed limit violated. Wheel speed not changed");
+	synchronized void setRobotOrientation(double theta) {
+		engine.setRobotOrientation(theta);
+		this.orientation = engine.getRobotOrientation();
+	}
+	synchronized void setWheelsSpeed(double leftWheelSpeed, double rightWheelSpeed) {
+		engine.setWheelsSpeed(leftWheelSpeed, rightWheelSpeed);
+		GhostFleet ghosts = this.ghosts;
+		if(ghosts != null) {
+			ghosts.applyWheelsSpeed(engine);
 		}
-		this.rightWheelSpeed = rightWheelSpeed;
-		this.leftWheelSpeed = leftWheelSpeed;
 	}
-	void setMaxWheelsSpeed(double maxLeft, double maxRight) {
-		this.maxLeftWheelSpeed = maxLeft;
-		this.maxRightWheelSpeed = maxRight;
+	synchronized void setMaxWheelsSpeed(double maxLeft, double maxRight) {
+		engine.setMaxWheelsSpeed(maxLeft, maxRight);
+	}
+	synchronized void setIntegrator(DFKEquation.Integrator integrator) {
+		engine.setIntegrator(integrator);
+	}
+	synchronized void setErrorTolerance(double errorTolerance) {
+		engine.setErrorTolerance(errorTolerance);
 	}
 	void showTrailer(boolean show) {
 		this.showTrailer = show;
 	}
+	// Record and show the whole driven path, not only the trailer
+	void showPathHistory(boolean show) {
+		this.showPathHistory = show;
+	}
+	// Draw the latest lidar scan
+	void showLidar(boolean show) {
+		this.showLidar = show;
+	}
+	// Overlay with the frame timing statistics of getFrameProfiler()
+	void showFrameStats(boolean show) {
+		if(show && this.frameStats == null) {
+			this.frameStats = new Text(8, 16, profiler.summary());
+			frameStats.setFont(Font.font("Monospaced", 11));
+			frameStats.setMouseTransparent(true);
+			this.getChildren().add(frameStats);
+		}
+		else if(!show && this.frameStats != null) {
+			this.getChildren().remove(frameStats);
+			this.frameStats = null;
+		}
+	}
+	// Number of points kept behind the robot (250 by default)
+	void setTrailLength(int points) {
+		trail.setCapacity(points);
+	}
+	// A new trail point is only added once the robot moved more than minDistance (m)
+	// or turned more than minAngle (rad) since the previous one
+	void setTrailDecimation(double minDistance, double minAngle) {
+		trail.setDecimation(minDistance, minAngle);
+	}
 	
-	double getRightWheelRadius() { return this.rightWheelRadius; }
-	double getLeftWheelRadius()  { return this.leftWheelRadius;  }
-	double getRobotOrientation() { return this.orientation;		 }
-	double getRobotXPose()		 { return this.xPose;			 }
-	double getRightWheelSpeed()  { return this.rightWheelSpeed;  }
-	double getLeftWheelSpeed()   { return this.leftWheelSpeed;   }
-	double getWheelsSeparation() { return this.wheelsSeparation; }
-	double getWorkspaceWidth()	 { return this.workspaceWidth;	 }
-	double getWorkspaceHeight()	 { return this.workspaceHeight;	 }
+	SimulationEngine getEngine() { return this.engine; }
+	ObstacleMap getObstacles()	 { return engine.getObstacles(); }
+	OccupancyGrid getMap()		 { return engine.getMap();		 }
+	Lidar getLidar()			 { return engine.getLidar();	 }
+	ControlLaw getControlLaw()	 { return this.controlLaw; }
+	GhostFleet getGhosts()		 { return this.ghosts; }
+	PathTracker getPathTracker() { return this.tracker; }
+	ReferencePath getReferencePath() {
+		PathTracker tracker = this.tracker;
+		return tracker == null ? null : tracker.getPath();
+	}
+	FrameProfiler getFrameProfiler() { return this.profiler; }
+	// Zoom, pan and follow of the view
+	public Camera getCamera()	 { return this.camera; }
 	
-	double getMaxRightWheelSpeed() { return this.maxRightWheelSpeed; }
-	double getMaxLeftWheelSpeed() { return this.maxLeftWheelSpeed; }
+	double getRightWheelRadius() { return engine.getRightWheelRadius(); }
+	double getLeftWheelRadius()  { return engine.getLeftWheelRadius();  }
+	double getRobotOrientation() { return engine.getRobotOrientation(); }
+	double getRobotXPose()		 { return engine.getRobotXPose();		}
+	double getRobotYPose()		 { return engine.getRobotYPose();		}
+	double getRightWheelSpeed()  { return engine.getRightWheelSpeed();  }
+	double getLeftWheelSpeed()   { return engine.getLeftWheelSpeed();   }
+	double getWheelsSeparation() { return engine.getWheelsSeparation(); }
+	double getWorkspaceWidth()	 { return engine.getWorkspaceWidth();	}
+	double getWorkspaceHeight()	 { return engine.getWorkspaceHeight();	}
+	
+	double getMaxRightWheelSpeed() { return engine.getMaxRightWheelSpeed(); }
+	double getMaxLeftWheelSpeed() { return engine.getMaxLeftWheelSpeed(); }
+	
+	// View state read by the renderers
+	Shape getRobotShape()			 { return this.shape;			 }
+	boolean isTrailerShown()		 { return this.showTrailer;		 }
+	double getXPosePixels()			 { return this.xPose_;			 }
+	double getYPosePixels()			 { return this.yPose_;			 }
+	double getOrientationDegrees()	 { return this.orientation_;	 }
+	double getOrientationRadians()	 { return this.orientation;		 }
+	double getRobotLengthPixels()	 { return this.robotLength_;	 }
+	double getWheelSeparationPixels() { return this.wheelSeparation_; }
+	double getWindowWidth()			 { return this.windowWidth_;	 }
+	double getWindowHeight()		 { return this.windowHeight_;	 }
+	Trail getTrail()				 { return this.trail;			 }
+	PathHistory getPathHistory()	 { return this.pathHistory;		 }
+	boolean isPathHistoryShown()	 { return this.showPathHistory;	 }
+	boolean isLidarShown()			 { return this.showLidar && engine.getLidar() != null; }
 	
 	@Override
 	public void setWidth(double width) {
 		super.setWidth(width);
-		robotLength_ = DimensionsMapper.metersToPixelsX(this, this.robotLength);
-		wheelSeparation_ = DimensionsMapper.metersToPixelsY(this, this.wheelsSeparation);
-		for(int i=0; i<xPoints.length; i++) {
-			xPoints[i] = 0.0;
-			yPoints[i] = 0.0;
-		}
-		numberOfPoints = 0;
 		windowWidth_ = this.getWidth();
+		camera.setViewport(windowWidth_, windowHeight_, engine.getWorkspaceWidth(), engine.getWorkspaceHeight());
+		renderer.resize(this);
 		this.paint();
 	}
 	@Override
 	public void setHeight(double height) {
 		super.setHeight(height);
-		robotLength_ = DimensionsMapper.metersToPixelsX(this, this.robotLength);
-		wheelSeparation_ = DimensionsMapper.metersToPixelsY(this, this.wheelsSeparation);
-		for(int i=0; i<xPoints.length; i++) {
-			xPoints[i] = 0.0;
-			yPoints[i] = 0.0;
-		}
-		numberOfPoints = 0;
 		windowHeight_ = this.getHeight();
+		camera.setViewport(windowWidth_, windowHeight_, engine.getWorkspaceWidth(), engine.getWorkspaceHeight());
+		renderer.resize(this);
+		if(this.trackingStats != null) {
+			trackingStats.setY(windowHeight_ - 8);
+		}
 		this.paint();
 	}
 }
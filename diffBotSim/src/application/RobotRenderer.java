@@ -0,0 +1,15 @@
+package application;
+
+// Draws the state of a RobotGraphics view. A renderer is attached once, told when the
+// window is resized and then asked to render every frame. Implementations must not
+// allocate anything in render() once the view is in a steady state.
+interface RobotRenderer {
+	// Create the nodes the renderer needs and add them to the view
+	void attach(RobotGraphics robot);
+	// Remove the nodes of the renderer from the view
+	void detach(RobotGraphics robot);
+	// The window size or the workspace changed, cached geometry must be rebuilt
+	void resize(RobotGraphics robot);
+	// Draw the current frame
+	void render(RobotGraphics robot);
+}
@@ -0,0 +1,30 @@
+package application;
+
+// Input computed from the simulated time, e.g. for repeatable demos and tests:
+//   new ScriptedInput(t -> InputCell.pack(0.0f, (float)Math.sin(t)))
+// The script is called on the simulation thread once per tick, the last value is also
+// published to getCell() so that it can be shown.
+public class ScriptedInput implements InputSource {
+	public interface Script {
+		// Packed (x, y) at the given simulated time, see InputCell.pack()
+		long at(double time);
+	}
+
+	private final Script script;
+	private final InputCell cell = new InputCell();
+
+	public ScriptedInput(Script script) {
+		this.script = script;
+	}
+
+	@Override
+	public long sample(double time) {
+		long value = script.at(time);
+		if(!InputCell.isEmpty(value)) {
+			cell.publish(InputCell.x(value), InputCell.y(value));
+		}
+		return value;
+	}
+
+	InputCell getCell() { return this.cell; }
+}
@@ -0,0 +1,126 @@
+package application;
+
+// Overlap tests between convex shapes with the separating axis theorem: two convex shapes are
+// disjoint if and only if their projections on one of the edge normals (plus, for a circle,
+// the axis towards the closest vertex) do not overlap. Polygons are given as vertex arrays of
+// any winding, touching shapes count as overlapping.
+public abstract class SeparatingAxis {
+
+	public static boolean polygonsOverlap(double[] ax, double[] ay, int an, double[] bx, double[] by, int bn) {
+		return !hasSeparatingEdge(ax, ay, an, bx, by, bn) && !hasSeparatingEdge(bx, by, bn, ax, ay, an);
+	}
+
+	public static boolean polygonCircleOverlap(double[] px, double[] py, int n, double cx, double cy, double r) {
+		// axis from the closest vertex to the center
+		double closest = Double.MAX_VALUE;
+		double axisX = 0.0, axisY = 0.0;
+		for(int i = 0; i < n; i++) {
+			double dx = cx - px[i];
+			double dy = cy - py[i];
+			double distance = dx*dx + dy*dy;
+			if(distance < closest) {
+				closest = distance;
+				axisX = dx;
+				axisY = dy;
+			}
+		}
+		if(closest <= r*r) {
+			return true;
+		}
+		if(isSeparated(px, py, n, cx, cy, r, axisX, axisY)) {
+			return false;
+		}
+		for(int i = 0, j = n - 1; i < n; j = i++) {
+			if(isSeparated(px, py, n, cx, cy, r, -(py[i] - py[j]), px[i] - px[j])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static boolean circlesOverlap(double ax, double ay, double ar, double bx, double by, double br) {
+		double dx = ax - bx;
+		double dy = ay - by;
+		return dx*dx + dy*dy <= (ar + br) * (ar + br);
+	}
+
+	// Axis aligned box against a convex polygon, e.g. a grid cell
+	public static boolean boxPolygonOverlap(double minX, double minY, double maxX, double maxY, double[] px, double[] py, int n) {
+		double pMinX = Double.MAX_VALUE, pMinY = Double.MAX_VALUE;
+		double pMaxX = -Double.MAX_VALUE, pMaxY = -Double.MAX_VALUE;
+		for(int k = 0; k < n; k++) {
+			pMinX = Math.min(pMinX, px[k]);
+			pMinY = Math.min(pMinY, py[k]);
+			pMaxX = Math.max(pMaxX, px[k]);
+			pMaxY = Math.max(pMaxY, py[k]);
+		}
+		// the box normals are the x and y axes
+		if(pMaxX < minX || maxX < pMinX || pMaxY < minY || maxY < pMinY) {
+			return false;
+		}
+		for(int i = 0, j = n - 1; i < n; j = i++) {
+			double nx = -(py[i] - py[j]);
+			double ny = px[i] - px[j];
+			double pMin = Double.MAX_VALUE, pMax = -Double.MAX_VALUE;
+			for(int k = 0; k < n; k++) {
+				double p = px[k]*nx + py[k]*ny;
+				pMin = Math.min(pMin, p);
+				pMax = Math.max(pMax, p);
+			}
+			// projection of the box: center plus the half extents on the axis
+			double c = (minX + maxX)/2*nx + (minY + maxY)/2*ny;
+			double e = (maxX - minX)/2*Math.abs(nx) + (maxY - minY)/2*Math.abs(ny);
+			if(pMax < c - e || c + e < pMin) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static boolean boxCircleOverlap(double minX, double minY, double maxX, double maxY, double cx, double cy, double r) {
+		double dx = cx - Math.max(minX, Math.min(maxX, cx));
+		double dy = cy - Math.max(minY, Math.min(maxY, cy));
+		return dx*dx + dy*dy <= r*r;
+	}
+
+	// Is one of the edge normals of a a separating axis
+	private static boolean hasSeparatingEdge(double[] ax, double[] ay, int an, double[] bx, double[] by, int bn) {
+		for(int i = 0, j = an - 1; i < an; j = i++) {
+			double nx = -(ay[i] - ay[j]);
+			double ny = ax[i] - ax[j];
+			double aMin = Double.MAX_VALUE, aMax = -Double.MAX_VALUE;
+			for(int k = 0; k < an; k++) {
+				double p = ax[k]*nx + ay[k]*ny;
+				aMin = Math.min(aMin, p);
+				aMax = Math.max(aMax, p);
+			}
+			double bMin = Double.MAX_VALUE, bMax = -Double.MAX_VALUE;
+			for(int k = 0; k < bn; k++) {
+				double p = bx[k]*nx + by[k]*ny;
+				bMin = Math.min(bMin, p);
+				bMax = Math.max(bMax, p);
+			}
+			if(aMax < bMin || bMax < aMin) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isSeparated(double[] px, double[] py, int n, double cx, double cy, double r, double nx, double ny) {
+		double length = Math.sqrt(nx*nx + ny*ny);
+		if(length == 0.0) {
+			return false;
+		}
+		nx /= length;
+		ny /= length;
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for(int k = 0; k < n; k++) {
+			double p = px[k]*nx + py[k]*ny;
+			min = Math.min(min, p);
+			max = Math.max(max, p);
+		}
+		double c = cx*nx + cy*ny;
+		return max < c - r || c + r < min;
+	}
+}
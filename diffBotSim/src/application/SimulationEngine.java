@@ -0,0 +1,494 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Headless simulation of a differential drive robot. The engine owns the robot state and
+// advances it with a fixed time step, it has no JavaFX dependency so it can run faster than
+// real time and without a display. RobotGraphics is only a view on top of it.
+public class SimulationEngine {
+	// Note: Units are SI (Radiant, Meter, Second)
+	private double		dt = 1.0/60.0;
+	private double 		robotLength;
+	private double 		wheelsSeparation;
+	private double 		rightWheelRadius, leftWheelRadius;
+	private double 		workspaceWidth, workspaceHeight;
+	private double 		xPose, yPose;
+	private double 		xVel, yVel, angularVel;
+	private double 		orientation = 0.0;
+	private double 		rightWheelSpeed = 0.0, leftWheelSpeed = 0.0;
+	private double		maxRightWheelSpeed = 5.0, maxLeftWheelSpeed = 5.0;
+	private double		time = 0.0;
+	private long		stepCount = 0;
+	private boolean		isCollision = false;
+	private DFKEquation.Integrator integrator = DFKEquation.Integrator.EULER;
+	private double		errorTolerance = 0.0;	// m, 0 disables the sub-stepping
+	private int			maxSubSteps = 1024;
+	private int			lastSubSteps = 0;
+	// Footprint of the robot in its own frame (x forward): a rectangle from -footprintRear to
+	// footprintFront and +-footprintHalfWidth, or a circle when footprintRadius > 0.
+	// Without a footprint the robot is a point.
+	private double		footprintRear, footprintFront, footprintHalfWidth, footprintRadius;
+	private ObstacleMap obstacles;
+	private OccupancyGrid map;
+	private boolean		isInsideObstacle = false;
+	private Lidar		lidar;
+	// footprint corners, relative to the pose then in world coordinates
+	private final double[] cornerDx = new double[4], cornerDy = new double[4];
+	private final double[] cornerX = new double[4], cornerY = new double[4];
+	// reused by applyControl()
+	private final ControlInput controlInput = new ControlInput();
+	private final WheelCommand wheelCommand = new WheelCommand();
+	// scratch poses {x, y, theta}
+	private final double[] pose = new double[3];
+	private final double[] halfPose = new double[3];
+
+	// flags that must be set before the simulation can run
+	boolean isRobotLengthSet, isXPoseSet, isYPoseSet, isWorkspaceWidthSet, isWorkspaceHeightSet,
+			isWheelSeparationSet, isRightWheelRadiusSet, isLeftWheelRadiusSet;
+
+	public SimulationEngine() {
+	}
+
+	// Copy the configuration and the current state of another engine
+	public SimulationEngine(SimulationEngine other) {
+		this.dt = other.dt;
+		this.robotLength = other.robotLength;
+		this.wheelsSeparation = other.wheelsSeparation;
+		this.rightWheelRadius = other.rightWheelRadius;
+		this.leftWheelRadius = other.leftWheelRadius;
+		this.workspaceWidth = other.workspaceWidth;
+		this.workspaceHeight = other.workspaceHeight;
+		this.xPose = other.xPose;
+		this.yPose = other.yPose;
+		this.xVel = other.xVel;
+		this.yVel = other.yVel;
+		this.angularVel = other.angularVel;
+		this.orientation = other.orientation;
+		this.rightWheelSpeed = other.rightWheelSpeed;
+		this.leftWheelSpeed = other.leftWheelSpeed;
+		this.maxRightWheelSpeed = other.maxRightWheelSpeed;
+		this.maxLeftWheelSpeed = other.maxLeftWheelSpeed;
+		this.time = other.time;
+		this.stepCount = other.stepCount;
+		this.isCollision = other.isCollision;
+		this.integrator = other.integrator;
+		this.errorTolerance = other.errorTolerance;
+		this.maxSubSteps = other.maxSubSteps;
+		this.footprintRear = other.footprintRear;
+		this.footprintFront = other.footprintFront;
+		this.footprintHalfWidth = other.footprintHalfWidth;
+		this.footprintRadius = other.footprintRadius;
+		this.obstacles = other.obstacles;
+		this.map = other.map;
+		this.isInsideObstacle = other.isInsideObstacle;
+		// a lidar keeps the state of its scans and is not shared, the copy has none
+		this.isRobotLengthSet = other.isRobotLengthSet;
+		this.isXPoseSet = other.isXPoseSet;
+		this.isYPoseSet = other.isYPoseSet;
+		this.isWorkspaceWidthSet = other.isWorkspaceWidthSet;
+		this.isWorkspaceHeightSet = other.isWorkspaceHeightSet;
+		this.isWheelSeparationSet = other.isWheelSeparationSet;
+		this.isRightWheelRadiusSet = other.isRightWheelRadiusSet;
+		this.isLeftWheelRadiusSet = other.isLeftWheelRadiusSet;
+	}
+
+	boolean isConfigured() {
+		return isRobotLengthSet && isXPoseSet && isYPoseSet && isWorkspaceWidthSet && isWorkspaceHeightSet
+				&& isWheelSeparationSet && isRightWheelRadiusSet && isLeftWheelRadiusSet;
+	}
+
+	// Advance the simulation by one fixed time step. When an error tolerance is set, the step
+	// is split into sub-steps until the local error estimate (step doubling) is below it.
+	void step() {
+		this.xVel = DFKEquation.computeXVel(this);	// m/s
+		this.yVel = DFKEquation.computeYVel(this);	// m/s
+		this.angularVel = DFKEquation.computeAngularVel(this);	// rad/s
+		double v = DFKEquation.computeLinearVel(rightWheelRadius, leftWheelRadius, rightWheelSpeed, leftWheelSpeed);
+
+		this.isCollision = false;
+		this.lastSubSteps = 0;
+		double remaining = dt;
+		double h = dt;
+		double minH = dt / maxSubSteps;
+
+		// the halved steps may leave a rounding residue that is not worth a sub-step
+		while(remaining > dt * 1e-9) {
+			if(h > remaining) {
+				h = remaining;
+			}
+			pose[0] = xPose;
+			pose[1] = yPose;
+			pose[2] = orientation;
+			DFKEquation.integrate(integrator, pose, v, angularVel, h);
+
+			if(errorTolerance > 0.0 && integrator != DFKEquation.Integrator.EXACT_ARC) {
+				halfPose[0] = xPose;
+				halfPose[1] = yPose;
+				halfPose[2] = orientation;
+				DFKEquation.integrate(integrator, halfPose, v, angularVel, h/2);
+				DFKEquation.integrate(integrator, halfPose, v, angularVel, h/2);
+				double ex = halfPose[0] - pose[0];
+				double ey = halfPose[1] - pose[1];
+				double error = Math.sqrt(ex*ex + ey*ey);
+				if(error > errorTolerance && h/2 >= minH) {
+					h /= 2;
+					continue;
+				}
+				// keep the more accurate solution
+				pose[0] = halfPose[0];
+				pose[1] = halfPose[1];
+				pose[2] = halfPose[2];
+				if(error < errorTolerance / 4) {
+					h *= 2;
+				}
+			}
+
+			double previousX = xPose, previousY = yPose, previousOrientation = orientation;
+			this.xPose = pose[0];
+			this.yPose = pose[1];
+			this.orientation = pose[2];
+			this.updateFootprint();
+			this.clampToWorkspace();
+			if(this.obstacles != null || this.map != null) {
+				// the robot stops in front of an obstacle, but can always leave one it was put into
+				boolean isOverlapping = this.overlapsObstacle();
+				if(isOverlapping && !this.isInsideObstacle) {
+					this.xPose = previousX;
+					this.yPose = previousY;
+					this.orientation = previousOrientation;
+					this.isCollision = true;
+					// the previous pose may itself be inside, e.g. right after setRobotPose()
+					this.updateFootprint();
+					this.isInsideObstacle = this.overlapsObstacle();
+				}
+				else {
+					this.isInsideObstacle = isOverlapping;
+				}
+			}
+			remaining -= h;
+			this.lastSubSteps++;
+		}
+
+		this.time += dt;
+		this.stepCount++;
+		if(this.lidar != null) {
+			lidar.update(this);
+		}
+	}
+
+	// Keep the whole footprint inside the workspace
+	private void clampToWorkspace() {
+		double minDx = 0.0, maxDx = 0.0, minDy = 0.0, maxDy = 0.0;
+		if(this.footprintRadius > 0.0) {
+			minDx = minDy = -footprintRadius;
+			maxDx = maxDy = footprintRadius;
+		}
+		else {
+			for(int i = 0; i < 4; i++) {
+				minDx = Math.min(minDx, cornerDx[i]);
+				maxDx = Math.max(maxDx, cornerDx[i]);
+				minDy = Math.min(minDy, cornerDy[i]);
+				maxDy = Math.max(maxDy, cornerDy[i]);
+			}
+		}
+		if(this.xPose + maxDx > this.workspaceWidth) {
+			this.xPose = this.workspaceWidth - maxDx;
+			this.isCollision = true;
+		}
+		else if(this.xPose + minDx < 0) {
+			this.xPose = -minDx;
+			this.isCollision = true;
+		}
+		if(this.yPose + maxDy > this.workspaceHeight) {
+			this.yPose = this.workspaceHeight - maxDy;
+			this.isCollision = true;
+		}
+		else if(this.yPose + minDy < 0) {
+			this.yPose = -minDy;
+			this.isCollision = true;
+		}
+	}
+	
+	// Corners of the rectangular footprint relative to the pose
+	private void updateFootprint() {
+		if(footprintRadius > 0.0 || (footprintRear == 0.0 && footprintFront == 0.0 && footprintHalfWidth == 0.0)) {
+			return;
+		}
+		double cos = Math.cos(orientation);
+		double sin = Math.sin(orientation);
+		for(int i = 0; i < 4; i++) {
+			double fx = i == 0 || i == 3 ? -footprintRear : footprintFront;
+			double fy = i < 2 ? -footprintHalfWidth : footprintHalfWidth;
+			cornerDx[i] = fx*cos - fy*sin;
+			cornerDy[i] = fx*sin + fy*cos;
+		}
+	}
+	
+	private boolean overlapsObstacle() {
+		if(this.footprintRadius > 0.0) {
+			return (obstacles != null && obstacles.intersectsCircle(xPose, yPose, footprintRadius))
+					|| (map != null && map.intersectsCircle(xPose, yPose, footprintRadius));
+		}
+		for(int i = 0; i < 4; i++) {
+			cornerX[i] = xPose + cornerDx[i];
+			cornerY[i] = yPose + cornerDy[i];
+		}
+		return (obstacles != null && obstacles.intersectsPolygon(cornerX, cornerY, 4))
+				|| (map != null && map.intersectsPolygon(cornerX, cornerY, 4));
+	}
+
+	// Size of writeState() without the lidar: 27 doubles, 1 long, 4 ints and 2 bytes
+	static final int STATE_SIZE = 27 * 8 + 8 + 4 * 4 + 2;
+
+	int getStateSize() {
+		return STATE_SIZE + (this.lidar != null ? lidar.getStateSize() : 0);
+	}
+
+	// Write the whole state and configuration, the obstacles and the map are shared and only
+	// referenced by the engine, they are not part of it
+	void writeState(ByteBuffer buffer) {
+		buffer.putDouble(dt).putDouble(robotLength).putDouble(wheelsSeparation)
+				.putDouble(rightWheelRadius).putDouble(leftWheelRadius)
+				.putDouble(workspaceWidth).putDouble(workspaceHeight)
+				.putDouble(xPose).putDouble(yPose).putDouble(orientation)
+				.putDouble(xVel).putDouble(yVel).putDouble(angularVel)
+				.putDouble(rightWheelSpeed).putDouble(leftWheelSpeed)
+				.putDouble(maxRightWheelSpeed).putDouble(maxLeftWheelSpeed)
+				.putDouble(time).putDouble(errorTolerance)
+				.putDouble(footprintRear).putDouble(footprintFront).putDouble(footprintHalfWidth).putDouble(footprintRadius)
+				.putDouble(controlInput.joystickX).putDouble(controlInput.joystickY)
+				.putDouble(wheelCommand.leftWheelSpeed).putDouble(wheelCommand.rightWheelSpeed);
+		buffer.putLong(stepCount);
+		buffer.putInt(integrator.ordinal()).putInt(maxSubSteps).putInt(lastSubSteps);
+		int flags = (isRobotLengthSet ? 1 : 0) | (isXPoseSet ? 2 : 0) | (isYPoseSet ? 4 : 0)
+				| (isWorkspaceWidthSet ? 8 : 0) | (isWorkspaceHeightSet ? 16 : 0) | (isWheelSeparationSet ? 32 : 0)
+				| (isRightWheelRadiusSet ? 64 : 0) | (isLeftWheelRadiusSet ? 128 : 0);
+		buffer.putInt(flags);
+		buffer.put((byte)(isCollision ? 1 : 0)).put((byte)(isInsideObstacle ? 1 : 0));
+		if(this.lidar != null) {
+			lidar.writeState(buffer);
+		}
+	}
+
+	// Read a state written by writeState(), the engine must have a lidar with the same
+	// configuration if there was one
+	void readState(ByteBuffer buffer) {
+		this.dt = buffer.getDouble();
+		this.robotLength = buffer.getDouble();
+		this.wheelsSeparation = buffer.getDouble();
+		this.rightWheelRadius = buffer.getDouble();
+		this.leftWheelRadius = buffer.getDouble();
+		this.workspaceWidth = buffer.getDouble();
+		this.workspaceHeight = buffer.getDouble();
+		this.xPose = buffer.getDouble();
+		this.yPose = buffer.getDouble();
+		this.orientation = buffer.getDouble();
+		this.xVel = buffer.getDouble();
+		this.yVel = buffer.getDouble();
+		this.angularVel = buffer.getDouble();
+		this.rightWheelSpeed = buffer.getDouble();
+		this.leftWheelSpeed = buffer.getDouble();
+		this.maxRightWheelSpeed = buffer.getDouble();
+		this.maxLeftWheelSpeed = buffer.getDouble();
+		this.time = buffer.getDouble();
+		this.errorTolerance = buffer.getDouble();
+		this.footprintRear = buffer.getDouble();
+		this.footprintFront = buffer.getDouble();
+		this.footprintHalfWidth = buffer.getDouble();
+		this.footprintRadius = buffer.getDouble();
+		controlInput.joystickX = buffer.getDouble();
+		controlInput.joystickY = buffer.getDouble();
+		wheelCommand.leftWheelSpeed = buffer.getDouble();
+		wheelCommand.rightWheelSpeed = buffer.getDouble();
+		this.stepCount = buffer.getLong();
+		this.integrator = DFKEquation.Integrator.values()[buffer.getInt()];
+		this.maxSubSteps = buffer.getInt();
+		this.lastSubSteps = buffer.getInt();
+		int flags = buffer.getInt();
+		this.isRobotLengthSet = (flags & 1) != 0;
+		this.isXPoseSet = (flags & 2) != 0;
+		this.isYPoseSet = (flags & 4) != 0;
+		this.isWorkspaceWidthSet = (flags & 8) != 0;
+		this.isWorkspaceHeightSet = (flags & 16) != 0;
+		this.isWheelSeparationSet = (flags & 32) != 0;
+		this.isRightWheelRadiusSet = (flags & 64) != 0;
+		this.isLeftWheelRadiusSet = (flags & 128) != 0;
+		this.isCollision = buffer.get() != 0;
+		this.isInsideObstacle = buffer.get() != 0;
+		this.resetFootprint();
+		if(this.lidar != null) {
+			lidar.readState(buffer);
+			controlInput.scan = lidar.getLatestScan();
+		}
+	}
+
+	// Run a control law on the given joystick position and apply its wheel speeds
+	void applyControl(ControlLaw law, double joystickX, double joystickY) {
+		controlInput.joystickX = joystickX;
+		controlInput.joystickY = joystickY;
+		controlInput.maxLeftWheelSpeed = maxLeftWheelSpeed;
+		controlInput.maxRightWheelSpeed = maxRightWheelSpeed;
+		controlInput.time = time;
+		if(this.lidar != null) {
+			lidar.update(this);
+			controlInput.scan = lidar.getLatestScan();
+		}
+		law.compute(controlInput, wheelCommand);
+		this.setWheelsSpeed(wheelCommand.leftWheelSpeed, wheelCommand.rightWheelSpeed);
+	}
+
+	// Advance the simulation by several fixed time steps with the current wheel speeds
+	void step(int steps) {
+		for(int i = 0; i < steps; i++) {
+			this.step();
+		}
+	}
+
+	void setTimeStep(double dt) {
+		if(dt <= 0.0) {
+			throw new IllegalArgumentException("Time step must be > 0 s");
+		}
+		this.dt = dt;
+	}
+	void setIntegrator(DFKEquation.Integrator integrator) {
+		this.integrator = integrator;
+	}
+	// Maximum position error (m) allowed per sub-step, 0 disables the adaptive sub-stepping
+	void setErrorTolerance(double errorTolerance) {
+		if(errorTolerance < 0.0) {
+			throw new IllegalArgumentException("Error tolerance must be >= 0 m");
+		}
+		this.errorTolerance = errorTolerance;
+	}
+	void setMaxSubSteps(int maxSubSteps) {
+		if(maxSubSteps < 1) {
+			throw new IllegalArgumentException("Maximum number of sub-steps must be >= 1");
+		}
+		this.maxSubSteps = maxSubSteps;
+	}
+	void setRobotLength(double length) {
+		if(length < 0.01) {
+			throw new IllegalArgumentException("Length must be > 0.01 m");
+		}
+		this.robotLength = length;
+		this.isRobotLengthSet = true;
+	}
+	void setWheelsSeparation(double wheelsSeparation) {
+		if(wheelsSeparation < 0.01) {
+			throw new IllegalArgumentException("Wheel separation must be > 0.01 m");
+		}
+		this.wheelsSeparation = wheelsSeparation;
+		this.isWheelSeparationSet = true;
+	}
+	void setWheelsRadius(double leftWheelRadius, double	rightWheelRadius) {
+		if(rightWheelRadius < 0.01 || leftWheelRadius < 0.01) {
+			throw new IllegalArgumentException("Wheel radius must be > 0.01 m");
+		}
+		this.rightWheelRadius = rightWheelRadius;
+		this.leftWheelRadius = leftWheelRadius;
+		this.isRightWheelRadiusSet = true;
+		this.isLeftWheelRadiusSet = true;
+	}
+	void setWorkspaceDimensions(double workspaceWidth, double workspaceHeight) {
+		if(workspaceWidth < 0.1 || workspaceHeight < 0.1) {
+			throw new IllegalArgumentException("Workspace dimensions are too small");
+		}
+		this.workspaceWidth = workspaceWidth;
+		this.workspaceHeight = workspaceHeight;
+		this.isWorkspaceHeightSet = true;
+		this.isWorkspaceWidthSet = true;
+		this.map = null;
+	}
+	// The workspace is the extent of the map and its occupied cells are walls
+	void setWorkspaceDimensions(OccupancyGrid map) {
+		this.setWorkspaceDimensions(map.getWorkspaceWidth(), map.getWorkspaceHeight());
+		this.map = map;
+		this.isInsideObstacle = false;
+	}
+	void setRobotPose(double x, double y) {
+		this.xPose = x;
+		this.yPose = y;
+		this.isXPoseSet = true;
+		this.isYPoseSet = true;
+	}
+	void setRobotOrientation(double theta) {
+		this.orientation = DFKEquation.wrapAngle(theta);
+	}
+	// Rectangular footprint, rear and front are measured from the wheel axis along the heading
+	void setFootprint(double rear, double front, double halfWidth) {
+		if(rear < 0 || front < 0 || halfWidth < 0) {
+			throw new IllegalArgumentException("Footprint dimensions must be >= 0");
+		}
+		this.footprintRear = rear;
+		this.footprintFront = front;
+		this.footprintHalfWidth = halfWidth;
+		this.footprintRadius = 0.0;
+		this.resetFootprint();
+	}
+	void setCircularFootprint(double radius) {
+		if(radius <= 0) {
+			throw new IllegalArgumentException("Footprint radius must be > 0");
+		}
+		this.footprintRadius = radius;
+		this.resetFootprint();
+	}
+	private void resetFootprint() {
+		Arrays.fill(cornerDx, 0.0);
+		Arrays.fill(cornerDy, 0.0);
+		this.updateFootprint();
+	}
+	// Obstacles the robot collides with, null for none. The map can be shared between engines.
+	void setObstacles(ObstacleMap obstacles) {
+		this.obstacles = obstacles;
+		this.isInsideObstacle = false;
+	}
+	// Range sensor scanned after the steps and given to the control law, null for none
+	void setLidar(Lidar lidar) {
+		this.lidar = lidar;
+		controlInput.scan = null;
+	}
+	void setWheelsSpeed(double leftWheelSpeed, double rightWheelSpeed) {
+		if(Math.abs(rightWheelSpeed) > this.maxRightWheelSpeed || Math.abs(leftWheelSpeed) > this.maxLeftWheelSpeed) {
+			throw new IllegalArgumentException("Wheel speed limit violated. Wheel speed not changed");
+		}
+		this.rightWheelSpeed = rightWheelSpeed;
+		this.leftWheelSpeed = leftWheelSpeed;
+	}
+	void setMaxWheelsSpeed(double maxLeft, double maxRight) {
+		this.maxLeftWheelSpeed = maxLeft;
+		this.maxRightWheelSpeed = maxRight;
+	}
+
+	double getTimeStep()		 { return this.dt;				 }
+	double getTime()			 { return this.time;			 }
+	long getStepCount()			 { return this.stepCount;		 }
+	double getRobotLength()		 { return this.robotLength;		 }
+	double getRightWheelRadius() { return this.rightWheelRadius; }
+	double getLeftWheelRadius()  { return this.leftWheelRadius;  }
+	double getRobotOrientation() { return this.orientation;		 }
+	double getRobotXPose()		 { return this.xPose;			 }
+	double getRobotYPose()		 { return this.yPose;			 }
+	double getXVel()			 { return this.xVel;			 }
+	double getYVel()			 { return this.yVel;			 }
+	double getAngularVel()		 { return this.angularVel;		 }
+	double getRightWheelSpeed()  { return this.rightWheelSpeed;  }
+	double getLeftWheelSpeed()   { return this.leftWheelSpeed;   }
+	double getWheelsSeparation() { return this.wheelsSeparation; }
+	double getWorkspaceWidth()	 { return this.workspaceWidth;	 }
+	double getWorkspaceHeight()	 { return this.workspaceHeight;	 }
+	boolean isCollision()		 { return this.isCollision;		 }
+	ObstacleMap getObstacles()	 { return this.obstacles;		 }
+	OccupancyGrid getMap()		 { return this.map;				 }
+	Lidar getLidar()			 { return this.lidar;			 }
+	int getLastSubSteps()		 { return this.lastSubSteps;	 }
+	double getErrorTolerance()	 { return this.errorTolerance;	 }
+	DFKEquation.Integrator getIntegrator() { return this.integrator; }
+	double getFootprintRear()	 { return this.footprintRear;	 }
+	double getFootprintFront()	 { return this.footprintFront;	 }
+	double getFootprintHalfWidth() { return this.footprintHalfWidth; }
+	double getFootprintRadius()	 { return this.footprintRadius;	 }
+
+	double getMaxRightWheelSpeed() { return this.maxRightWheelSpeed; }
+	double getMaxLeftWheelSpeed() { return this.maxLeftWheelSpeed; }
+}
@@ -0,0 +1,59 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Complete state of a SimulationEngine (pose, speeds, configuration, lidar schedule and noise
+// counter, latest scan) in a compact binary form, to go back to a moment of a run or to branch
+// several runs from it. The obstacles and the map are static and shared, the snapshot only
+// keeps a reference to them.
+public final class Snapshot {
+	private final byte[] state;
+	private final double time;
+	private final long step;
+	private final ObstacleMap obstacles;
+	private final OccupancyGrid map;
+	private final Lidar lidar;
+
+	private Snapshot(byte[] state, SimulationEngine engine) {
+		this.state = state;
+		this.time = engine.getTime();
+		this.step = engine.getStepCount();
+		this.obstacles = engine.getObstacles();
+		this.map = engine.getMap();
+		this.lidar = engine.getLidar();
+	}
+
+	public static Snapshot capture(SimulationEngine engine) {
+		byte[] state = new byte[engine.getStateSize()];
+		engine.writeState(ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN));
+		return new Snapshot(state, engine);
+	}
+
+	// Put an engine back in the captured state, it keeps its own obstacles and map
+	public void restore(SimulationEngine engine) {
+		if(engine.getStateSize() != state.length) {
+			throw new IllegalArgumentException("The engine does not have the same sensors as the snapshot");
+		}
+		engine.readState(ByteBuffer.wrap(state).order(ByteOrder.LITTLE_ENDIAN));
+	}
+
+	// New engine in the captured state, with the same obstacles and map and its own lidar, that
+	// runs independently of the original one
+	public SimulationEngine branch() {
+		SimulationEngine engine = new SimulationEngine();
+		engine.setObstacles(obstacles);
+		if(this.map != null) {
+			engine.setWorkspaceDimensions(map);
+		}
+		if(this.lidar != null) {
+			engine.setLidar(new Lidar(lidar));
+		}
+		this.restore(engine);
+		return engine;
+	}
+
+	public double getTime()	{ return this.time;			}
+	public long getStep()	{ return this.step;			}
+	public int getSize()	{ return this.state.length;	}
+}
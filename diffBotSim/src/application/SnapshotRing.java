@@ -0,0 +1,105 @@
+package application;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Bounded history of snapshots of an engine and of its trail, for rewinding a run. All the
+// slots live in one buffer allocated up front, so capturing only copies the state and the
+// oldest snapshot is overwritten once the ring is full. The ring is reallocated (and emptied)
+// when the size of the state changes, e.g. when a lidar is added.
+//
+// After a restore the snapshots newer than the restored one stay available until the next
+// capture, which discards them: the run then continues on a new branch.
+class SnapshotRing {
+	private final int	capacity;
+	private int			slotSize = 0;
+	private ByteBuffer	slots;
+	private final double[] times;
+	private final long[] steps;
+	private int			first = 0;		// slot of the oldest snapshot
+	private int			size = 0;
+	private int			restored = -1;	// index of the last restored snapshot, -1 after a capture
+
+	SnapshotRing(int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be >= 1");
+		}
+		this.capacity = capacity;
+		this.times = new double[capacity];
+		this.steps = new long[capacity];
+	}
+
+	void capture(SimulationEngine engine, Trail trail) {
+		int stateSize = engine.getStateSize() + trail.getStateSize();
+		if(stateSize != this.slotSize) {
+			this.slotSize = stateSize;
+			this.slots = ByteBuffer.allocate(Math.multiplyExact(capacity, stateSize)).order(ByteOrder.LITTLE_ENDIAN);
+			this.clear();
+		}
+		if(this.restored >= 0) {
+			this.size = restored + 1;
+			this.restored = -1;
+		}
+		int slot;
+		if(size < capacity) {
+			slot = this.slot(size++);
+		}
+		else {
+			slot = first;
+			first = (first + 1) % capacity;
+		}
+		slots.position(slot * slotSize);
+		engine.writeState(slots);
+		trail.writeState(slots);
+		times[slot] = engine.getTime();
+		steps[slot] = engine.getStepCount();
+	}
+
+	// i = 0 is the oldest snapshot, size() - 1 the newest
+	void restore(int i, SimulationEngine engine, Trail trail) {
+		if(i < 0 || i >= size) {
+			throw new IndexOutOfBoundsException("No snapshot " + i);
+		}
+		if(engine.getStateSize() + trail.getStateSize() != slotSize) {
+			throw new IllegalArgumentException("The engine or the trail changed since the snapshots were taken");
+		}
+		slots.position(this.slot(i) * slotSize);
+		engine.readState(slots);
+		trail.readState(slots);
+		this.restored = i;
+	}
+
+	void clear() {
+		this.first = 0;
+		this.size = 0;
+		this.restored = -1;
+	}
+
+	// Index of the newest snapshot taken at or before the given time, -1 if none
+	int indexAt(double time) {
+		int low = 0, high = size - 1, found = -1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			if(times[this.slot(middle)] <= time) {
+				found = middle;
+				low = middle + 1;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		return found;
+	}
+
+	int size()				{ return this.size;				 }
+	int capacity()			{ return this.capacity;			 }
+	int getRestored()		{ return this.restored;			 }
+	double getTime(int i)	{ return times[this.slot(i)];	 }
+	long getStep(int i)		{ return steps[this.slot(i)];	 }
+	int getSlotSize()		{ return this.slotSize;			 }
+
+	private int slot(int i) {
+		int slot = first + i;
+		return slot < capacity ? slot : slot - capacity;
+	}
+}
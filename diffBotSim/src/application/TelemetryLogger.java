@@ -0,0 +1,169 @@
+package application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Per step telemetry of a SimulationEngine written to a binary file by a background thread.
+//
+// The simulation thread copies the state into a preallocated single producer / single consumer
+// ring (one array per column) and never blocks nor allocates: when the writer falls behind and
+// the ring is full the record is dropped and counted. The writer drains the ring in blocks and
+// writes every block column by column. Layout (little endian):
+//   header  magic "DBTL", int version, long records, long dropped, int columns, 12 bytes reserved
+//   block   int count, then count doubles of every column in COLUMNS order, then count collision
+//           bytes (0 or 1)
+public class TelemetryLogger implements AutoCloseable {
+	static final int		MAGIC = 0x4C544244;	// "DBTL"
+	static final int		VERSION = 1;
+	static final int		HEADER_SIZE = 40;
+	static final String[]	COLUMNS = {"time", "x", "y", "theta", "xVel", "yVel", "angularVel",
+										"leftWheelSpeed", "rightWheelSpeed"};
+	private static final int	BLOCK_RECORDS = 4096;
+	private static final long	IDLE_PARK_NANOS = 2_000_000;
+
+	private final double[][] columns;
+	private final byte[] collisions;
+	private final int mask;
+	// head is only written by the producer and tail by the writer
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private long cachedTail = 0;
+	private volatile long dropped = 0;
+	private volatile boolean isClosed = false;
+
+	private final FileChannel channel;
+	private final ByteBuffer block;
+	private final Thread writer;
+	private volatile IOException writeError;
+
+	// capacity is the number of records the ring can hold, rounded up to a power of two
+	public TelemetryLogger(Path file, int capacity) throws IOException {
+		if(capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Capacity must be in [1, 2^30]");
+		}
+		int size = Integer.highestOneBit(capacity);
+		size = size < capacity ? size << 1 : size;
+		this.columns = new double[COLUMNS.length][size];
+		this.collisions = new byte[size];
+		this.mask = size - 1;
+
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		this.block = ByteBuffer.allocateDirect(4 + BLOCK_RECORDS * (COLUMNS.length * 8 + 1))
+				.order(ByteOrder.LITTLE_ENDIAN);
+		this.writeHeader(0, 0);
+		this.channel.position(HEADER_SIZE);
+
+		this.writer = new Thread(this::drain, "Telemetry writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	// Called by the simulation thread after every step
+	public void log(SimulationEngine engine) {
+		if(isClosed) {
+			return;
+		}
+		long h = head.get();
+		if(h - cachedTail > mask) {
+			cachedTail = tail.get();
+			if(h - cachedTail > mask) {
+				dropped++;	// single producer, no lost updates
+				return;
+			}
+		}
+		int i = (int)(h & mask);
+		columns[0][i] = engine.getTime();
+		columns[1][i] = engine.getRobotXPose();
+		columns[2][i] = engine.getRobotYPose();
+		columns[3][i] = engine.getRobotOrientation();
+		columns[4][i] = engine.getXVel();
+		columns[5][i] = engine.getYVel();
+		columns[6][i] = engine.getAngularVel();
+		columns[7][i] = engine.getLeftWheelSpeed();
+		columns[8][i] = engine.getRightWheelSpeed();
+		collisions[i] = (byte)(engine.isCollision() ? 1 : 0);
+		head.lazySet(h + 1);	// publishes the record to the writer
+	}
+
+	long getDropped()	{ return this.dropped; }
+	long getWritten()	{ return this.tail.get(); }
+
+	private void drain() {
+		try {
+			while(true) {
+				// read before head so that every record logged before close() is written
+				boolean isClosing = isClosed;
+				long t = tail.get();
+				int count = (int)Math.min(head.get() - t, BLOCK_RECORDS);
+				if(count == 0) {
+					if(isClosing) {
+						break;
+					}
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+					continue;
+				}
+				this.writeBlock(t, count);
+				tail.lazySet(t + count);	// frees the slots for the producer
+			}
+		} catch (IOException e) {
+			this.writeError = e;
+		}
+	}
+
+	private void writeBlock(long first, int count) throws IOException {
+		block.clear();
+		block.putInt(count);
+		int start = (int)(first & mask);
+		for(double[] column : columns) {
+			for(int k = 0; k < count; k++) {
+				block.putDouble(column[(start + k) & mask]);
+			}
+		}
+		for(int k = 0; k < count; k++) {
+			block.put(collisions[(start + k) & mask]);
+		}
+		block.flip();
+		while(block.hasRemaining()) {
+			channel.write(block);
+		}
+	}
+
+	private void writeHeader(long records, long dropped) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putLong(records).putLong(dropped).putInt(COLUMNS.length);
+		header.clear();
+		while(header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+
+	// Writes the remaining records and the totals
+	@Override
+	public void close() throws IOException {
+		if(isClosed) {
+			return;
+		}
+		this.isClosed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			if(writeError != null) {
+				throw writeError;
+			}
+			this.writeHeader(tail.get(), dropped);
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,410 @@
+package application;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// HTTP server on localhost for live dashboards:
+//   /events   server-sent events, one JSON state per event at the stream rate
+//   /state    the latest JSON state
+//   /metrics  counters and gauges in the Prometheus text format
+//
+// The simulation never waits for the server. After every step it writes the state into a
+// preallocated seqlock (a sequence number that is odd while an update is in progress, readers
+// copy the values and retry if the sequence moved), and the FX thread does the same with the
+// frame timings after every frame: a few plain stores and no lock, allocation nor I/O, whatever
+// the number of clients. A broadcaster thread samples both at the stream rate and encodes the
+// JSON once for all the clients. Every client is served by its own thread, which always sends
+// the latest event: a slow client only blocks its own thread in a write, and the events that
+// were encoded meanwhile are skipped and counted as dropped.
+public class TelemetryServer implements AutoCloseable {
+	// slots of the simulation state
+	private static final int	STEP = 0, TIME = 1, X = 2, Y = 3, THETA = 4, LINEAR_VEL = 5, ANGULAR_VEL = 6,
+								LEFT_WHEEL_SPEED = 7, RIGHT_WHEEL_SPEED = 8, COLLISION = 9, COLLISIONS = 10,
+								STEP_VALUES = 11;
+	// slots of the frame timings, the stages in the order of FrameProfiler.Stage
+	private static final int	FRAMES = 0, MISSED_FRAMES = 1, FRAME_TIME = 2, INTERVAL = 3, SUB_STEPS = 4, STAGE_TIMES = 5;
+	private static final FrameProfiler.Stage[] STAGES = FrameProfiler.Stage.values();
+	private static final int	FRAME_VALUES = STAGE_TIMES + STAGES.length;
+	// a comment is sent to an idle stream so that closed connections are noticed
+	private static final long	KEEPALIVE_MILLIS = 10_000;
+
+	private final StateCell		stepState = new StateCell(STEP_VALUES);
+	private final StateCell		frameState = new StateCell(FRAME_VALUES);
+	// only used by the thread that steps the simulation
+	private boolean				wasCollision = false;
+	private long				collisions = 0;
+
+	private final HttpServer	server;
+	private final ExecutorService clientThreads;
+	private final Thread		broadcaster;
+	private final long			streamPeriodNanos;
+	private final int			maxClients;
+	private volatile boolean	isClosed = false;
+
+	// latest encoded event, replaced by the broadcaster under the lock the clients wait on
+	private final Object		signal = new Object();
+	private volatile Event		latest = new Event(0, new byte[0]);
+
+	private final AtomicInteger	clients = new AtomicInteger();
+	private final LongAdder		requests = new LongAdder();
+	private final LongAdder		eventsSent = new LongAdder();
+	private final LongAdder		eventsDropped = new LongAdder();
+	private final LongAdder		rejectedClients = new LongAdder();
+
+	private static final class Event {
+		final long		version;
+		final byte[]	data;
+
+		Event(long version, byte[] data) {
+			this.version = version;
+			this.data = data;
+		}
+	}
+
+	// Seqlock over an array of values with a single writer. The values are written with plain
+	// stores between the two increments of the sequence, a reader that saw the same even
+	// sequence before and after its copy has a state that was published as a whole.
+	private static final class StateCell {
+		private final AtomicLong	sequence = new AtomicLong();
+		private final double[]		values;
+
+		StateCell(int size) {
+			this.values = new double[size];
+		}
+
+		void beginWrite() {
+			sequence.setOpaque(sequence.getPlain() + 1);
+			VarHandle.storeStoreFence();
+		}
+
+		void endWrite() {
+			sequence.setRelease(sequence.getPlain() + 1);
+		}
+
+		// Copies the latest state into out, returns its sequence
+		long read(double[] out) {
+			while(true) {
+				long before = sequence.getAcquire();
+				if((before & 1) == 0) {
+					System.arraycopy(values, 0, out, 0, values.length);
+					VarHandle.loadLoadFence();
+					if(sequence.getOpaque() == before) {
+						return before;
+					}
+				}
+				Thread.onSpinWait();
+			}
+		}
+	}
+
+	// port 0 picks a free port, streamRate is the number of events per second sent to every
+	// client and maxClients the number of streams served at the same time
+	public TelemetryServer(int port, double streamRate, int maxClients) throws IOException {
+		if(streamRate <= 0 || maxClients < 1) {
+			throw new IllegalArgumentException("Stream rate and maximum number of clients must be > 0");
+		}
+		this.streamPeriodNanos = (long)(1e9 / streamRate);
+		this.maxClients = maxClients;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.clientThreads = Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "Telemetry client");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(clientThreads);
+		server.createContext("/events", exchange -> this.handle(exchange, this::stream));
+		server.createContext("/state", exchange -> this.handle(exchange, this::sendState));
+		server.createContext("/metrics", exchange -> this.handle(exchange, this::sendMetrics));
+		server.start();
+		this.broadcaster = new Thread(this::broadcast, "Telemetry broadcaster");
+		broadcaster.setDaemon(true);
+		broadcaster.start();
+	}
+
+	// Local address, e.g. to find the port when 0 was given
+	public InetSocketAddress getLocalAddress() {
+		return server.getAddress();
+	}
+
+	// Called by the simulation thread after a step
+	void publishStep(SimulationEngine engine) {
+		boolean isCollision = engine.isCollision();
+		if(isCollision && !this.wasCollision) {
+			collisions++;
+		}
+		this.wasCollision = isCollision;
+		double v = DFKEquation.computeLinearVel(engine.getRightWheelRadius(), engine.getLeftWheelRadius(),
+				engine.getRightWheelSpeed(), engine.getLeftWheelSpeed());
+
+		double[] values = stepState.values;
+		stepState.beginWrite();
+		values[STEP] = engine.getStepCount();
+		values[TIME] = engine.getTime();
+		values[X] = engine.getRobotXPose();
+		values[Y] = engine.getRobotYPose();
+		values[THETA] = engine.getRobotOrientation();
+		values[LINEAR_VEL] = v;
+		values[ANGULAR_VEL] = engine.getAngularVel();
+		values[LEFT_WHEEL_SPEED] = engine.getLeftWheelSpeed();
+		values[RIGHT_WHEEL_SPEED] = engine.getRightWheelSpeed();
+		values[COLLISION] = isCollision ? 1 : 0;
+		values[COLLISIONS] = collisions;
+		stepState.endWrite();
+	}
+
+	// Called by the FX thread after the profiler ended a frame
+	void publishFrame(FrameProfiler profiler) {
+		double[] values = frameState.values;
+		frameState.beginWrite();
+		values[FRAMES] = profiler.getFrames();
+		values[MISSED_FRAMES] = profiler.getMissedFrames();
+		values[FRAME_TIME] = profiler.getLastFrameTime();
+		values[INTERVAL] = profiler.getLastInterval();
+		values[SUB_STEPS] = profiler.getLastSubSteps();
+		for(int i = 0; i < STAGES.length; i++) {
+			values[STAGE_TIMES + i] = profiler.getLastStageTime(STAGES[i]);
+		}
+		frameState.endWrite();
+	}
+
+	private void broadcast() {
+		double[] step = new double[STEP_VALUES];
+		double[] frame = new double[FRAME_VALUES];
+		long lastStepSequence = -1, lastFrameSequence = -1;
+		long version = 0;
+		StringBuilder text = new StringBuilder(512);
+		long next = System.nanoTime();
+		while(!this.isClosed) {
+			long stepSequence = stepState.read(step);
+			long frameSequence = frameState.read(frame);
+			// nothing is sent while the simulation is paused or stopped, apart from keepalives
+			if(stepSequence != lastStepSequence || frameSequence != lastFrameSequence) {
+				lastStepSequence = stepSequence;
+				lastFrameSequence = frameSequence;
+				text.setLength(0);
+				text.append("data: ");
+				appendJson(text, step, frame);
+				text.append("\n\n");
+				Event event = new Event(++version, text.toString().getBytes(StandardCharsets.UTF_8));
+				synchronized(signal) {
+					this.latest = event;
+					signal.notifyAll();
+				}
+			}
+			next += streamPeriodNanos;
+			long now = System.nanoTime();
+			if(next < now) {
+				next = now;
+			}
+			LockSupport.parkNanos(next - now);
+		}
+	}
+
+	// Waits for an event newer than version, returns null after KEEPALIVE_MILLIS without one
+	private Event awaitEvent(long version) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + KEEPALIVE_MILLIS;
+		synchronized(signal) {
+			while(this.latest.version <= version && !this.isClosed) {
+				long remaining = deadline - System.currentTimeMillis();
+				if(remaining <= 0) {
+					return null;
+				}
+				signal.wait(remaining);
+			}
+			return this.latest;
+		}
+	}
+
+	private interface Handler {
+		void handle(HttpExchange exchange) throws IOException;
+	}
+
+	private void handle(HttpExchange exchange, Handler handler) throws IOException {
+		requests.increment();
+		try {
+			String method = exchange.getRequestMethod();
+			if(!method.equals("GET") && !method.equals("HEAD")) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			// the dashboard may be served from another local port
+			exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+			exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+			handler.handle(exchange);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void stream(HttpExchange exchange) throws IOException {
+		if(clients.incrementAndGet() > maxClients) {
+			clients.decrementAndGet();
+			rejectedClients.increment();
+			exchange.sendResponseHeaders(503, -1);
+			return;
+		}
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream body = exchange.getResponseBody();
+			byte[] keepalive = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+			long sent = 0;
+			while(!this.isClosed) {
+				Event event = this.awaitEvent(sent);
+				if(this.isClosed) {
+					break;
+				}
+				if(event == null) {
+					body.write(keepalive);
+				}
+				else {
+					// the events encoded while this client was writing the previous one are skipped
+					if(sent > 0) {
+						eventsDropped.add(event.version - sent - 1);
+					}
+					body.write(event.data);
+					eventsSent.increment();
+					sent = event.version;
+				}
+				body.flush();
+			}
+		} catch (IOException e) {
+			// the client went away
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			clients.decrementAndGet();
+		}
+	}
+
+	private void sendState(HttpExchange exchange) throws IOException {
+		double[] step = new double[STEP_VALUES];
+		double[] frame = new double[FRAME_VALUES];
+		stepState.read(step);
+		frameState.read(frame);
+		StringBuilder text = new StringBuilder(512);
+		appendJson(text, step, frame);
+		text.append('\n');
+		send(exchange, "application/json; charset=utf-8", text);
+	}
+
+	private void sendMetrics(HttpExchange exchange) throws IOException {
+		double[] step = new double[STEP_VALUES];
+		double[] frame = new double[FRAME_VALUES];
+		stepState.read(step);
+		frameState.read(frame);
+		StringBuilder text = new StringBuilder(2048);
+		metric(text, "diffbot_steps_total", "counter", "Simulation steps", step[STEP]);
+		metric(text, "diffbot_collisions_total", "counter", "Collisions, counted when they start", step[COLLISIONS]);
+		metric(text, "diffbot_frames_total", "counter", "Rendered frames", frame[FRAMES]);
+		metric(text, "diffbot_missed_frames_total", "counter", "Frames missed by the animation", frame[MISSED_FRAMES]);
+		metric(text, "diffbot_http_requests_total", "counter", "HTTP requests served", requests.sum());
+		metric(text, "diffbot_stream_events_sent_total", "counter", "Events sent to the stream clients", eventsSent.sum());
+		metric(text, "diffbot_stream_events_dropped_total", "counter", "Events skipped for slow stream clients", eventsDropped.sum());
+		metric(text, "diffbot_stream_clients_rejected_total", "counter", "Stream clients refused above the limit", rejectedClients.sum());
+		metric(text, "diffbot_stream_clients", "gauge", "Connected stream clients", clients.get());
+		metric(text, "diffbot_sim_time_seconds", "gauge", "Simulated time", step[TIME]);
+		metric(text, "diffbot_pose_x_meters", "gauge", "Robot x position", step[X]);
+		metric(text, "diffbot_pose_y_meters", "gauge", "Robot y position", step[Y]);
+		metric(text, "diffbot_pose_theta_radians", "gauge", "Robot orientation", step[THETA]);
+		metric(text, "diffbot_linear_velocity_meters_per_second", "gauge", "Robot linear velocity", step[LINEAR_VEL]);
+		metric(text, "diffbot_angular_velocity_radians_per_second", "gauge", "Robot angular velocity", step[ANGULAR_VEL]);
+		text.append("# HELP diffbot_wheel_speed_radians_per_second Wheel speeds\n");
+		text.append("# TYPE diffbot_wheel_speed_radians_per_second gauge\n");
+		text.append("diffbot_wheel_speed_radians_per_second{wheel=\"left\"} ").append(step[LEFT_WHEEL_SPEED]).append('\n');
+		text.append("diffbot_wheel_speed_radians_per_second{wheel=\"right\"} ").append(step[RIGHT_WHEEL_SPEED]).append('\n');
+		metric(text, "diffbot_collision", "gauge", "1 while the robot is in collision", step[COLLISION]);
+		metric(text, "diffbot_frame_seconds", "gauge", "Duration of the last frame", frame[FRAME_TIME] / 1e9);
+		metric(text, "diffbot_frame_interval_seconds", "gauge", "Interval between the last two frames", frame[INTERVAL] / 1e9);
+		metric(text, "diffbot_frame_sub_steps", "gauge", "Integration sub-steps of all the steps of the last frame", frame[SUB_STEPS]);
+		text.append("# HELP diffbot_frame_stage_seconds Time spent in every stage of the last frame\n");
+		text.append("# TYPE diffbot_frame_stage_seconds gauge\n");
+		for(int i = 0; i < STAGES.length; i++) {
+			text.append("diffbot_frame_stage_seconds{stage=\"").append(STAGES[i].name().toLowerCase()).append("\"} ")
+				.append(frame[STAGE_TIMES + i] / 1e9).append('\n');
+		}
+		send(exchange, "text/plain; version=0.0.4; charset=utf-8", text);
+	}
+
+	private static void metric(StringBuilder text, String name, String type, String help, double value) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		text.append(name).append(' ');
+		if(value == Math.rint(value) && Math.abs(value) < 1e15) {
+			text.append((long)value);
+		}
+		else {
+			text.append(value);
+		}
+		text.append('\n');
+	}
+
+	private static void appendJson(StringBuilder text, double[] step, double[] frame) {
+		text.append("{\"step\":").append((long)step[STEP])
+			.append(",\"time\":").append(step[TIME])
+			.append(",\"x\":").append(step[X])
+			.append(",\"y\":").append(step[Y])
+			.append(",\"theta\":").append(step[THETA])
+			.append(",\"linearVel\":").append(step[LINEAR_VEL])
+			.append(",\"angularVel\":").append(step[ANGULAR_VEL])
+			.append(",\"leftWheelSpeed\":").append(step[LEFT_WHEEL_SPEED])
+			.append(",\"rightWheelSpeed\":").append(step[RIGHT_WHEEL_SPEED])
+			.append(",\"collision\":").append(step[COLLISION] != 0)
+			.append(",\"collisions\":").append((long)step[COLLISIONS])
+			.append(",\"frames\":").append((long)frame[FRAMES])
+			.append(",\"missedFrames\":").append((long)frame[MISSED_FRAMES])
+			.append(",\"frameNanos\":").append((long)frame[FRAME_TIME])
+			.append(",\"intervalNanos\":").append((long)frame[INTERVAL])
+			.append(",\"subSteps\":").append((long)frame[SUB_STEPS])
+			.append(",\"stageNanos\":{");
+		for(int i = 0; i < STAGES.length; i++) {
+			if(i > 0) {
+				text.append(',');
+			}
+			text.append('"').append(STAGES[i].name().toLowerCase()).append("\":").append((long)frame[STAGE_TIMES + i]);
+		}
+		text.append("}}");
+	}
+
+	private static void send(HttpExchange exchange, String contentType, CharSequence text) throws IOException {
+		byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		boolean isHead = exchange.getRequestMethod().equals("HEAD");
+		exchange.sendResponseHeaders(200, isHead ? -1 : data.length);
+		if(!isHead) {
+			exchange.getResponseBody().write(data);
+		}
+	}
+
+	long getEventsSent()	{ return eventsSent.sum();	  }
+	long getEventsDropped()	{ return eventsDropped.sum(); }
+	int getClients()		{ return clients.get();		  }
+
+	@Override
+	public void close() {
+		this.isClosed = true;
+		synchronized(signal) {
+			signal.notifyAll();
+		}
+		server.stop(0);
+		clientThreads.shutdownNow();
+		try {
+			broadcaster.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
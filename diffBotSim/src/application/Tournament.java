@@ -0,0 +1,195 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+// Compares control strategies headlessly: every strategy is run against every input trace on a
+// copy of the same SimulationEngine, all runs in parallel, and the metrics of the runs are
+// averaged per strategy. A strategy is given as a Supplier so each run gets its own ControlLaw.
+public class Tournament {
+	private final SimulationEngine template;
+	private final Map<String, Supplier<ControlLaw>> strategies = new LinkedHashMap<>();
+	private final List<InputTrace> traces = new ArrayList<>();
+	private double targetHeading = 0.0;			// rad
+	private double headingTolerance = 0.05;		// rad
+	private ReferencePath referencePath;
+
+	// The engine gives the robot configuration and the initial state of every run
+	public Tournament(SimulationEngine template) {
+		if(!template.isConfigured()) {
+			throw new IllegalArgumentException("The template engine is not fully configured");
+		}
+		this.template = template;
+	}
+
+	public void addStrategy(String name, Supplier<ControlLaw> strategy) {
+		strategies.put(name, strategy);
+	}
+
+	public void addTrace(InputTrace trace) {
+		traces.add(trace);
+	}
+
+	// Heading the robot should reach, used for the time to target heading metric
+	public void setTargetHeading(double targetHeading, double tolerance) {
+		this.targetHeading = targetHeading;
+		this.headingTolerance = tolerance;
+	}
+
+	// Route every run is scored against (cross-track and heading errors, progress), null for none
+	public void setReferencePath(ReferencePath referencePath) {
+		this.referencePath = referencePath;
+	}
+
+	// Metrics of one run
+	static class RunMetrics {
+		double pathLength;				// m
+		double timeToHeading = Double.NaN;	// s, NaN if the target heading was never reached
+		int wallCollisions;				// number of times the robot hit a wall
+		double saturationTime;			// s spent with a wheel at its maximum speed
+		PathTracker tracking;			// null without a reference path
+	}
+
+	// Averaged metrics of one strategy over all traces
+	public static class Result {
+		public final String strategy;
+		public final int runs;
+		public final double pathLength;
+		public final double timeToHeading;	// mean over the runs that reached it
+		public final int headingReached;
+		public final double wallCollisions;
+		public final double saturationTime;
+		// Errors of all the runs together and mean fraction of the path driven, null and NaN
+		// without a reference path
+		public final ErrorStats crossTrackError;
+		public final ErrorStats headingError;
+		public final double progress;
+
+		Result(String strategy, RunMetrics[] runs) {
+			double pathLength = 0, timeToHeading = 0, wallCollisions = 0, saturationTime = 0;
+			int headingReached = 0;
+			for(RunMetrics run : runs) {
+				pathLength += run.pathLength;
+				wallCollisions += run.wallCollisions;
+				saturationTime += run.saturationTime;
+				if(!Double.isNaN(run.timeToHeading)) {
+					timeToHeading += run.timeToHeading;
+					headingReached++;
+				}
+			}
+			int n = Math.max(1, runs.length);
+			this.strategy = strategy;
+			this.runs = runs.length;
+			this.pathLength = pathLength / n;
+			this.timeToHeading = headingReached > 0 ? timeToHeading / headingReached : Double.NaN;
+			this.headingReached = headingReached;
+			this.wallCollisions = wallCollisions / n;
+			this.saturationTime = saturationTime / n;
+
+			if(runs.length > 0 && runs[0].tracking != null) {
+				double progress = 0;
+				this.crossTrackError = new ErrorStats(PathTracker.CROSS_TRACK_BIN, PathTracker.CROSS_TRACK_BINS);
+				this.headingError = new ErrorStats(PathTracker.HEADING_BIN, PathTracker.HEADING_BINS);
+				for(RunMetrics run : runs) {
+					run.tracking.mergeInto(crossTrackError, headingError);
+					progress += run.tracking.getProgress();
+				}
+				this.progress = progress / n;
+			}
+			else {
+				this.crossTrackError = null;
+				this.headingError = null;
+				this.progress = Double.NaN;
+			}
+		}
+
+		@Override
+		public String toString() {
+			String result = String.format("%-24s runs=%d path=%.2f m heading=%.2f s (%d/%d) collisions=%.2f saturation=%.2f s",
+					strategy, runs, pathLength, timeToHeading, headingReached, runs, wallCollisions, saturationTime);
+			if(crossTrackError != null) {
+				result += String.format("%n%-24s cross-track (m) %s%n%-24s heading (rad) %s%n%-24s progress=%.1f%%",
+						"", crossTrackError, "", headingError, "", 100 * progress);
+			}
+			return result;
+		}
+	}
+
+	public List<Result> run() {
+		List<String> names = new ArrayList<>(strategies.keySet());
+		List<Supplier<ControlLaw>> suppliers = new ArrayList<>(strategies.values());
+		int traceCount = traces.size();
+		RunMetrics[][] metrics = new RunMetrics[names.size()][traceCount];
+
+		IntStream.range(0, names.size() * traceCount).parallel().forEach(task -> {
+			int strategy = task / traceCount;
+			int trace = task % traceCount;
+			metrics[strategy][trace] = runOne(suppliers.get(strategy).get(), traces.get(trace));
+		});
+
+		List<Result> results = new ArrayList<>();
+		for(int i = 0; i < names.size(); i++) {
+			results.add(new Result(names.get(i), metrics[i]));
+		}
+		return results;
+	}
+
+	RunMetrics runOne(ControlLaw law, InputTrace trace) {
+		SimulationEngine engine = new SimulationEngine(template);
+		ControlInput input = new ControlInput();
+		WheelCommand output = new WheelCommand();
+		RunMetrics metrics = new RunMetrics();
+		if(this.referencePath != null) {
+			metrics.tracking = new PathTracker(referencePath);
+		}
+		double maxLeft = engine.getMaxLeftWheelSpeed();
+		double maxRight = engine.getMaxRightWheelSpeed();
+		double startTime = engine.getTime();
+		double dt = engine.getTimeStep();
+		boolean wasColliding = engine.isCollision();
+		int sample = -1;
+
+		for(double t = 0.0; t <= trace.getDuration(); t += dt) {
+			sample = trace.indexAt(t, sample);
+			input.joystickX = sample < 0 ? 0.0 : trace.getX(sample);
+			input.joystickY = sample < 0 ? 0.0 : trace.getY(sample);
+			input.maxLeftWheelSpeed = maxLeft;
+			input.maxRightWheelSpeed = maxRight;
+			input.time = t;
+			law.compute(input, output);
+
+			// a strategy that exceeds the limits is saturated instead of failing the whole run
+			double left = Math.max(-maxLeft, Math.min(maxLeft, output.leftWheelSpeed));
+			double right = Math.max(-maxRight, Math.min(maxRight, output.rightWheelSpeed));
+			if(Math.abs(left) >= maxLeft * 0.999 || Math.abs(right) >= maxRight * 0.999) {
+				metrics.saturationTime += dt;
+			}
+			engine.setWheelsSpeed(left, right);
+
+			double x = engine.getRobotXPose();
+			double y = engine.getRobotYPose();
+			engine.step();
+			double dx = engine.getRobotXPose() - x;
+			double dy = engine.getRobotYPose() - y;
+			metrics.pathLength += Math.sqrt(dx*dx + dy*dy);
+			if(metrics.tracking != null) {
+				metrics.tracking.update(engine.getRobotXPose(), engine.getRobotYPose(), engine.getRobotOrientation());
+			}
+
+			if(engine.isCollision() && !wasColliding) {
+				metrics.wallCollisions++;
+			}
+			wasColliding = engine.isCollision();
+
+			if(Double.isNaN(metrics.timeToHeading)
+					&& Math.abs(DFKEquation.wrapAngle(engine.getRobotOrientation() - targetHeading)) <= headingTolerance) {
+				metrics.timeToHeading = engine.getTime() - startTime;
+			}
+		}
+		return metrics;
+	}
+}
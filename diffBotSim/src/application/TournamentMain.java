@@ -0,0 +1,65 @@
+package application;
+
+import java.util.List;
+import java.util.Random;
+
+// Runs the control strategies against random joystick traces and prints their metrics
+public class TournamentMain {
+	public static void main(String[] args) {
+		SimulationEngine engine = new SimulationEngine();
+
+		// Units are SI (meters, radians, seconds), same robot as Main
+		engine.setRobotLength(2.2);
+		engine.setWheelsSeparation(1.6);
+		engine.setWheelsRadius(0.4, 0.4);
+		engine.setWorkspaceDimensions(32, 16);
+		engine.setRobotPose(8, 1.9);
+		engine.setRobotOrientation(Math.PI / 2);
+		engine.setMaxWheelsSpeed(29.0, 29.0);
+
+		Tournament tournament = new Tournament(engine);
+		tournament.setTargetHeading(0.0, 0.05);
+		tournament.addStrategy("JoystickRobotLogic", JoystickRobotLogic::new);
+		// Same mapping with squared inputs, softer around the center of the joystick
+		tournament.addStrategy("SquaredInputs", () -> {
+			JoystickRobotLogic logic = new JoystickRobotLogic();
+			ControlInput squared = new ControlInput();
+			return (input, output) -> {
+				squared.joystickX = input.joystickX * Math.abs(input.joystickX);
+				squared.joystickY = input.joystickY * Math.abs(input.joystickY);
+				squared.maxLeftWheelSpeed = input.maxLeftWheelSpeed;
+				squared.maxRightWheelSpeed = input.maxRightWheelSpeed;
+				squared.time = input.time;
+				logic.compute(squared, output);
+			};
+		});
+
+		int traces = 1000;
+		Random random = new Random(7);
+		for(int i = 0; i < traces; i++) {
+			tournament.addTrace(randomTrace(random, 30.0, 0.5));
+		}
+
+		long start = System.nanoTime();
+		List<Tournament.Result> results = tournament.run();
+		long elapsed = System.nanoTime() - start;
+		for(Tournament.Result result : results) {
+			System.out.println(result);
+		}
+		System.out.printf("%d runs in %.2f s%n", results.size() * traces, elapsed / 1e9);
+	}
+
+	// Joystick held at a random position, changed every period seconds
+	static InputTrace randomTrace(Random random, double duration, double period) {
+		int n = (int)(duration / period) + 1;
+		double[] times = new double[n], xs = new double[n], ys = new double[n];
+		for(int i = 0; i < n; i++) {
+			double angle = random.nextDouble() * 2 * Math.PI;
+			double radius = Math.sqrt(random.nextDouble());
+			times[i] = i * period;
+			xs[i] = radius * Math.cos(angle);
+			ys[i] = radius * Math.sin(angle);
+		}
+		return new InputTrace(times, xs, ys);
+	}
+}
@@ -0,0 +1,55 @@
+package application;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Replays a recorded joystick trace headlessly on a SimulationEngine, either paced at a multiple
+// of real time or as fast as possible. The robot starts from the pose stored in the trace so a
+// replay with the same control law and time step reproduces the recorded run.
+public class TraceReplayer {
+	// Only sleep when the replay is at least this far ahead of the clock
+	private static final long MIN_PARK_NANOS = 1_000_000;
+
+	private final SimulationEngine engine;
+	private final ControlLaw law;
+
+	public TraceReplayer(SimulationEngine engine, ControlLaw law) {
+		if(!engine.isConfigured()) {
+			throw new IllegalArgumentException("The engine is not fully configured");
+		}
+		this.engine = engine;
+		this.law = law;
+	}
+
+	// speedFactor is the replay speed relative to real time (10 = ten times faster),
+	// speedFactor <= 0 runs the replay without pacing. Returns the number of simulation steps.
+	public long run(InputTrace trace, double speedFactor) {
+		if(trace.getTimeStep() > 0.0) {
+			engine.setRobotPose(trace.getStartX(), trace.getStartY());
+			engine.setRobotOrientation(trace.getStartTheta());
+			engine.setWheelsSpeed(0.0, 0.0);
+		}
+		double dt = engine.getTimeStep();
+		double duration = trace.getDuration();
+		long start = System.nanoTime();
+		long steps = 0;
+		int sample = -1;
+
+		while(steps * dt <= duration) {
+			sample = trace.indexAt((steps + 0.5) * dt, sample);
+			double x = sample < 0 ? 0.0 : trace.getX(sample);
+			double y = sample < 0 ? 0.0 : trace.getY(sample);
+			engine.applyControl(law, x, y);
+			engine.step();
+			steps++;
+
+			if(speedFactor > 0.0) {
+				long due = start + (long)(steps * dt / speedFactor * 1e9);
+				long ahead = due - System.nanoTime();
+				if(ahead > MIN_PARK_NANOS) {
+					LockSupport.parkNanos(ahead);
+				}
+			}
+		}
+		return steps;
+	}
+}
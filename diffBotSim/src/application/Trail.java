@@ -0,0 +1,123 @@
+package application;
+
+import java.nio.ByteBuffer;
+
+// Fixed capacity ring buffer of the last poses of the robot (in meters). Adding a point is
+// O(1): once the buffer is full the oldest point is overwritten. A point is only stored if
+// the robot moved further than minDistance or turned more than minAngle since the last
+// stored point, so a stationary robot does not fill the trail.
+class Trail {
+	private double[]	xPoints, yPoints;
+	private int			head = 0;		// index of the oldest point
+	private int			size = 0;
+	private long		addedCount = 0;	// points stored since the last reset
+	private int			generation = 0;	// incremented every time the content is reset
+	private double		minDistance = 0.0, minAngle = 0.0;
+	private double		lastX, lastY, lastTheta;
+
+	Trail(int capacity) {
+		this.setCapacity(capacity);
+	}
+
+	void setCapacity(int capacity) {
+		if(capacity < 2) {
+			throw new IllegalArgumentException("Trail must hold at least 2 points");
+		}
+		this.xPoints = new double[capacity];
+		this.yPoints = new double[capacity];
+		this.clear();
+	}
+
+	void setDecimation(double minDistance, double minAngle) {
+		if(minDistance < 0.0 || minAngle < 0.0) {
+			throw new IllegalArgumentException("Decimation thresholds must be >= 0");
+		}
+		this.minDistance = minDistance;
+		this.minAngle = minAngle;
+	}
+
+	void clear() {
+		this.head = 0;
+		this.size = 0;
+		this.addedCount = 0;
+		this.generation++;
+	}
+
+	// Returns true if the point was stored
+	boolean add(double x, double y, double theta) {
+		if(size > 0) {
+			double dx = x - lastX;
+			double dy = y - lastY;
+			if(dx*dx + dy*dy <= minDistance*minDistance && Math.abs(DFKEquation.wrapAngle(theta - lastTheta)) <= minAngle) {
+				return false;
+			}
+		}
+		int capacity = xPoints.length;
+		int index = head + size;
+		if(index >= capacity) {
+			index -= capacity;
+		}
+		xPoints[index] = x;
+		yPoints[index] = y;
+		if(size < capacity) {
+			size++;
+		}
+		else if(++head == capacity) {
+			head = 0;
+		}
+		this.lastX = x;
+		this.lastY = y;
+		this.lastTheta = theta;
+		this.addedCount++;
+		return true;
+	}
+
+	// Points and decimation state, the capacity must be the same when the state is read back
+	int getStateSize() {
+		return 4 + 8 + 3 * 8 + xPoints.length * 16;
+	}
+
+	void writeState(ByteBuffer buffer) {
+		buffer.putInt(size).putLong(addedCount).putDouble(lastX).putDouble(lastY).putDouble(lastTheta);
+		for(int i = 0; i < size; i++) {
+			buffer.putDouble(this.getX(i)).putDouble(this.getY(i));
+		}
+		buffer.position(buffer.position() + (xPoints.length - size) * 16);
+	}
+
+	void readState(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		if(size > xPoints.length) {
+			throw new IllegalArgumentException("The state is from a larger trail");
+		}
+		this.head = 0;
+		this.size = size;
+		this.addedCount = buffer.getLong();
+		this.lastX = buffer.getDouble();
+		this.lastY = buffer.getDouble();
+		this.lastTheta = buffer.getDouble();
+		for(int i = 0; i < size; i++) {
+			xPoints[i] = buffer.getDouble();
+			yPoints[i] = buffer.getDouble();
+		}
+		buffer.position(buffer.position() + (xPoints.length - size) * 16);
+		this.generation++;
+	}
+
+	// i = 0 is the oldest point, i = size() - 1 the newest
+	double getX(int i) {
+		int index = head + i;
+		return xPoints[index < xPoints.length ? index : index - xPoints.length];
+	}
+	double getY(int i) {
+		int index = head + i;
+		return yPoints[index < yPoints.length ? index : index - yPoints.length];
+	}
+
+	int size()				{ return this.size;			   }
+	int capacity()			{ return this.xPoints.length;  }
+	long getAddedCount()	{ return this.addedCount;	   }
+	int getGeneration()		{ return this.generation;	   }
+	double getMinDistance()	{ return this.minDistance;	   }
+	double getMinAngle()	{ return this.minAngle;		   }
+}
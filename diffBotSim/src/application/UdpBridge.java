@@ -0,0 +1,228 @@
+package application;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+
+// UDP bridge for a controller running outside of the JVM. The controller sends commands, either
+// wheel speeds applied as they are or a joystick position given to the ControlLaw, and the
+// bridge streams the pose and odometry back to it at a fixed rate.
+//
+// The bridge answers to the first controller that sends a command: the channel is then
+// connected to it, so the packets are read and written without resolving nor allocating
+// addresses. All packets go through preallocated direct buffers. Packets (little endian):
+//   command  0 byte type (WHEELS or JOYSTICK), 1 byte 0, 2 short 0, 4 int sequence,
+//            8 long echo (stamp of the last state received, 0 if none), 16 float a, 20 float b
+//            wheels: a = left, b = right wheel speed (rad/s), joystick: a = x, b = y in [-1, 1]
+//   state    0 byte STATE, 1 byte collision, 2 short 0, 4 int sequence, 8 long stamp,
+//            16 int sequence of the last command applied, 20 int 0, 24 double time,
+//            32 double x, 40 double y, 48 double theta, 56 double linear velocity,
+//            64 double angular velocity, 72 float left, 76 float right wheel speed
+// The stamps are System.nanoTime() of the bridge, so the round trip of a state packet through
+// the controller is measured on the bridge side.
+public class UdpBridge implements AutoCloseable {
+	static final byte	WHEELS = 1, JOYSTICK = 2, STATE = 3;
+	static final int	COMMAND_SIZE = 24;
+	static final int	STATE_SIZE = 80;
+	// the robot stops when the controller stays silent for that long
+	private static final long COMMAND_TIMEOUT_NANOS = 250_000_000;
+
+	private final DatagramChannel channel;
+	private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(512).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer stateBuffer = ByteBuffer.allocateDirect(STATE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final long		statePeriodNanos;
+	private final Thread	receiver;
+	private volatile boolean isConnected = false;
+
+	// latest command of each type, the two values are published together in the cell of their
+	// type before the type itself, so the type read always comes with values of that type
+	private final InputCell	wheelsCommand = new InputCell();
+	private final InputCell	joystickCommand = new InputCell();
+	private volatile byte	commandType = 0;
+	private volatile int	commandSequence;
+	private volatile long	commandReceivedAt;
+	private boolean			hasSequence = false;
+	private int				lastSequence = 0;
+	private long			lastEcho = 0;
+
+	private long			nextStateAt = 0;
+	private int				stateSequence = 0;
+	private final LatencyHistogram roundTrip = new LatencyHistogram();
+	private volatile long	received, rejected, lost, late;
+
+	// stateRate is the number of state packets per second, at most one per simulation step
+	public UdpBridge(int port, double stateRate) throws IOException {
+		if(stateRate <= 0) {
+			throw new IllegalArgumentException("State rate must be > 0");
+		}
+		this.statePeriodNanos = (long)(1e9 / stateRate);
+		this.channel = DatagramChannel.open();
+		channel.bind(new InetSocketAddress(port));
+		this.receiver = new Thread(this::receive, "UDP bridge");
+		receiver.setDaemon(true);
+		receiver.start();
+	}
+
+	// Local address, e.g. to find the port when 0 was given
+	public InetSocketAddress getLocalAddress() throws IOException {
+		return (InetSocketAddress)channel.getLocalAddress();
+	}
+
+	private void receive() {
+		try {
+			// the first command chooses the controller, then the channel only talks to it
+			SocketAddress peer;
+			do {
+				receiveBuffer.clear();
+				peer = channel.receive(receiveBuffer);
+				receiveBuffer.flip();
+			} while(!this.parse(receiveBuffer));
+			channel.connect(peer);
+			this.isConnected = true;
+
+			while(true) {
+				receiveBuffer.clear();
+				try {
+					channel.read(receiveBuffer);
+				} catch (PortUnreachableException e) {
+					// a state was sent while the controller was not listening
+					continue;
+				}
+				receiveBuffer.flip();
+				this.parse(receiveBuffer);
+			}
+		} catch (ClosedChannelException e) {
+			// closed by close()
+		} catch (IOException e) {
+			System.err.println("UDP bridge stopped: " + e);
+		}
+	}
+
+	private boolean parse(ByteBuffer packet) {
+		long now = System.nanoTime();
+		if(packet.remaining() != COMMAND_SIZE) {
+			rejected++;
+			return false;
+		}
+		byte type = packet.get(0);
+		if(type != WHEELS && type != JOYSTICK) {
+			rejected++;
+			return false;
+		}
+		float a = packet.getFloat(16), b = packet.getFloat(20);
+		if(!Float.isFinite(a) || !Float.isFinite(b)) {
+			rejected++;
+			return false;
+		}
+		int sequence = packet.getInt(4);
+		long echo = packet.getLong(8);
+		received++;
+		// the controller echoes the same stamp until it receives the next state, only the first
+		// echo of a stamp measures the round trip
+		if(echo != 0 && echo - lastEcho > 0) {
+			this.lastEcho = echo;
+			synchronized(roundTrip) {
+				roundTrip.record(now - echo);
+			}
+		}
+		// older commands that were overtaken by newer ones are ignored, the sequence may start
+		// anywhere and wrap around so only the difference is compared
+		if(this.hasSequence && sequence - lastSequence <= 0) {
+			late++;
+			return true;
+		}
+		if(this.hasSequence) {
+			lost += sequence - lastSequence - 1;
+		}
+		this.hasSequence = true;
+		this.lastSequence = sequence;
+		(type == WHEELS ? wheelsCommand : joystickCommand).publish(a, b);
+		this.commandType = type;
+		this.commandSequence = sequence;
+		this.commandReceivedAt = now;
+		return true;
+	}
+
+	// Called by the simulation thread before a step: applies the latest command to the engine.
+	// Returns the type of command applied, WHEELS when the robot was stopped by the timeout, or 0
+	// when there is no command to apply, so that another input can be used.
+	byte apply(SimulationEngine engine, ControlLaw law) {
+		byte type = this.commandType;
+		if(type == 0) {
+			return 0;
+		}
+		long command = (type == WHEELS ? wheelsCommand : joystickCommand).get();
+		double a = InputCell.x(command);
+		double b = InputCell.y(command);
+		if(System.nanoTime() - commandReceivedAt > COMMAND_TIMEOUT_NANOS) {
+			engine.setWheelsSpeed(0.0, 0.0);
+			return WHEELS;
+		}
+		else if(type == WHEELS) {
+			double maxLeft = engine.getMaxLeftWheelSpeed(), maxRight = engine.getMaxRightWheelSpeed();
+			engine.setWheelsSpeed(Math.max(-maxLeft, Math.min(maxLeft, a)), Math.max(-maxRight, Math.min(maxRight, b)));
+		}
+		else {
+			engine.applyControl(law, Math.max(-1.0, Math.min(1.0, a)), Math.max(-1.0, Math.min(1.0, b)));
+		}
+		return type;
+	}
+
+	// Called by the simulation thread after a step: sends the state when it is due
+	void publish(SimulationEngine engine) {
+		long now = System.nanoTime();
+		if(!this.isConnected || now < nextStateAt) {
+			return;
+		}
+		this.nextStateAt = Math.max(nextStateAt + statePeriodNanos, now);
+		double v = DFKEquation.computeLinearVel(engine.getRightWheelRadius(), engine.getLeftWheelRadius(),
+				engine.getRightWheelSpeed(), engine.getLeftWheelSpeed());
+		stateBuffer.clear();
+		stateBuffer.put(STATE).put((byte)(engine.isCollision() ? 1 : 0)).putShort((short)0)
+				.putInt(stateSequence++).putLong(now).putInt(commandSequence).putInt(0)
+				.putDouble(engine.getTime()).putDouble(engine.getRobotXPose()).putDouble(engine.getRobotYPose())
+				.putDouble(engine.getRobotOrientation()).putDouble(v).putDouble(engine.getAngularVel())
+				.putFloat((float)engine.getLeftWheelSpeed()).putFloat((float)engine.getRightWheelSpeed());
+		stateBuffer.flip();
+		try {
+			channel.write(stateBuffer);
+		} catch (IOException e) {
+			// e.g. port unreachable while the controller restarts, the next state will be retried
+		}
+	}
+
+	long getReceived()	{ return this.received; }
+	long getRejected()	{ return this.rejected; }
+	long getLost()		{ return this.lost;		}
+	long getLate()		{ return this.late;		}
+
+	// Round trip of the state packets through the controller, in ns
+	long getRoundTripPercentile(double fraction) {
+		synchronized(roundTrip) {
+			return roundTrip.getPercentile(fraction);
+		}
+	}
+
+	String summary() {
+		synchronized(roundTrip) {
+			return String.format("received %d, lost %d, late %d, rejected %d, rtt us p50 %.0f p99 %.0f max %.0f",
+					received, lost, late, rejected, roundTrip.getPercentile(0.5) / 1e3,
+					roundTrip.getPercentile(0.99) / 1e3, roundTrip.getMax() / 1e3);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		try {
+			receiver.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package application;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.locks.LockSupport;
+
+// Local stand-in for an external controller talking to a UdpBridge, to test the bridge without
+// the real firmware. It sends commands and echoes the stamp of the last state it received so
+// that the bridge measures the round trip. The channel is non-blocking and polled.
+public class UdpStandInController implements AutoCloseable {
+	private final DatagramChannel channel;
+	private final ByteBuffer commandBuffer = ByteBuffer.allocateDirect(UdpBridge.COMMAND_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer stateBuffer = ByteBuffer.allocateDirect(512).order(ByteOrder.LITTLE_ENDIAN);
+	private int		sequence = 0;
+	private long	lastStamp = 0;
+	private long	states = 0;
+	private double	time, x, y, theta;
+
+	public UdpStandInController(InetSocketAddress bridge) throws IOException {
+		this.channel = DatagramChannel.open();
+		channel.connect(bridge);
+		channel.configureBlocking(false);
+	}
+
+	public void sendWheels(double left, double right) throws IOException {
+		this.send(UdpBridge.WHEELS, left, right);
+	}
+
+	public void sendJoystick(double x, double y) throws IOException {
+		this.send(UdpBridge.JOYSTICK, x, y);
+	}
+
+	private void send(byte type, double a, double b) throws IOException {
+		commandBuffer.clear();
+		commandBuffer.put(type).put((byte)0).putShort((short)0).putInt(sequence++).putLong(lastStamp)
+				.putFloat((float)a).putFloat((float)b);
+		commandBuffer.flip();
+		channel.write(commandBuffer);
+	}
+
+	// Read the states received since the last call, returns their number
+	public int poll() throws IOException {
+		int count = 0;
+		while(true) {
+			stateBuffer.clear();
+			int size;
+			try {
+				size = channel.read(stateBuffer);
+			} catch (PortUnreachableException e) {
+				continue;	// the bridge was not listening yet
+			}
+			if(size <= 0) {
+				return count;
+			}
+			if(size != UdpBridge.STATE_SIZE || stateBuffer.get(0) != UdpBridge.STATE) {
+				continue;
+			}
+			this.lastStamp = stateBuffer.getLong(8);
+			this.time = stateBuffer.getDouble(24);
+			this.x = stateBuffer.getDouble(32);
+			this.y = stateBuffer.getDouble(40);
+			this.theta = stateBuffer.getDouble(48);
+			this.states++;
+			count++;
+		}
+	}
+
+	long getStates()	{ return this.states; }
+	double getTime()	{ return this.time;	  }
+	double getX()		{ return this.x;	  }
+	double getY()		{ return this.y;	  }
+	double getTheta()	{ return this.theta;  }
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	// Drives the robot of a bridge on localhost in a circle: port [seconds] [rate Hz]
+	public static void main(String[] args) throws IOException {
+		int port = Integer.parseInt(args[0]);
+		double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 10.0;
+		double rate = args.length > 2 ? Double.parseDouble(args[2]) : 100.0;
+		long period = (long)(1e9 / rate);
+		try (UdpStandInController controller = new UdpStandInController(new InetSocketAddress("localhost", port))) {
+			long start = System.nanoTime();
+			long next = start;
+			while(System.nanoTime() - start < seconds * 1e9) {
+				controller.poll();
+				controller.sendWheels(2.0, 3.0);
+				next += period;
+				LockSupport.parkNanos(next - System.nanoTime());
+			}
+			System.out.printf("%d states, last pose x %.3f y %.3f theta %.3f at t %.3f%n", controller.getStates(),
+					controller.getX(), controller.getY(), controller.getTheta(), controller.getTime());
+		}
+	}
+}
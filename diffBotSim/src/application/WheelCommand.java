@@ -0,0 +1,6 @@
+package application;
+
+// Output of a ControlLaw, the same instance is reused every step
+public class WheelCommand {
+	public double leftWheelSpeed, rightWheelSpeed;
+}